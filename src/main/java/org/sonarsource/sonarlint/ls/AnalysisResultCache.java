@@ -0,0 +1,91 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+
+/**
+ * Remember the raw issues reported by the engines for the last analyzed states of open files, so that analyzing the same content again with the same
+ * configuration replays them instead of running the analyzers. Server issue tracking is not cached, it is applied again on replayed issues.
+ * <p>
+ * Entries are keyed by a digest of the file identity, its content, and everything in the configuration that can change the analysis outcome. What can't be
+ * captured in a key (plugins runtime, classpath content, server quality profiles) is handled by clearing the cache, or only the entries of a folder when
+ * one of its files changed outside the editor.
+ */
+class AnalysisResultCache {
+
+  static final int DEFAULT_MAX_ENTRIES = 256;
+
+  private final Map<String, Entry> entriesPerKey;
+
+  AnalysisResultCache(int maxEntries) {
+    this.entriesPerKey = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  synchronized Optional<List<Issue>> get(String key) {
+    return Optional.ofNullable(entriesPerKey.get(key)).map(Entry::rawIssues);
+  }
+
+  synchronized void put(String key, URI fileUri, List<Issue> rawIssues) {
+    entriesPerKey.put(key, new Entry(Paths.get(fileUri), List.copyOf(rawIssues)));
+  }
+
+  synchronized void clear() {
+    entriesPerKey.clear();
+  }
+
+  /**
+   * Only drop the results of files in the given folder
+   */
+  synchronized void clear(Path folderRoot) {
+    entriesPerKey.values().removeIf(entry -> entry.filePath().startsWith(folderRoot));
+  }
+
+  synchronized int size() {
+    return entriesPerKey.size();
+  }
+
+  static String key(String... parts) {
+    var digest = DigestUtils.getSha256Digest();
+    for (var part : parts) {
+      DigestUtils.updateDigest(digest, String.valueOf(part));
+      // Separator, so that moving characters from one part to the next changes the key
+      digest.update((byte) 0);
+    }
+    return Hex.encodeHexString(digest.digest());
+  }
+
+  private record Entry(Path filePath, List<Issue> rawIssues) {
+  }
+}
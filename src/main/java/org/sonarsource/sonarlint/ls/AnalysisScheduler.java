@@ -20,19 +20,30 @@
 package org.sonarsource.sonarlint.ls;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.lsp4j.FileEvent;
 import org.sonarsource.sonarlint.ls.connected.ProjectBindingManager;
 import org.sonarsource.sonarlint.ls.file.OpenFilesCache;
 import org.sonarsource.sonarlint.ls.file.VersionedOpenFile;
@@ -41,6 +52,7 @@ import org.sonarsource.sonarlint.ls.folders.WorkspaceFoldersManager;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogger;
 import org.sonarsource.sonarlint.ls.notebooks.OpenNotebooksCache;
 import org.sonarsource.sonarlint.ls.notebooks.VersionedOpenNotebook;
+import org.sonarsource.sonarlint.ls.progress.ProgressManager;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettings;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettingsChangeListener;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceSettings;
@@ -57,6 +69,7 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
 
   private static final CompletableFuture<Void> COMPLETED_FUTURE = CompletableFuture.completedFuture(null);
   private static final int DEFAULT_TIMER_MS = 2000;
+  private static final int DEFAULT_BACKGROUND_BATCH_SIZE = 50;
 
   static final String SONARLINT_SOURCE = "sonarlint";
   public static final String SONARQUBE_TAINT_SOURCE = "Latest SonarQube Analysis";
@@ -68,27 +81,29 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
   private final OpenFilesCache openFilesCache;
   private final OpenNotebooksCache openNotebooksCache;
 
-  // entries in this set mean that the file is "dirty"
-  private final Set<URI> events = new HashSet<>();
-  private final AtomicLong oldestEvent = new AtomicLong(Long.MAX_VALUE);
-
   private final WorkspaceFoldersManager workspaceFoldersManager;
   private final ProjectBindingManager bindingManager;
   private final EventWatcher watcher;
   private final LanguageClientLogger lsLogOutput;
   private final AnalysisTaskExecutor analysisTaskExecutor;
   private final SonarLintExtendedLanguageClient client;
+  private final ProgressManager progressManager;
 
   private final ExecutorService asyncExecutor;
+  // Analyses waiting for the analysis thread. Interactive ones (the user opened or edited a file) always run before background ones
+  private final Queue<FutureTask<Void>> interactiveTasks = new ConcurrentLinkedQueue<>();
+  private final Queue<FutureTask<Void>> backgroundTasks = new ConcurrentLinkedQueue<>();
+  private final int backgroundBatchSize;
 
   public AnalysisScheduler(LanguageClientLogger lsLogOutput, WorkspaceFoldersManager workspaceFoldersManager, ProjectBindingManager bindingManager, OpenFilesCache openFilesCache,
-    OpenNotebooksCache openNotebooksCache, AnalysisTaskExecutor analysisTaskExecutor, SonarLintExtendedLanguageClient client) {
-    this(lsLogOutput, workspaceFoldersManager, bindingManager, openFilesCache, openNotebooksCache, analysisTaskExecutor, DEFAULT_TIMER_MS, client);
+    OpenNotebooksCache openNotebooksCache, AnalysisTaskExecutor analysisTaskExecutor, SonarLintExtendedLanguageClient client, ProgressManager progressManager) {
+    this(lsLogOutput, workspaceFoldersManager, bindingManager, openFilesCache, openNotebooksCache, analysisTaskExecutor, DEFAULT_TIMER_MS, client, progressManager);
   }
 
   @VisibleForTesting
   AnalysisScheduler(LanguageClientLogger lsLogOutput, WorkspaceFoldersManager workspaceFoldersManager, ProjectBindingManager bindingManager, OpenFilesCache openFilesCache,
-    OpenNotebooksCache openNotebooksCache, AnalysisTaskExecutor analysisTaskExecutor, long analysisTimerMs, SonarLintExtendedLanguageClient client) {
+    OpenNotebooksCache openNotebooksCache, AnalysisTaskExecutor analysisTaskExecutor, long analysisTimerMs, SonarLintExtendedLanguageClient client,
+    ProgressManager progressManager) {
     this.lsLogOutput = lsLogOutput;
     this.workspaceFoldersManager = workspaceFoldersManager;
     this.bindingManager = bindingManager;
@@ -96,8 +111,11 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
     this.openNotebooksCache = openNotebooksCache;
     this.analysisTaskExecutor = analysisTaskExecutor;
     this.asyncExecutor = Executors.newSingleThreadExecutor(Utils.threadFactory("SonarLint Language Server Analysis Scheduler", false));
+    this.backgroundBatchSize = Math.max(1, Integer.parseInt(StringUtils.defaultIfBlank(System.getenv("SONARLINT_INTERNAL_BACKGROUND_ANALYSIS_BATCH_SIZE"),
+      String.valueOf(DEFAULT_BACKGROUND_BATCH_SIZE))));
     this.watcher = new EventWatcher(analysisTimerMs);
     this.client = client;
+    this.progressManager = progressManager;
   }
 
   public void didOpen(VersionedOpenFile file) {
@@ -113,71 +131,88 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
   }
 
   private void recordEvent(URI fileUri) {
-    oldestEvent.compareAndSet(Long.MAX_VALUE, System.currentTimeMillis());
-    events.add(fileUri);
+    watcher.recordEvent(fileUri);
   }
 
-  private class EventWatcher extends Thread {
-    private Future<?> onChangeCurrentTask = COMPLETED_FUTURE;
-    private boolean stop = false;
+  /**
+   * Debounce file change events: each dirty file has its own pending check, rescheduled on every new event for that file.
+   * Nothing is scheduled while there are no dirty files. When a check expires, all files that are due (or about to be) are
+   * analyzed together.
+   */
+  private class EventWatcher {
+    private final ScheduledThreadPoolExecutor scheduler;
     private final long analysisTimerMs;
+    private final long batchingToleranceMs;
+    // entries in this map mean that the file is "dirty", the remaining delay of the pending check is the debounce deadline of the file
+    private final Map<URI, ScheduledFuture<?>> pendingCheckPerDirtyFile = new ConcurrentHashMap<>();
+    // Only accessed from the scheduler thread
+    private Future<?> onChangeCurrentTask = COMPLETED_FUTURE;
 
     EventWatcher(long analysisTimerMs) {
       this.analysisTimerMs = analysisTimerMs;
-      this.setDaemon(true);
-      this.setName("sonarlint-auto-trigger");
-    }
-
-    public void stopWatcher() {
-      stop = true;
-      onChangeCurrentTask.cancel(false);
-      this.interrupt();
+      this.batchingToleranceMs = analysisTimerMs / 10;
+      this.scheduler = new ScheduledThreadPoolExecutor(1, Utils.threadFactory("sonarlint-auto-trigger", true));
+      this.scheduler.setRemoveOnCancelPolicy(true);
     }
 
-    @Override
-    public void run() {
-      while (!stop) {
-        checkTimers();
-        try {
-          Thread.sleep(this.analysisTimerMs / 10);
-        } catch (InterruptedException e) {
-          // continue until stop flag is set
-        }
+    void recordEvent(URI fileUri) {
+      try {
+        pendingCheckPerDirtyFile.compute(fileUri, (uri, previousCheck) -> {
+          if (previousCheck != null) {
+            previousCheck.cancel(false);
+          }
+          return scheduler.schedule(this::triggerDueFiles, analysisTimerMs, TimeUnit.MILLISECONDS);
+        });
+      } catch (RejectedExecutionException e) {
+        // Shutting down
       }
     }
 
-    private void checkTimers() {
-      long now = System.currentTimeMillis();
-      long oldestEventTimeMs = oldestEvent.get();
-      if (now > oldestEventTimeMs + analysisTimerMs && !events.isEmpty()) {
-        var it = events.iterator();
-        var filesToTrigger = new ArrayList<VersionedOpenFile>();
-        while (it.hasNext()) {
-          var e = it.next();
-          openFilesCache.getFile(e).ifPresent(filesToTrigger::add);
-          openNotebooksCache.getFile(e).ifPresent(notebook -> filesToTrigger.add(notebook.asVersionedOpenFile()));
-        }
-        triggerFiles(filesToTrigger);
-        oldestEvent.set(Long.MAX_VALUE);
+    void forget(URI fileUri) {
+      var pendingCheck = pendingCheckPerDirtyFile.remove(fileUri);
+      if (pendingCheck != null) {
+        pendingCheck.cancel(false);
       }
     }
 
-    private void triggerFiles(List<VersionedOpenFile> filesToTrigger) {
-      if (!filesToTrigger.isEmpty()) {
-        if (!onChangeCurrentTask.isDone()) {
-          lsLogOutput.debug("Attempt to cancel previous analysis...");
-          onChangeCurrentTask.cancel(false);
-          // Wait for the next loop of EventWatcher to recheck if task has been successfully cancelled and then trigger the analysis
-          return;
+    private void triggerDueFiles() {
+      var dueFiles = pendingCheckPerDirtyFile.entrySet().stream()
+        .filter(e -> e.getValue().getDelay(TimeUnit.MILLISECONDS) <= batchingToleranceMs)
+        .map(e -> Map.entry(e.getKey(), e.getValue()))
+        .toList();
+      if (dueFiles.isEmpty()) {
+        return;
+      }
+      if (!onChangeCurrentTask.isDone()) {
+        lsLogOutput.debug("Attempt to cancel previous analysis...");
+        onChangeCurrentTask.cancel(false);
+        // Check again a bit later if the task has been successfully cancelled, and then trigger the analysis
+        scheduler.schedule(this::triggerDueFiles, batchingToleranceMs, TimeUnit.MILLISECONDS);
+        return;
+      }
+      var filesToTrigger = new ArrayList<VersionedOpenFile>();
+      dueFiles.forEach(dueFile -> {
+        // Only forget the event if no newer one was recorded for this file in the meantime
+        if (pendingCheckPerDirtyFile.remove(dueFile.getKey(), dueFile.getValue())) {
+          dueFile.getValue().cancel(false);
+          openFilesCache.getFile(dueFile.getKey()).ifPresent(filesToTrigger::add);
+          openNotebooksCache.getFile(dueFile.getKey()).ifPresent(notebook -> filesToTrigger.add(notebook.asVersionedOpenFile()));
         }
-        filesToTrigger.forEach(f -> events.remove(f.getUri()));
+      });
+      if (!filesToTrigger.isEmpty()) {
         onChangeCurrentTask = analyzeAsync(AnalysisParams.newAnalysisParams(filesToTrigger));
       }
     }
+
+    void stop() {
+      scheduler.shutdownNow();
+      pendingCheckPerDirtyFile.clear();
+      onChangeCurrentTask.cancel(false);
+    }
   }
 
   public void didClose(URI fileUri) {
-    events.remove(fileUri);
+    watcher.forget(fileUri);
   }
 
   public static class AnalysisParams {
@@ -185,33 +220,43 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
     private final boolean shouldFetchServerIssues;
     private final boolean shouldKeepHotspotsOnly;
     private final boolean shouldShowProgress;
+    private final boolean isBackground;
 
     private AnalysisParams(
       List<VersionedOpenFile> files,
       boolean shouldFetchServerIssues,
       boolean shouldKeepHotspotsOnly,
-      boolean shouldShowProgress
+      boolean shouldShowProgress,
+      boolean isBackground
     ) {
       this.files = List.copyOf(files);
       this.shouldFetchServerIssues = shouldFetchServerIssues;
       this.shouldKeepHotspotsOnly = shouldKeepHotspotsOnly;
       this.shouldShowProgress = shouldShowProgress;
+      this.isBackground = isBackground;
     }
 
     static AnalysisParams newAnalysisParams(List<VersionedOpenFile> files) {
-      return new AnalysisParams(files, false, false, false);
+      return new AnalysisParams(files, false, false, false, false);
     }
 
     AnalysisParams withFetchServerIssues() {
-      return new AnalysisParams(files, true, shouldKeepHotspotsOnly, shouldShowProgress);
+      return new AnalysisParams(files, true, shouldKeepHotspotsOnly, shouldShowProgress, isBackground);
     }
 
     AnalysisParams withOnlyHotspots() {
-      return new AnalysisParams(files, shouldFetchServerIssues, true, shouldShowProgress);
+      return new AnalysisParams(files, shouldFetchServerIssues, true, shouldShowProgress, isBackground);
     }
 
     AnalysisParams withProgress() {
-      return new AnalysisParams(files, shouldFetchServerIssues, shouldKeepHotspotsOnly, true);
+      return new AnalysisParams(files, shouldFetchServerIssues, shouldKeepHotspotsOnly, true, isBackground);
+    }
+
+    /**
+     * Bulk analyses not directly triggered by the user editing a file. They are split in batches, and interactive analyses can run between them.
+     */
+    AnalysisParams inBackground() {
+      return new AnalysisParams(files, shouldFetchServerIssues, shouldKeepHotspotsOnly, shouldShowProgress, true);
     }
   }
 
@@ -235,20 +280,87 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
     } else {
       lsLogOutput.debug(format("Queuing analysis of %d files", trueFileUris.size()));
     }
-    var task = new AnalysisTask(trueFileUris, params.shouldFetchServerIssues, params.shouldKeepHotspotsOnly, params.shouldShowProgress);
-    var future = asyncExecutor.submit(() -> analysisTaskExecutor.run(task));
-    task.setFuture(future);
+    if (!params.isBackground) {
+      return submit(interactiveTasks, new AnalysisTask(trueFileUris, params.shouldFetchServerIssues, params.shouldKeepHotspotsOnly, params.shouldShowProgress));
+    }
+    // Background batches of a same analysis run in order, so the last one completes after the others
+    var batches = Lists.partition(new ArrayList<>(trueFileUris), backgroundBatchSize);
+    var progress = params.shouldShowProgress
+      ? new BatchedAnalysisProgress(progressManager, format("SonarLint scanning %d files for hotspots", trueFileUris.size()), batches.size())
+      : null;
+    Future<?> lastBatch = COMPLETED_FUTURE;
+    for (var batch : batches) {
+      lastBatch = submit(backgroundTasks, new AnalysisTask(new HashSet<>(batch), params.shouldFetchServerIssues, params.shouldKeepHotspotsOnly,
+        params.shouldShowProgress), progress);
+    }
+    return lastBatch;
+  }
+
+  private Future<?> submit(Queue<FutureTask<Void>> lane, AnalysisTask task) {
+    return submit(lane, task, null);
+  }
+
+  private Future<?> submit(Queue<FutureTask<Void>> lane, AnalysisTask task, @Nullable BatchedAnalysisProgress progress) {
+    var future = new FutureTask<Void>(() -> {
+      if (lane == backgroundTasks && progress != null) {
+        progress.runBatch(batchProgress -> runWithoutEditedFiles(task.setProgress(batchProgress)));
+      } else if (lane == backgroundTasks) {
+        runWithoutEditedFiles(task);
+      } else {
+        analysisTaskExecutor.run(task);
+      }
+    }, null);
+    task.setFuture(future).setSupersededCheck(this::isSuperseded);
+    if (progress != null) {
+      progress.addBatch(future);
+    }
+    lane.add(future);
+    // One run per queued task, each run picks the most urgent task at that time
+    asyncExecutor.execute(this::runNextTask);
     return future;
   }
 
-  public void initialize() {
-    watcher.start();
+  private boolean isSuperseded(VersionedOpenFile file) {
+    var uri = file.getUri();
+    return openFilesCache.getFile(uri).map(VersionedOpenFile::getVersion)
+      .or(() -> openNotebooksCache.getFile(uri).map(VersionedOpenNotebook::getNotebookVersion))
+      .map(currentVersion -> currentVersion != file.getVersion())
+      .orElse(false);
+  }
+
+  /**
+   * Interactive analyses overtake background ones, so a file can have been edited and analyzed again since the background batch was queued
+   */
+  private void runWithoutEditedFiles(AnalysisTask task) {
+    var upToDateFiles = task.getFilesToAnalyze().stream()
+      .filter(file -> !task.isSuperseded(file))
+      .collect(toSet());
+    if (upToDateFiles.size() == task.getFilesToAnalyze().size()) {
+      analysisTaskExecutor.run(task);
+    } else if (!upToDateFiles.isEmpty()) {
+      analysisTaskExecutor.run(new AnalysisTask(upToDateFiles, task.shouldFetchServerIssues(), task.shouldKeepHotspotsOnly(), task.shouldShowProgress())
+        .setFuture(task.getFuture())
+        .setProgress(task.getProgress())
+        .setSupersededCheck(this::isSuperseded));
+    }
+  }
+
+  private void runNextTask() {
+    var nextTask = interactiveTasks.poll();
+    if (nextTask == null) {
+      nextTask = backgroundTasks.poll();
+    }
+    if (nextTask != null) {
+      nextTask.run();
+    }
   }
 
   public void shutdown() {
-    watcher.stopWatcher();
-    events.clear();
+    watcher.stop();
     Utils.shutdownAndAwait(asyncExecutor, true);
+    interactiveTasks.forEach(task -> task.cancel(false));
+    backgroundTasks.forEach(task -> task.cancel(false));
+    analysisTaskExecutor.shutdown();
   }
 
   public void analyzeAllOpenFilesInFolder(@Nullable WorkspaceFolderWrapper folder) {
@@ -266,7 +378,7 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
         var notIgnoredFiles = files
           .stream().filter(it -> notIgnoredFileUris.getFileUris().contains(it.getUri().toString()))
           .toList();
-        analyzeAsync(AnalysisParams.newAnalysisParams(notIgnoredFiles));
+        analyzeAsync(AnalysisParams.newAnalysisParams(notIgnoredFiles).inBackground());
       });
   }
 
@@ -281,6 +393,8 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
       // This is when settings are loaded, not really a user change
       return;
     }
+    // Some global settings (e.g. Node.js or Java runtime) can change analysis results without being part of the cached results keys
+    analysisTaskExecutor.clearAnalysisResultCache();
     if (!Objects.equals(oldValue.getExcludedRules(), newValue.getExcludedRules()) ||
       !Objects.equals(oldValue.getIncludedRules(), newValue.getIncludedRules()) ||
       !Objects.equals(oldValue.getRuleParameters(), newValue.getRuleParameters())) {
@@ -300,6 +414,30 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
     }
   }
 
+  /**
+   * Quality profiles and server settings may have changed in the storage
+   */
+  public void didSyncStorages() {
+    analysisTaskExecutor.clearAnalysisResultCache();
+  }
+
+  /**
+   * Files that are not open in the editor (build files, generated sources, dependencies...) may influence the analysis of open files of the same
+   * folder. Files outside of any folder may influence the analysis of any file.
+   */
+  public void didChangeWatchedFiles(List<FileEvent> changes) {
+    var changedFolders = changes.stream()
+      .map(event -> URI.create(event.getUri()))
+      .filter(fileUri -> openFilesCache.getFile(fileUri).isEmpty())
+      .map(workspaceFoldersManager::findFolderForFile)
+      .collect(toSet());
+    if (changedFolders.contains(Optional.<WorkspaceFolderWrapper>empty())) {
+      analysisTaskExecutor.clearAnalysisResultCache();
+    } else {
+      changedFolders.forEach(folder -> folder.ifPresent(analysisTaskExecutor::clearAnalysisResultCache));
+    }
+  }
+
   public void analyzeAllOpenCOrCppFilesInFolder(@Nullable WorkspaceFolderWrapper folder) {
     var openedCorCppFileUrisInFolder = openFilesCache.getAll().stream()
       .filter(VersionedOpenFile::isCOrCpp)
@@ -309,7 +447,7 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
   }
 
   public void scanForHotspotsInFiles(List<VersionedOpenFile> files) {
-    analyzeAsync(AnalysisParams.newAnalysisParams(files).withOnlyHotspots().withProgress());
+    analyzeAsync(AnalysisParams.newAnalysisParams(files).withOnlyHotspots().withProgress().inBackground());
   }
 
   private void analyzeAllUnboundOpenFiles() {
@@ -334,10 +472,12 @@ public class AnalysisScheduler implements WorkspaceSettingsChangeListener, Works
   }
 
   public void didClasspathUpdate() {
+    analysisTaskExecutor.clearAnalysisResultCache();
     analyzeAllOpenJavaFiles();
   }
 
   public void didServerModeChange(SonarLintExtendedLanguageServer.ServerMode serverMode) {
+    analysisTaskExecutor.clearAnalysisResultCache();
     if (serverMode == SonarLintExtendedLanguageServer.ServerMode.STANDARD) {
       analyzeAllOpenJavaFiles();
     }
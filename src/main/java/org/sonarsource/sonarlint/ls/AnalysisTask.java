@@ -21,8 +21,12 @@ package org.sonarsource.sonarlint.ls;
 
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonarsource.sonarlint.core.commons.progress.CanceledException;
 import org.sonarsource.sonarlint.ls.file.VersionedOpenFile;
+import org.sonarsource.sonarlint.ls.progress.ProgressFacade;
 
 class AnalysisTask {
 
@@ -31,6 +35,8 @@ class AnalysisTask {
   private final boolean shouldKeepHotspotsOnly;
   private final boolean shouldShowProgress;
   private Future<?> future;
+  private Predicate<VersionedOpenFile> supersededCheck = file -> false;
+  private ProgressFacade progress;
 
   public AnalysisTask(Set<VersionedOpenFile> filesToAnalyze, boolean shouldFetchServerIssues, boolean shouldKeepHotspotsOnly, boolean shouldShowProgress) {
     this.filesToAnalyze = filesToAnalyze;
@@ -56,7 +62,21 @@ class AnalysisTask {
   }
 
   public boolean isCanceled() {
-    return (future != null && future.isCancelled()) || Thread.currentThread().isInterrupted();
+    return (future != null && future.isCancelled()) || Thread.currentThread().isInterrupted() || isSuperseded();
+  }
+
+  /**
+   * A newer version of a file is known as soon as it is edited, before its own analysis is even queued
+   */
+  public boolean isSuperseded(VersionedOpenFile file) {
+    return supersededCheck.test(file);
+  }
+
+  /**
+   * Results of the task are useless once a newer version of all of its files is known
+   */
+  private boolean isSuperseded() {
+    return !filesToAnalyze.isEmpty() && filesToAnalyze.stream().allMatch(supersededCheck);
   }
 
   public void checkCanceled() {
@@ -70,7 +90,25 @@ class AnalysisTask {
     return this;
   }
 
+  public AnalysisTask setSupersededCheck(Predicate<VersionedOpenFile> supersededCheck) {
+    this.supersededCheck = supersededCheck;
+    return this;
+  }
+
   public Future<?> getFuture() {
     return future;
   }
+
+  /**
+   * Progress shared with other tasks, reported instead of opening a progress of its own when {@link #shouldShowProgress()}
+   */
+  public AnalysisTask setProgress(@Nullable ProgressFacade progress) {
+    this.progress = progress;
+    return this;
+  }
+
+  @CheckForNull
+  public ProgressFacade getProgress() {
+    return progress;
+  }
 }
@@ -24,6 +24,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,10 +33,20 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
 import org.sonarsource.sonarlint.core.analysis.api.AnalysisResults;
 import org.sonarsource.sonarlint.core.analysis.api.ClientInputFile;
 import org.sonarsource.sonarlint.core.client.api.common.AbstractAnalysisConfiguration.AbstractBuilder;
@@ -67,6 +78,7 @@ import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettings;
 import org.sonarsource.sonarlint.ls.standalone.StandaloneEngineManager;
 import org.sonarsource.sonarlint.ls.telemetry.SonarLintTelemetry;
 import org.sonarsource.sonarlint.ls.util.FileUtils;
+import org.sonarsource.sonarlint.ls.util.Utils;
 
 import static java.lang.String.format;
 import static java.util.Optional.ofNullable;
@@ -81,6 +93,9 @@ import static org.sonarsource.sonarlint.ls.util.Utils.pluralize;
 
 public class AnalysisTaskExecutor {
 
+  private static final long CANCELATION_CHECK_PERIOD_MS = 100;
+  private static final int DEFAULT_PARALLELISM = Math.min(4, Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
   private final ScmIgnoredCache filesIgnoredByScmCache;
   private final LanguageClientLogger clientLogger;
   private final LanguageClientLogOutput logOutput;
@@ -100,12 +115,17 @@ public class AnalysisTaskExecutor {
   private final OpenNotebooksCache openNotebooksCache;
   private final NotebookDiagnosticPublisher notebookDiagnosticPublisher;
   private final ProgressManager progressManager;
+  private final PersistentIssuesCache persistentIssuesCache;
+  private final int parallelism;
+  private final ExecutorService moduleAnalysisExecutor;
+  private final AnalysisResultCache analysisResultCache = new AnalysisResultCache(AnalysisResultCache.DEFAULT_MAX_ENTRIES);
 
   public AnalysisTaskExecutor(ScmIgnoredCache filesIgnoredByScmCache, LanguageClientLogger clientLogger, LanguageClientLogOutput logOutput,
     WorkspaceFoldersManager workspaceFoldersManager, ProjectBindingManager bindingManager, JavaConfigCache javaConfigCache, SettingsManager settingsManager,
     FileTypeClassifier fileTypeClassifier, IssuesCache issuesCache, IssuesCache securityHotspotsCache, TaintVulnerabilitiesCache taintVulnerabilitiesCache,
     SonarLintTelemetry telemetry, SkippedPluginsNotifier skippedPluginsNotifier, StandaloneEngineManager standaloneEngineManager, DiagnosticPublisher diagnosticPublisher,
-    SonarLintExtendedLanguageClient lsClient, OpenNotebooksCache openNotebooksCache, NotebookDiagnosticPublisher notebookDiagnosticPublisher, ProgressManager progressManager) {
+    SonarLintExtendedLanguageClient lsClient, OpenNotebooksCache openNotebooksCache, NotebookDiagnosticPublisher notebookDiagnosticPublisher, ProgressManager progressManager,
+    PersistentIssuesCache persistentIssuesCache) {
     this.filesIgnoredByScmCache = filesIgnoredByScmCache;
     this.clientLogger = clientLogger;
     this.logOutput = logOutput;
@@ -125,6 +145,28 @@ public class AnalysisTaskExecutor {
     this.openNotebooksCache = openNotebooksCache;
     this.notebookDiagnosticPublisher = notebookDiagnosticPublisher;
     this.progressManager = progressManager;
+    this.persistentIssuesCache = persistentIssuesCache;
+    this.parallelism = Math.max(1, Integer.parseInt(StringUtils.defaultIfBlank(System.getenv("SONARLINT_INTERNAL_ANALYSIS_PARALLELISM"),
+      String.valueOf(DEFAULT_PARALLELISM))));
+    this.moduleAnalysisExecutor = Executors.newFixedThreadPool(parallelism, Utils.threadFactory("SonarLint module analysis", true));
+  }
+
+  public void shutdown() {
+    Utils.shutdownAndAwait(moduleAnalysisExecutor, true);
+  }
+
+  /**
+   * To be called when something that is not part of the analysis result cache keys changed, like the classpath content or the server storage.
+   */
+  public void clearAnalysisResultCache() {
+    analysisResultCache.clear();
+  }
+
+  /**
+   * To be called when a file of a folder that can influence the analysis of others changed, like a build file or a dependency
+   */
+  public void clearAnalysisResultCache(WorkspaceFolderWrapper folder) {
+    analysisResultCache.clear(folder.getRootPath());
   }
 
   public void run(AnalysisTask task) {
@@ -133,6 +175,11 @@ public class AnalysisTaskExecutor {
       analyze(task);
     } catch (CanceledException e) {
       clientLogger.debug("Analysis canceled");
+      // Drop partial results, the previous ones stay published until a newer analysis completes
+      task.getFilesToAnalyze().forEach(file -> {
+        issuesCache.analysisFailed(file);
+        securityHotspotsCache.analysisFailed(file);
+      });
     } catch (Exception e) {
       clientLogger.error("Analysis failed", e);
     }
@@ -141,12 +188,22 @@ public class AnalysisTaskExecutor {
   private void analyze(AnalysisTask task) {
     var filesToAnalyze = task.getFilesToAnalyze().stream().collect(Collectors.toMap(VersionedOpenFile::getUri, identity()));
 
-    if (!task.shouldKeepHotspotsOnly()) {
-      //
-      // If the task is a "scan for hotspots", submitted files are already checked for SCM ignore status on client side
-      //
-      var scmIgnored = filesToAnalyze.keySet().stream()
-        .filter(this::scmIgnored)
+    // Issue all client lookups of the task at once, instead of one round-trip per file
+    //
+    // If the task is a "scan for hotspots", submitted files are already checked for SCM ignore status on client side
+    //
+    Map<URI, CompletableFuture<Optional<Boolean>>> scmIgnoredLookups = task.shouldKeepHotspotsOnly() ? Map.of()
+      : filesIgnoredByScmCache.getOrFetchAsync(filesToAnalyze.keySet());
+    var javaConfigLookups = javaConfigCache.getOrFetchAsync(filesToAnalyze.values().stream()
+      .filter(VersionedOpenFile::isJava)
+      .map(VersionedOpenFile::getUri)
+      .toList());
+    awaitClientLookups(task, Stream.<CompletableFuture<?>>concat(scmIgnoredLookups.values().stream(), javaConfigLookups.values().stream()).toList());
+
+    if (!scmIgnoredLookups.isEmpty()) {
+      var scmIgnored = scmIgnoredLookups.entrySet().stream()
+        .filter(lookup -> lookup.getValue().join().orElse(false))
+        .map(Entry::getKey)
         .collect(toSet());
 
       scmIgnored.forEach(f -> {
@@ -156,14 +213,68 @@ public class AnalysisTaskExecutor {
       });
     }
 
+    var javaConfigs = new HashMap<URI, Optional<GetJavaConfigResponse>>();
+    javaConfigLookups.forEach((uri, lookup) -> javaConfigs.put(uri, lookup.join()));
+
     var filesToAnalyzePerFolder = filesToAnalyze.entrySet().stream()
       .collect(groupingBy(entry -> workspaceFoldersManager.findFolderForFile(entry.getKey()), mapping(Entry::getValue, toMap(VersionedOpenFile::getUri, identity()))));
-    filesToAnalyzePerFolder.forEach((folder, filesToAnalyzeInFolder) -> analyze(task, folder, filesToAnalyzeInFolder));
+    var moduleAnalyses = new ArrayList<Runnable>();
+    filesToAnalyzePerFolder.forEach((folder, filesToAnalyzeInFolder) -> analyze(task, folder, filesToAnalyzeInFolder, javaConfigs, moduleAnalyses));
+    runModuleAnalyses(task, moduleAnalyses);
+  }
+
+  /**
+   * Wait for the replies of the client, checking regularly if the task was canceled meanwhile. Lookups never fail, and time out on their own.
+   */
+  private static void awaitClientLookups(AnalysisTask task, List<CompletableFuture<?>> lookups) {
+    var allLookups = CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new));
+    while (!allLookups.isDone()) {
+      try {
+        allLookups.get(CANCELATION_CHECK_PERIOD_MS, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        task.checkCanceled();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CanceledException();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    task.checkCanceled();
   }
 
-  private boolean scmIgnored(URI fileUri) {
-    var isIgnored = filesIgnoredByScmCache.isIgnored(fileUri).orElse(false);
-    return Boolean.TRUE.equals(isIgnored);
+  /**
+   * Module analyses of a task are independent: they never share a file, and each one targets a single engine. Run them on a bounded pool, and wait for all of them
+   * so that the next task of the scheduler never analyzes a file that is still being analyzed.
+   */
+  void runModuleAnalyses(AnalysisTask task, List<Runnable> moduleAnalyses) {
+    if (parallelism == 1 || moduleAnalyses.size() == 1) {
+      moduleAnalyses.forEach(Runnable::run);
+      return;
+    }
+    var futures = new ArrayList<Future<?>>();
+    moduleAnalyses.forEach(moduleAnalysis -> futures.add(moduleAnalysisExecutor.submit(moduleAnalysis)));
+    RuntimeException firstFailure = null;
+    for (var future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        futures.forEach(f -> f.cancel(true));
+        Thread.currentThread().interrupt();
+        throw new CanceledException();
+      } catch (ExecutionException e) {
+        var cause = e.getCause();
+        if (firstFailure == null) {
+          firstFailure = cause instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(cause);
+        } else if (!(cause instanceof CanceledException)) {
+          clientLogger.error("Analysis failed", cause);
+        }
+      }
+    }
+    if (firstFailure != null) {
+      throw firstFailure;
+    }
+    task.checkCanceled();
   }
 
   private void clearIssueCacheAndPublishEmptyDiagnostics(URI f) {
@@ -172,7 +283,8 @@ public class AnalysisTaskExecutor {
     diagnosticPublisher.publishDiagnostics(f, false);
   }
 
-  private void analyze(AnalysisTask task, Optional<WorkspaceFolderWrapper> workspaceFolder, Map<URI, VersionedOpenFile> filesToAnalyze) {
+  private void analyze(AnalysisTask task, Optional<WorkspaceFolderWrapper> workspaceFolder, Map<URI, VersionedOpenFile> filesToAnalyze,
+    Map<URI, Optional<GetJavaConfigResponse>> javaConfigs, List<Runnable> moduleAnalyses) {
     if (workspaceFolder.isPresent()) {
 
       var notebooksToAnalyze = new HashMap<URI, VersionedOpenFile>();
@@ -186,28 +298,29 @@ public class AnalysisTaskExecutor {
       });
 
       // Notebooks must be analyzed without a binding
-      analyze(task, workspaceFolder, Optional.empty(), notebooksToAnalyze);
+      analyze(task, workspaceFolder, Optional.empty(), notebooksToAnalyze, javaConfigs, moduleAnalyses);
 
       // All other files are analyzed with the binding configured for the folder
       var binding = bindingManager.getBinding(workspaceFolder.get());
-      analyze(task, workspaceFolder, binding, nonNotebooksToAnalyze);
+      analyze(task, workspaceFolder, binding, nonNotebooksToAnalyze, javaConfigs, moduleAnalyses);
     } else {
       // Files outside a folder can possibly have a different binding, so fork one analysis per binding
       // TODO is it really possible to have different settings (=binding) for files outside workspace folder
       filesToAnalyze.entrySet().stream()
         .collect(groupingBy(entry -> bindingManager.getBinding(entry.getKey()), mapping(Entry::getValue, toMap(VersionedOpenFile::getUri, identity()))))
-        .forEach((binding, files) -> analyze(task, Optional.empty(), binding, files));
+        .forEach((binding, files) -> analyze(task, Optional.empty(), binding, files, javaConfigs, moduleAnalyses));
     }
   }
 
-  private void analyze(AnalysisTask task, Optional<WorkspaceFolderWrapper> workspaceFolder, Optional<ProjectBindingWrapper> binding, Map<URI, VersionedOpenFile> filesToAnalyze) {
+  private void analyze(AnalysisTask task, Optional<WorkspaceFolderWrapper> workspaceFolder, Optional<ProjectBindingWrapper> binding, Map<URI, VersionedOpenFile> filesToAnalyze,
+    Map<URI, Optional<GetJavaConfigResponse>> javaConfigs, List<Runnable> moduleAnalyses) {
     Map<Boolean, Map<URI, VersionedOpenFile>> splitJavaAndNonJavaFiles = filesToAnalyze.entrySet().stream().collect(partitioningBy(
       entry -> entry.getValue().isJava(),
       toMap(Entry::getKey, Entry::getValue)));
     Map<URI, VersionedOpenFile> javaFiles = ofNullable(splitJavaAndNonJavaFiles.get(true)).orElse(Map.of());
     Map<URI, VersionedOpenFile> nonJavaFiles = ofNullable(splitJavaAndNonJavaFiles.get(false)).orElse(Map.of());
 
-    Map<URI, GetJavaConfigResponse> javaFilesWithConfig = collectJavaFilesWithConfig(javaFiles);
+    Map<URI, GetJavaConfigResponse> javaFilesWithConfig = collectJavaFilesWithConfig(javaFiles, javaConfigs);
     var javaFilesWithoutConfig = javaFiles.entrySet()
       .stream().filter(it -> !javaFilesWithConfig.containsKey(it.getKey()))
       .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
@@ -225,7 +338,8 @@ public class AnalysisTaskExecutor {
     Map<String, Set<URI>> javaFilesByProjectRoot = javaFilesWithConfig.entrySet().stream()
       .collect(groupingBy(e -> e.getValue().getProjectRoot(), mapping(Entry::getKey, toSet())));
     if (javaFilesByProjectRoot.isEmpty()) {
-      analyzeSingleModule(task, workspaceFolder, settings, binding, nonJavaFiles, javaFilesWithConfig);
+      var toAnalyze = nonJavaFiles;
+      moduleAnalyses.add(() -> analyzeSingleModule(task, workspaceFolder, settings, binding, toAnalyze, javaFilesWithConfig));
     } else {
       var isFirst = true;
       for (var javaFilesForSingleProjectRoot : javaFilesByProjectRoot.values()) {
@@ -233,10 +347,8 @@ public class AnalysisTaskExecutor {
         javaFilesForSingleProjectRoot.forEach(uri -> toAnalyze.put(uri, javaFiles.get(uri)));
         if (isFirst) {
           toAnalyze.putAll(nonJavaFiles);
-          analyzeSingleModule(task, workspaceFolder, settings, binding, toAnalyze, javaFilesWithConfig);
-        } else {
-          analyzeSingleModule(task, workspaceFolder, settings, binding, toAnalyze, javaFilesWithConfig);
         }
+        moduleAnalyses.add(() -> analyzeSingleModule(task, workspaceFolder, settings, binding, toAnalyze, javaFilesWithConfig));
         isFirst = false;
       }
     }
@@ -261,10 +373,10 @@ public class AnalysisTaskExecutor {
     return nonJavaFiles;
   }
 
-  private Map<URI, GetJavaConfigResponse> collectJavaFilesWithConfig(Map<URI, VersionedOpenFile> javaFiles) {
+  private Map<URI, GetJavaConfigResponse> collectJavaFilesWithConfig(Map<URI, VersionedOpenFile> javaFiles, Map<URI, Optional<GetJavaConfigResponse>> javaConfigs) {
     Map<URI, GetJavaConfigResponse> javaFilesWithConfig = new HashMap<>();
     javaFiles.forEach((uri, openFile) -> {
-      var javaConfigOpt = javaConfigCache.getOrFetch(uri);
+      var javaConfigOpt = javaConfigs.getOrDefault(uri, Optional.empty());
       if (javaConfigOpt.isEmpty()) {
         clientLogger.debug(format("Analysis of Java file \"%s\" may not show all issues because SonarLint" +
           " was unable to query project configuration (classpath, source level, ...)", uri));
@@ -293,7 +405,7 @@ public class AnalysisTaskExecutor {
       var excludedByServerConfiguration = connectedEngine.getExcludedFiles(binding.get().getBinding(),
         filesToAnalyze.keySet(),
         uri -> FileUtils.getFileRelativePath(Paths.get(baseDirUri), uri, logOutput),
-        uri -> fileTypeClassifier.isTest(settings, uri, filesToAnalyze.get(uri).isJava(), () -> javaConfigCache.getOrFetch(uri)));
+        uri -> fileTypeClassifier.isTest(settings, uri, filesToAnalyze.get(uri).isJava(), () -> ofNullable(javaConfigs.get(uri))));
       excludedByServerConfiguration.forEach(f -> {
         clientLogger.debug(format("Skip analysis of file \"%s\" excluded by server configuration", f));
         nonExcludedFiles.remove(f);
@@ -302,7 +414,10 @@ public class AnalysisTaskExecutor {
     }
 
     if (!nonExcludedFiles.isEmpty()) {
-      if (task.shouldShowProgress()) {
+      var sharedProgress = task.getProgress();
+      if (task.shouldShowProgress() && sharedProgress != null) {
+        analyzeSingleModuleNonExcluded(task, settings, binding, nonExcludedFiles, baseDirUri, javaConfigs, sharedProgress);
+      } else if (task.shouldShowProgress()) {
         progressManager.doWithProgress(String.format("SonarLint scanning %d files for hotspots", task.getFilesToAnalyze().size()), null, () -> {
           },
           progressFacade -> analyzeSingleModuleNonExcluded(task, settings, binding, nonExcludedFiles, baseDirUri, javaConfigs, progressFacade));
@@ -349,11 +464,21 @@ public class AnalysisTaskExecutor {
     var ruleKeys = new HashSet<String>();
     var issueListener = createIssueListener(filesToAnalyze, ruleKeys, task);
 
+    var analysisResultCacheKeys = task.shouldKeepHotspotsOnly() ? Map.<URI, String>of()
+      : computeAnalysisResultCacheKeys(settings, binding, filesToAnalyze, baseDirUri, javaConfigs);
+    var cachedRawIssuesPerFile = new HashMap<URI, List<Issue>>();
+    analysisResultCacheKeys.forEach((uri, key) -> analysisResultCache.get(key).ifPresent(rawIssues -> cachedRawIssuesPerFile.put(uri, rawIssues)));
+    if (!cachedRawIssuesPerFile.isEmpty()) {
+      clientLogger.debug(format("Reusing results of a previous analysis of the same content for %d %s", cachedRawIssuesPerFile.size(),
+        pluralize(cachedRawIssuesPerFile.size(), "file")));
+    }
+
     AnalysisResultsWrapper analysisResults;
     var filesSuccessfullyAnalyzed = new HashSet<>(filesToAnalyze.keySet());
     analysisResults = binding
-      .map(projectBindingWrapper -> analyzeConnected(task, projectBindingWrapper, settings, baseDirUri, filesToAnalyze, javaConfigs, issueListener, progressFacade))
-      .orElseGet(() -> analyzeStandalone(task, settings, baseDirUri, filesToAnalyze, javaConfigs, issueListener));
+      .map(projectBindingWrapper -> analyzeConnected(task, projectBindingWrapper, settings, baseDirUri, filesToAnalyze, javaConfigs, issueListener, cachedRawIssuesPerFile,
+        progressFacade))
+      .orElseGet(() -> analyzeStandalone(task, settings, baseDirUri, filesToAnalyze, javaConfigs, issueListener, cachedRawIssuesPerFile));
     checkCanceled(task, progressFacade);
     skippedPluginsNotifier.notifyOnceForSkippedPlugins(analysisResults.results, analysisResults.allPlugins);
 
@@ -374,6 +499,24 @@ public class AnalysisTaskExecutor {
         securityHotspotsCache.analysisFailed(file);
       });
 
+    analysisResults.results.languagePerFile().forEach((inputFile, language) -> {
+      URI fileUri = inputFile.getClientObject();
+      var key = analysisResultCacheKeys.get(fileUri);
+      if (language != null && key != null && filesSuccessfullyAnalyzed.contains(fileUri)) {
+        analysisResultCache.put(key, fileUri, analysisResults.rawIssuesPerFile.getOrDefault(fileUri, List.of()));
+      }
+    });
+
+    // Results of files edited during the analysis would be published with outdated locations
+    filesToAnalyze.forEach((fileUri, file) -> {
+      if (filesSuccessfullyAnalyzed.contains(fileUri) && task.isSuperseded(file)) {
+        clientLogger.debug(format("Drop results of outdated version %d of file \"%s\"", file.getVersion(), fileUri));
+        filesSuccessfullyAnalyzed.remove(fileUri);
+        issuesCache.analysisFailed(file);
+        securityHotspotsCache.analysisFailed(file);
+      }
+    });
+
     if (!filesSuccessfullyAnalyzed.isEmpty()) {
       var totalIssueCount = new AtomicInteger();
       var totalHotspotCount = new AtomicInteger();
@@ -386,6 +529,7 @@ public class AnalysisTaskExecutor {
         totalHotspotCount.addAndGet(securityHotspotsCache.count(f));
         diagnosticPublisher.publishDiagnostics(f, task.shouldKeepHotspotsOnly());
         notebookDiagnosticPublisher.cleanupDiagnosticsForCellsWithoutIssues(f);
+        persistFindings(task, file);
       });
       telemetry.addReportedRules(ruleKeys);
       if (!task.shouldKeepHotspotsOnly()) {
@@ -428,31 +572,51 @@ public class AnalysisTaskExecutor {
     };
   }
 
+  private void persistFindings(AnalysisTask task, VersionedOpenFile file) {
+    if (task.shouldKeepHotspotsOnly() || !persistentIssuesCache.isEnabled() || openNotebooksCache.isNotebook(file.getUri())) {
+      return;
+    }
+    var uri = file.getUri();
+    persistentIssuesCache.store(uri, file.getContent(), diagnosticPublisher.localDiagnostics(uri), diagnosticPublisher.securityHotspotDiagnostics(uri));
+  }
+
+  /**
+   * Lets the engine stop as soon as the task is canceled or superseded, also when the analysis reports its progress to the client
+   */
   private static final class TaskProgressMonitor implements ClientProgressMonitor {
     private final AnalysisTask task;
+    @Nullable
+    private final ClientProgressMonitor progressMonitor;
 
-    private TaskProgressMonitor(AnalysisTask task) {
+    private TaskProgressMonitor(AnalysisTask task, @Nullable ClientProgressMonitor progressMonitor) {
       this.task = task;
+      this.progressMonitor = progressMonitor;
     }
 
     @Override
     public boolean isCanceled() {
-      return task.isCanceled();
+      return task.isCanceled() || (progressMonitor != null && progressMonitor.isCanceled());
     }
 
     @Override
     public void setMessage(String msg) {
-      // No-op
+      if (progressMonitor != null) {
+        progressMonitor.setMessage(msg);
+      }
     }
 
     @Override
     public void setIndeterminate(boolean indeterminate) {
-      // No-op
+      if (progressMonitor != null) {
+        progressMonitor.setIndeterminate(indeterminate);
+      }
     }
 
     @Override
     public void setFraction(float fraction) {
-      // No-op
+      if (progressMonitor != null) {
+        progressMonitor.setFraction(fraction);
+      }
     }
   }
 
@@ -460,65 +624,132 @@ public class AnalysisTaskExecutor {
     private final AnalysisResults results;
     private final int analysisTime;
     private final Collection<PluginDetails> allPlugins;
+    private final Map<URI, List<Issue>> rawIssuesPerFile;
 
-    AnalysisResultsWrapper(AnalysisResults results, int analysisTime, Collection<PluginDetails> allPlugins) {
+    AnalysisResultsWrapper(AnalysisResults results, int analysisTime, Collection<PluginDetails> allPlugins, Map<URI, List<Issue>> rawIssuesPerFile) {
       this.results = results;
       this.analysisTime = analysisTime;
       this.allPlugins = allPlugins;
+      this.rawIssuesPerFile = rawIssuesPerFile;
     }
   }
 
   private AnalysisResultsWrapper analyzeStandalone(AnalysisTask task, WorkspaceFolderSettings settings, URI baseDirUri, Map<URI, VersionedOpenFile> filesToAnalyze,
-    Map<URI, GetJavaConfigResponse> javaConfigs, IssueListener issueListener) {
+    Map<URI, GetJavaConfigResponse> javaConfigs, IssueListener issueListener, Map<URI, List<Issue>> cachedRawIssuesPerFile) {
     var baseDir = Paths.get(baseDirUri);
-
-    var configuration = buildCommonAnalysisConfiguration(settings, baseDirUri, filesToAnalyze, javaConfigs, baseDir, StandaloneAnalysisConfiguration.builder())
-      .addExcludedRules(settingsManager.getCurrentSettings().getExcludedRules())
-      .addIncludedRules(settingsManager.getCurrentSettings().getIncludedRules())
-      .addRuleParameters(settingsManager.getCurrentSettings().getRuleParameters())
-      .build();
-
-    clientLogger.debug(format("Analysis triggered with configuration:%n%s", configuration.toString()));
+    var filesToAnalyzeWithEngine = withoutCachedResults(filesToAnalyze, cachedRawIssuesPerFile);
 
     var engine = standaloneEngineManager.getOrCreateStandaloneEngine();
-    return analyzeWithTiming(() -> engine.analyze(configuration, issueListener, new LanguageClientLogOutput(clientLogger, true), new TaskProgressMonitor(task)),
+    var rawIssuesPerFile = new HashMap<URI, List<Issue>>();
+    IssueListener recordingIssueListener = i -> {
+      accumulate(rawIssuesPerFile, i);
+      issueListener.handle(i);
+    };
+    return analyzeWithTiming(() -> {
+        if (filesToAnalyzeWithEngine.isEmpty()) {
+          return new AnalysisResults();
+        }
+        var configuration = buildCommonAnalysisConfiguration(settings, baseDirUri, filesToAnalyzeWithEngine, javaConfigs, baseDir, StandaloneAnalysisConfiguration.builder())
+          .addExcludedRules(settingsManager.getCurrentSettings().getExcludedRules())
+          .addIncludedRules(settingsManager.getCurrentSettings().getIncludedRules())
+          .addRuleParameters(settingsManager.getCurrentSettings().getRuleParameters())
+          .build();
+        clientLogger.debug(format("Analysis triggered with configuration:%n%s", configuration.toString()));
+        return engine.analyze(configuration, recordingIssueListener, new LanguageClientLogOutput(clientLogger, true), new TaskProgressMonitor(task, null));
+      },
       engine.getPluginDetails(),
-      () -> {
-      });
+      () -> cachedRawIssuesPerFile.values().forEach(issues -> issues.forEach(issueListener::handle)),
+      rawIssuesPerFile);
   }
 
   private AnalysisResultsWrapper analyzeConnected(AnalysisTask task, ProjectBindingWrapper binding, WorkspaceFolderSettings settings, URI baseDirUri,
     Map<URI, VersionedOpenFile> filesToAnalyze,
-    Map<URI, GetJavaConfigResponse> javaConfigs, IssueListener issueListener, @Nullable ProgressFacade progressFacade) {
+    Map<URI, GetJavaConfigResponse> javaConfigs, IssueListener issueListener, Map<URI, List<Issue>> cachedRawIssuesPerFile, @Nullable ProgressFacade progressFacade) {
     var baseDir = Paths.get(baseDirUri);
-
-    var configuration = buildCommonAnalysisConfiguration(settings, baseDirUri, filesToAnalyze, javaConfigs, baseDir, ConnectedAnalysisConfiguration.builder())
-      .setProjectKey(settings.getProjectKey())
-      .build();
-
-    if (settingsManager.getCurrentSettings().hasLocalRuleConfiguration()) {
-      clientLogger.debug("Local rules settings are ignored, using quality profile from server");
-    }
-    clientLogger.debug(format("Analysis triggered with configuration:%n%s", configuration.toString()));
+    var filesToAnalyzeWithEngine = withoutCachedResults(filesToAnalyze, cachedRawIssuesPerFile);
 
     var engine = binding.getEngine();
     var serverIssueTracker = binding.getServerIssueTracker();
     var issuesPerFiles = new HashMap<URI, List<Issue>>();
-    IssueListener accumulatorIssueListener = i -> {
-      var inputFile = i.getInputFile();
-      // FIXME SLVSCODE-255 support project level issues
-      if (inputFile != null) {
-        issuesPerFiles.computeIfAbsent(inputFile.getClientObject(), uri -> new ArrayList<>()).add(i);
-      }
-    };
-    var progressMonitor = progressFacade == null ? new TaskProgressMonitor(task) : progressFacade.asCoreMonitor();
-    return analyzeWithTiming(() -> engine.analyze(configuration, accumulatorIssueListener, new LanguageClientLogOutput(clientLogger, true), progressMonitor),
+    IssueListener accumulatorIssueListener = i -> accumulate(issuesPerFiles, i);
+    var progressMonitor = new TaskProgressMonitor(task, progressFacade == null ? null : progressFacade.asCoreMonitor());
+    return analyzeWithTiming(() -> {
+        if (filesToAnalyzeWithEngine.isEmpty()) {
+          return new AnalysisResults();
+        }
+        var configuration = buildCommonAnalysisConfiguration(settings, baseDirUri, filesToAnalyzeWithEngine, javaConfigs, baseDir, ConnectedAnalysisConfiguration.builder())
+          .setProjectKey(settings.getProjectKey())
+          .build();
+        if (settingsManager.getCurrentSettings().hasLocalRuleConfiguration()) {
+          clientLogger.debug("Local rules settings are ignored, using quality profile from server");
+        }
+        clientLogger.debug(format("Analysis triggered with configuration:%n%s", configuration.toString()));
+        return engine.analyze(configuration, accumulatorIssueListener, new LanguageClientLogOutput(clientLogger, true), progressMonitor);
+      },
       engine.getPluginDetails(),
-      () -> filesToAnalyze.forEach((fileUri, openFile) -> {
-        var issues = issuesPerFiles.getOrDefault(fileUri, List.of());
-        var filePath = FileUtils.toSonarQubePath(binding.toServerRelativePath(FileUtils.getFileRelativePath(baseDir, fileUri, logOutput)));
-        serverIssueTracker.matchAndTrack(filePath, issues, issueListener, task.shouldFetchServerIssues());
-      }));
+      () -> {
+        // Tracking can fetch issues from the server, don't do it for an outdated analysis
+        task.checkCanceled();
+        var issuesPerFilePath = new HashMap<String, Collection<Issue>>();
+        filesToAnalyze.keySet().forEach(fileUri -> {
+          var filePath = FileUtils.toSonarQubePath(binding.toServerRelativePath(FileUtils.getFileRelativePath(baseDir, fileUri, logOutput)));
+          issuesPerFilePath.put(filePath, cachedRawIssuesPerFile.getOrDefault(fileUri, issuesPerFiles.getOrDefault(fileUri, List.of())));
+        });
+        serverIssueTracker.matchAndTrack(issuesPerFilePath, issueListener, task.shouldFetchServerIssues());
+      },
+      issuesPerFiles);
+  }
+
+  private static void accumulate(Map<URI, List<Issue>> issuesPerFile, Issue issue) {
+    var inputFile = issue.getInputFile();
+    // FIXME SLVSCODE-255 support project level issues
+    if (inputFile != null) {
+      issuesPerFile.computeIfAbsent(inputFile.getClientObject(), uri -> new ArrayList<>()).add(issue);
+    }
+  }
+
+  private static Map<URI, VersionedOpenFile> withoutCachedResults(Map<URI, VersionedOpenFile> filesToAnalyze, Map<URI, List<Issue>> cachedRawIssuesPerFile) {
+    if (cachedRawIssuesPerFile.isEmpty()) {
+      return filesToAnalyze;
+    }
+    var result = new HashMap<>(filesToAnalyze);
+    result.keySet().removeAll(cachedRawIssuesPerFile.keySet());
+    return result;
+  }
+
+  /**
+   * Keys only depend on what can change the raw issues reported by the engine for a given file: its content, how it is classified, and the module
+   * configuration. Changes that can't be observed here (classpath content, server storage, plugins runtime) clear the cache instead.
+   */
+  private Map<URI, String> computeAnalysisResultCacheKeys(WorkspaceFolderSettings settings, Optional<ProjectBindingWrapper> binding, Map<URI, VersionedOpenFile> filesToAnalyze,
+    URI baseDirUri, Map<URI, GetJavaConfigResponse> javaConfigs) {
+    var moduleConfiguration = new StringBuilder()
+      .append(baseDirUri).append('\n')
+      .append(new TreeMap<>(settings.getAnalyzerProperties())).append('\n')
+      .append(settings.getPathToCompileCommands()).append('\n');
+    binding.ifPresentOrElse(
+      b -> moduleConfiguration.append(b.getConnectionId()).append('\n').append(b.getBinding().projectKey()),
+      () -> {
+        var currentSettings = settingsManager.getCurrentSettings();
+        moduleConfiguration.append(sorted(currentSettings.getExcludedRules())).append('\n')
+          .append(sorted(currentSettings.getIncludedRules())).append('\n')
+          .append(sorted(currentSettings.getRuleParameters().entrySet()));
+      });
+    var moduleConfigurationString = moduleConfiguration.toString();
+    var keys = new HashMap<URI, String>();
+    filesToAnalyze.forEach((uri, openFile) -> {
+      var javaConfig = javaConfigs.get(uri);
+      var javaConfiguration = javaConfig == null ? "" : String.join("\n", javaConfig.getProjectRoot(), javaConfig.getSourceLevel(),
+        Arrays.toString(javaConfig.getClasspath()), javaConfig.getVmLocation());
+      var isTest = fileTypeClassifier.isTest(settings, uri, openFile.isJava(), () -> ofNullable(javaConfig));
+      keys.put(uri, AnalysisResultCache.key(uri.toString(), openFile.getLanguageId(), String.valueOf(isTest), javaConfiguration, moduleConfigurationString,
+        openFile.getContent()));
+    });
+    return keys;
+  }
+
+  private static List<String> sorted(Collection<?> values) {
+    return values.stream().map(String::valueOf).sorted().toList();
   }
 
   private <G extends AbstractBuilder<G>> G buildCommonAnalysisConfiguration(WorkspaceFolderSettings settings, URI baseDirUri, Map<URI, VersionedOpenFile> filesToAnalyze,
@@ -544,11 +775,12 @@ public class AnalysisTaskExecutor {
    * @param analyze          Analysis callback
    * @param postAnalysisTask Code that will be run after the analysis, but still counted in the total analysis duration.
    */
-  private static AnalysisResultsWrapper analyzeWithTiming(Supplier<AnalysisResults> analyze, Collection<PluginDetails> allPlugins, Runnable postAnalysisTask) {
+  private static AnalysisResultsWrapper analyzeWithTiming(Supplier<AnalysisResults> analyze, Collection<PluginDetails> allPlugins, Runnable postAnalysisTask,
+    Map<URI, List<Issue>> rawIssuesPerFile) {
     long start = System.currentTimeMillis();
     var analysisResults = analyze.get();
     postAnalysisTask.run();
     int analysisTime = (int) (System.currentTimeMillis() - start);
-    return new AnalysisResultsWrapper(analysisResults, analysisTime, allPlugins);
+    return new AnalysisResultsWrapper(analysisResults, analysisTime, allPlugins, rawIssuesPerFile);
   }
 }
@@ -0,0 +1,95 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import org.sonarsource.sonarlint.core.commons.progress.CanceledException;
+import org.sonarsource.sonarlint.ls.progress.ProgressFacade;
+import org.sonarsource.sonarlint.ls.progress.ProgressManager;
+
+import static java.lang.String.format;
+
+/**
+ * Progress of a background analysis split in batches. A single progress is shown from the start of the first batch to the end of the last one,
+ * and canceling it also cancels the batches that are still queued.
+ */
+class BatchedAnalysisProgress {
+
+  private final ProgressManager progressManager;
+  private final String title;
+  private final int batchCount;
+  private final List<Future<?>> batches = new ArrayList<>();
+  private ProgressFacade progress;
+  private int startedBatches;
+
+  BatchedAnalysisProgress(ProgressManager progressManager, String title, int batchCount) {
+    this.progressManager = progressManager;
+    this.title = title;
+    this.batchCount = batchCount;
+  }
+
+  synchronized void addBatch(Future<?> batch) {
+    batches.add(batch);
+  }
+
+  /**
+   * Batches run one after the other, each of them reports its share of the progress
+   */
+  void runBatch(Consumer<ProgressFacade> batchAnalysis) {
+    ProgressFacade sharedProgress;
+    int batchNumber;
+    synchronized (this) {
+      if (progress == null) {
+        progress = progressManager.startProgress(title, () -> {
+        });
+      }
+      sharedProgress = progress;
+      batchNumber = ++startedBatches;
+    }
+    try {
+      if (batchCount == 1) {
+        batchAnalysis.accept(sharedProgress);
+      } else {
+        sharedProgress.doInSubProgress(format("Batch %d of %d", batchNumber, batchCount), 1.0f / batchCount, batchAnalysis);
+      }
+    } catch (CanceledException e) {
+      // Canceled while waiting for its turn, the batch did not start
+    } finally {
+      if (isCanceled(sharedProgress)) {
+        cancelQueuedBatches();
+        progressManager.endProgress(sharedProgress, "Canceled");
+      } else if (batchNumber == batchCount) {
+        progressManager.endProgress(sharedProgress, null);
+      }
+    }
+  }
+
+  private static boolean isCanceled(ProgressFacade progress) {
+    var monitor = progress.asCoreMonitor();
+    return monitor != null && monitor.isCanceled();
+  }
+
+  private synchronized void cancelQueuedBatches() {
+    batches.forEach(batch -> batch.cancel(false));
+  }
+}
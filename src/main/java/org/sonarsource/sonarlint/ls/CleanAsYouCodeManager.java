@@ -22,6 +22,7 @@ package org.sonarsource.sonarlint.ls;
 import org.jetbrains.annotations.Nullable;
 import org.sonarsource.sonarlint.ls.backend.BackendServiceFacade;
 import org.sonarsource.sonarlint.ls.file.OpenFilesCache;
+import org.sonarsource.sonarlint.ls.file.VersionedOpenFile;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceSettings;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceSettingsChangeListener;
 
@@ -42,7 +43,7 @@ public class CleanAsYouCodeManager implements WorkspaceSettingsChangeListener {
     diagnosticPublisher.setFocusOnNewCode(newValue.isFocusOnNewCode());
     if (oldValue != null && oldValue.isFocusOnNewCode() != newValue.isFocusOnNewCode()) {
       backendServiceFacade.getBackendService().toggleCleanAsYouCode();
-      openFilesCache.getAll().forEach(f -> diagnosticPublisher.publishDiagnostics(f.getUri(), false));
+      diagnosticPublisher.publishDiagnostics(openFilesCache.getAll().stream().map(VersionedOpenFile::getUri).toList(), false);
     }
   }
 }
@@ -19,9 +19,17 @@
  */
 package org.sonarsource.sonarlint.ls;
 
+import com.google.gson.JsonObject;
 import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.eclipse.lsp4j.Diagnostic;
@@ -57,6 +65,12 @@ public class DiagnosticPublisher {
 
   private boolean focusOnNewCode;
 
+  // What the client currently shows for each file, files without an entry have no diagnostics
+  private final Map<URI, List<Diagnostic>> lastPublishedDiagnostics = new ConcurrentHashMap<>();
+  private final Map<URI, List<Diagnostic>> lastPublishedHotspots = new ConcurrentHashMap<>();
+  // Issues are replaced in the caches when they change, so a conversion stays valid as long as the issue is alive
+  private final Map<Issue, ConvertedIssue> convertedIssues = Collections.synchronizedMap(new WeakHashMap<>());
+
   public DiagnosticPublisher(SonarLintExtendedLanguageClient client, TaintVulnerabilitiesCache taintVulnerabilitiesCache, IssuesCache issuesCache, IssuesCache hotspotsCache,
     OpenNotebooksCache openNotebooksCache) {
     this.client = client;
@@ -76,16 +90,49 @@ public class DiagnosticPublisher {
       return;
     }
     if (!onlyHotspots) {
-      client.publishDiagnostics(createPublishDiagnosticsParams(f));
+      publishIfChanged(lastPublishedDiagnostics, f, createPublishDiagnosticsParams(f), client::publishDiagnostics);
     }
-    client.publishSecurityHotspots(createPublishSecurityHotspotsParams(f));
+    publishIfChanged(lastPublishedHotspots, f, createPublishSecurityHotspotsParams(f), client::publishSecurityHotspots);
+  }
+
+  /**
+   * Republish many files at once, for instance after a settings change or a server sync. Only files whose diagnostics changed are sent to the client.
+   */
+  public void publishDiagnostics(Collection<URI> files, boolean onlyHotspots) {
+    files.forEach(f -> publishDiagnostics(f, onlyHotspots));
+  }
+
+  /**
+   * Record the given diagnostics as the last published ones for the file, and send them unless the client already shows the same diagnostics.
+   * Both happen while holding the entry of the file, so that what is recorded is always what the client received last.
+   */
+  private static void publishIfChanged(Map<URI, List<Diagnostic>> lastPublished, URI f, PublishDiagnosticsParams params, Consumer<PublishDiagnosticsParams> publisher) {
+    var diagnostics = params.getDiagnostics();
+    lastPublished.compute(f, (uri, previous) -> {
+      if (!diagnostics.equals(previous == null ? List.of() : previous)) {
+        publisher.accept(params);
+      }
+      return diagnostics.isEmpty() ? null : diagnostics;
+    });
   }
 
   Diagnostic convert(Map.Entry<String, VersionedIssue> entry) {
     var issue = entry.getValue().issue();
-    return prepareDiagnostic(issue, entry.getKey(), false, focusOnNewCode);
+    var entryKey = entry.getKey();
+    var currentFocusOnNewCode = focusOnNewCode;
+    var converted = convertedIssues.get(issue);
+    if (converted == null || converted.focusOnNewCode() != currentFocusOnNewCode || !converted.entryKey().equals(entryKey)) {
+      converted = new ConvertedIssue(entryKey, currentFocusOnNewCode, prepareDiagnostic(issue, entryKey, false, currentFocusOnNewCode));
+      convertedIssues.put(issue, converted);
+    }
+    return converted.diagnostic();
   }
 
+  /**
+   * Diagnostics are shared between publications, they must not be modified once created
+   */
+  private record ConvertedIssue(String entryKey, boolean focusOnNewCode, Diagnostic diagnostic) {}
+
 
   public void setFocusOnNewCode(boolean focusOnNewCode) {
     this.focusOnNewCode = focusOnNewCode;
@@ -120,6 +167,9 @@ public class DiagnosticPublisher {
 
   public static class DiagnosticData {
 
+    static final String ENTRY_KEY_PROPERTY = "entryKey";
+    static final String PERSISTED_PROPERTY = "persisted";
+
     String entryKey;
 
     @Nullable
@@ -142,6 +192,22 @@ public class DiagnosticPublisher {
       return entryKey;
     }
 
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      var that = (DiagnosticData) o;
+      return Objects.equals(entryKey, that.entryKey) && Objects.equals(serverIssueKey, that.serverIssueKey) && status == that.status;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(entryKey, serverIssueKey, status);
+    }
   }
   public static void setSource(Diagnostic diagnostic, Issue issue) {
     if (issue instanceof DelegatingIssue delegatedIssue) {
@@ -177,6 +243,38 @@ public class DiagnosticPublisher {
     }
   }
 
+  /**
+   * Republish diagnostics persisted by a previous session, until the file is analyzed again. Taint vulnerabilities are not persisted, they are taken
+   * from the live cache.
+   */
+  public void publishPersistedDiagnostics(URI f, PersistentIssuesCache.PersistedFindings findings) {
+    if (openNotebooksCache.isNotebook(f)) {
+      return;
+    }
+    var p = new PublishDiagnosticsParams();
+    p.setDiagnostics(Stream.concat(findings.getDiagnostics().stream().map(DiagnosticPublisher::markPersisted),
+        taintVulnerabilitiesCache.getAsDiagnostics(f, focusOnNewCode))
+      .sorted(DiagnosticPublisher.byLineNumber())
+      .toList());
+    p.setUri(f.toString());
+    publishIfChanged(lastPublishedDiagnostics, f, p, client::publishDiagnostics);
+    var hotspots = new PublishDiagnosticsParams();
+    hotspots.setDiagnostics(findings.getSecurityHotspots().stream().map(DiagnosticPublisher::markPersisted).toList());
+    hotspots.setUri(f.toString());
+    publishIfChanged(lastPublishedHotspots, f, hotspots, client::publishSecurityHotspots);
+  }
+
+  /**
+   * Entry keys of a previous session don't match any issue of the cache, so drop them and mark the data, for code actions to not look the issue up
+   */
+  private static Diagnostic markPersisted(Diagnostic diagnostic) {
+    if (diagnostic.getData() instanceof JsonObject data) {
+      data.remove(DiagnosticData.ENTRY_KEY_PROPERTY);
+      data.addProperty(DiagnosticData.PERSISTED_PROPERTY, true);
+    }
+    return diagnostic;
+  }
+
   private PublishDiagnosticsParams createPublishDiagnosticsParams(URI newUri) {
     var p = new PublishDiagnosticsParams();
 
@@ -187,12 +285,9 @@ public class DiagnosticPublisher {
       firstSecretIssueDetected = true;
     }
 
-    var localDiagnostics = localIssues.entrySet()
-      .stream()
-      .map(this::convert);
     var taintDiagnostics = taintVulnerabilitiesCache.getAsDiagnostics(newUri, focusOnNewCode);
 
-    var diagnosticList = Stream.concat(localDiagnostics, taintDiagnostics)
+    var diagnosticList = Stream.concat(localDiagnostics(localIssues), taintDiagnostics)
       .sorted(DiagnosticPublisher.byLineNumber())
       .toList();
     p.setDiagnostics(diagnosticList);
@@ -201,21 +296,39 @@ public class DiagnosticPublisher {
     return p;
   }
 
+  List<Diagnostic> localDiagnostics(URI uri) {
+    return localDiagnostics(issuesCache.get(uri)).toList();
+  }
+
+  private Stream<Diagnostic> localDiagnostics(Map<String, VersionedIssue> localIssues) {
+    return localIssues.entrySet()
+      .stream()
+      .map(this::convert);
+  }
+
   private PublishDiagnosticsParams createPublishSecurityHotspotsParams(URI newUri) {
     var p = new PublishDiagnosticsParams();
 
-    p.setDiagnostics(hotspotsCache.get(newUri).entrySet()
-      .stream()
-      .map(this::convert)
-      .sorted(DiagnosticPublisher.byLineNumber())
-      .toList());
+    p.setDiagnostics(securityHotspotDiagnostics(newUri));
     p.setUri(newUri.toString());
 
     return p;
   }
 
+  List<Diagnostic> securityHotspotDiagnostics(URI uri) {
+    return hotspotsCache.get(uri).entrySet()
+      .stream()
+      .map(this::convert)
+      .sorted(DiagnosticPublisher.byLineNumber())
+      .toList();
+  }
+
+  private static final Comparator<Diagnostic> BY_LINE_NUMBER = (d1, d2) -> {
+    var byLine = Integer.compare(d1.getRange().getStart().getLine(), d2.getRange().getStart().getLine());
+    return byLine != 0 ? byLine : d1.getMessage().compareTo(d2.getMessage());
+  };
+
   private static Comparator<? super Diagnostic> byLineNumber() {
-    return Comparator.comparing((Diagnostic d) -> d.getRange().getStart().getLine())
-      .thenComparing(Diagnostic::getMessage);
+    return BY_LINE_NUMBER;
   }
 }
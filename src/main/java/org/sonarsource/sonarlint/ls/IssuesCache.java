@@ -19,8 +19,10 @@
  */
 package org.sonarsource.sonarlint.ls;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -31,6 +33,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
 import org.eclipse.lsp4j.Diagnostic;
 import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
 import org.sonarsource.sonarlint.core.clientapi.backend.hotspot.HotspotStatus;
@@ -38,16 +41,15 @@ import org.sonarsource.sonarlint.ls.connected.DelegatingIssue;
 import org.sonarsource.sonarlint.ls.file.VersionedOpenFile;
 
 import static org.sonarsource.sonarlint.ls.util.Utils.hotspotReviewStatusValueOfHotspotStatus;
-import static org.sonarsource.sonarlint.ls.util.Utils.isDelegatingIssueWithServerIssueKey;
 
 public class IssuesCache {
 
-  private final Map<URI, Map<String, VersionedIssue>> issuesPerIdPerFileURI = new ConcurrentHashMap<>();
-  private final Map<URI, Map<String, VersionedIssue>> inProgressAnalysisIssuesPerIdPerFileURI = new ConcurrentHashMap<>();
+  private final Map<URI, FileIssues> issuesPerFileURI = new ConcurrentHashMap<>();
+  private final Map<URI, FileIssues> inProgressAnalysisIssuesPerFileURI = new ConcurrentHashMap<>();
 
   public void clear(URI fileUri) {
-    issuesPerIdPerFileURI.remove(fileUri);
-    inProgressAnalysisIssuesPerIdPerFileURI.remove(fileUri);
+    issuesPerFileURI.remove(fileUri);
+    inProgressAnalysisIssuesPerFileURI.remove(fileUri);
   }
 
   /**
@@ -57,34 +59,36 @@ public class IssuesCache {
    * @return the set of file URIs that were removed
    */
   public Set<URI> keepOnly(Collection<VersionedOpenFile> openFiles) {
-    var keysBeforeRemoval = new HashSet<>(issuesPerIdPerFileURI.keySet());
+    var keysBeforeRemoval = new HashSet<>(issuesPerFileURI.keySet());
     var keysToRetain = openFiles.stream().map(VersionedOpenFile::getUri).collect(Collectors.toSet());
-    issuesPerIdPerFileURI.keySet().retainAll(keysToRetain);
-    inProgressAnalysisIssuesPerIdPerFileURI.keySet().retainAll(keysToRetain);
-    keysBeforeRemoval.removeAll(issuesPerIdPerFileURI.keySet());
+    issuesPerFileURI.keySet().retainAll(keysToRetain);
+    inProgressAnalysisIssuesPerFileURI.keySet().retainAll(keysToRetain);
+    keysBeforeRemoval.removeAll(issuesPerFileURI.keySet());
     return keysBeforeRemoval;
   }
 
   public void analysisStarted(VersionedOpenFile versionedOpenFile) {
-    inProgressAnalysisIssuesPerIdPerFileURI.remove(versionedOpenFile.getUri());
+    inProgressAnalysisIssuesPerFileURI.remove(versionedOpenFile.getUri());
   }
 
   public void reportIssue(VersionedOpenFile versionedOpenFile, Issue issue) {
-    var issueId = getIssueId(issue);
-    inProgressAnalysisIssuesPerIdPerFileURI.computeIfAbsent(versionedOpenFile.getUri(), u -> new HashMap<>()).put(issueId,
-      new VersionedIssue(issue, versionedOpenFile.getVersion()));
+    inProgressAnalysisIssuesPerFileURI.computeIfAbsent(versionedOpenFile.getUri(), u -> new FileIssues())
+      .add(issue, versionedOpenFile.getVersion());
   }
 
-  private static String getIssueId(Issue issue) {
-    String issueId = null;
-    if (issue instanceof DelegatingIssue delegatingIssue) {
-      var issueUuid = delegatingIssue.getIssueId();
-      issueId = issueUuid != null ? issueUuid.toString() : null;
-    }
-    if (issueId == null) {
-      issueId = UUID.randomUUID().toString();
+  /**
+   * Issues that are not tracked by the backend get an ID derived from their content, so that the same issue keeps the same ID across analyses
+   * of the file as long as it does not move.
+   */
+  static String getIssueId(Issue issue) {
+    if (issue instanceof DelegatingIssue delegatingIssue && delegatingIssue.getIssueId() != null) {
+      return delegatingIssue.getIssueId().toString();
     }
-    return issueId;
+    var content = new StringBuilder().append(issue.getRuleKey())
+      .append('\n').append(issue.getMessage())
+      .append('\n').append(issue.getStartLine()).append(':').append(issue.getStartLineOffset())
+      .append('\n').append(issue.getEndLine()).append(':').append(issue.getEndLineOffset());
+    return UUID.nameUUIDFromBytes(content.toString().getBytes(StandardCharsets.UTF_8)).toString();
   }
 
   public int count(URI f) {
@@ -93,68 +97,61 @@ public class IssuesCache {
 
   public void analysisFailed(VersionedOpenFile versionedOpenFile) {
     // Keep issues of the previous analysis
-    inProgressAnalysisIssuesPerIdPerFileURI.remove(versionedOpenFile.getUri());
+    inProgressAnalysisIssuesPerFileURI.remove(versionedOpenFile.getUri());
   }
 
   public void analysisSucceeded(VersionedOpenFile versionedOpenFile) {
     // Swap issues
-    var newIssues = inProgressAnalysisIssuesPerIdPerFileURI.remove(versionedOpenFile.getUri());
+    var newIssues = inProgressAnalysisIssuesPerFileURI.remove(versionedOpenFile.getUri());
     if (newIssues != null) {
-      issuesPerIdPerFileURI.put(versionedOpenFile.getUri(), newIssues);
+      issuesPerFileURI.put(versionedOpenFile.getUri(), newIssues);
     } else {
-      issuesPerIdPerFileURI.remove(versionedOpenFile.getUri());
+      issuesPerFileURI.remove(versionedOpenFile.getUri());
     }
   }
 
+  /**
+   * @param key the server key of the issue, or the ID of an issue only known locally
+   */
   public void removeIssueWithServerKey(String fileUriStr, String key) {
-    var fileUri = URI.create(fileUriStr);
-    var issues = issuesPerIdPerFileURI.get(fileUri);
+    var issues = issuesPerFileURI.get(URI.create(fileUriStr));
     if (issues != null) {
-      var first = issues.entrySet()
-        .stream()
-        .filter(issueEntry -> isDelegatingIssueWithServerIssueKey(key, issueEntry) || isLocalIssueWithKey(key, issueEntry.getValue()))
-        .map(Map.Entry::getKey)
-        .findFirst();
-      first.ifPresent(issues::remove);
+      issues.removeByServerKeyOrIssueId(key);
     }
   }
 
-  private static boolean isLocalIssueWithKey(String key, VersionedIssue versionedIssue) {
-    return versionedIssue.issue() instanceof DelegatingIssue delegatingIssue
-      && (key.equals(delegatingIssue.getIssueId().toString()));
-  }
-
   public Optional<Map.Entry<String, VersionedIssue>> findIssuePerId(String fileUriStr, String serverIssueKey) {
-    var fileUri = URI.create(fileUriStr);
-    var issues = issuesPerIdPerFileURI.get(fileUri);
+    var issues = issuesPerFileURI.get(URI.create(fileUriStr));
     if (issues != null) {
-      return issues.entrySet()
-        .stream()
-        .filter(issueEntry -> isDelegatingIssueWithServerIssueKey(serverIssueKey, issueEntry))
-        .findFirst();
+      return Optional.ofNullable(issues.findByServerKey(serverIssueKey));
     }
     return Optional.empty();
   }
 
   public void updateIssueStatus(String fileUriStr, String serverIssueKey, HotspotStatus newStatus) {
-    var issuePerId = findIssuePerId(fileUriStr, serverIssueKey);
-    if (issuePerId.isPresent()) {
-      var versionedIssue = issuePerId.get().getValue();
+    var issues = issuesPerFileURI.get(URI.create(fileUriStr));
+    if (issues == null) {
+      return;
+    }
+    var issuePerId = issues.findByServerKey(serverIssueKey);
+    if (issuePerId != null) {
+      var versionedIssue = issuePerId.getValue();
       var delegatingIssue = (DelegatingIssue) versionedIssue.issue();
       var clonedDelegatingIssue = delegatingIssue.cloneWithNewStatus(hotspotReviewStatusValueOfHotspotStatus(newStatus));
-      var clonedVersionedIssue = new VersionedIssue(clonedDelegatingIssue, versionedIssue.documentVersion);
-      var issuesByKey = issuesPerIdPerFileURI.get(URI.create(fileUriStr));
-      if (issuesByKey != null) {
-        issuesByKey.put(issuePerId.get().getKey(), clonedVersionedIssue);
-      }
+      issues.replace(issuePerId.getKey(), new VersionedIssue(clonedDelegatingIssue, versionedIssue.documentVersion));
     }
   }
 
   public Optional<VersionedIssue> getIssueForDiagnostic(URI fileUri, Diagnostic d) {
     var issuesForFile = get(fileUri);
     return Optional.ofNullable(d.getData())
+      .filter(JsonObject.class::isInstance)
       .map(JsonObject.class::cast)
-      .map(jsonObject -> jsonObject.get("entryKey").getAsString())
+      // Diagnostics persisted by a previous session don't match any issue of the cache
+      .filter(jsonObject -> !jsonObject.has(DiagnosticPublisher.DiagnosticData.PERSISTED_PROPERTY))
+      .map(jsonObject -> jsonObject.get(DiagnosticPublisher.DiagnosticData.ENTRY_KEY_PROPERTY))
+      .filter(JsonElement::isJsonPrimitive)
+      .map(JsonElement::getAsString)
       .map(issuesForFile::get)
       .filter(Objects::nonNull);
   }
@@ -162,6 +159,66 @@ public class IssuesCache {
   public record VersionedIssue(Issue issue, int documentVersion) {}
 
   public Map<String, VersionedIssue> get(URI fileUri) {
-    return inProgressAnalysisIssuesPerIdPerFileURI.getOrDefault(fileUri, issuesPerIdPerFileURI.getOrDefault(fileUri, Map.of()));
+    var issues = inProgressAnalysisIssuesPerFileURI.get(fileUri);
+    if (issues == null) {
+      issues = issuesPerFileURI.get(fileUri);
+    }
+    return issues == null ? Map.of() : issues.issuesPerId;
+  }
+
+  /**
+   * Issues of a single file, indexed by ID. The ID of an issue tracked by the backend is its UUID. Issues known by the server are also indexed by their
+   * server key, this index is only allocated for files that have such issues.
+   */
+  private static final class FileIssues {
+    private final Map<String, VersionedIssue> issuesPerId = new HashMap<>();
+    @CheckForNull
+    private Map<String, String> idPerServerKey;
+
+    void add(Issue issue, int documentVersion) {
+      var id = getIssueId(issue);
+      // Same rule, message and location: keep both issues, with a still deterministic ID for the second one
+      var uniqueId = id;
+      for (var i = 1; issuesPerId.containsKey(uniqueId); i++) {
+        uniqueId = id + "-" + i;
+      }
+      issuesPerId.put(uniqueId, new VersionedIssue(issue, documentVersion));
+      var serverIssueKey = serverIssueKeyOf(issue);
+      if (serverIssueKey != null) {
+        if (idPerServerKey == null) {
+          idPerServerKey = new HashMap<>();
+        }
+        idPerServerKey.putIfAbsent(serverIssueKey, uniqueId);
+      }
+    }
+
+    @CheckForNull
+    Map.Entry<String, VersionedIssue> findByServerKey(String serverIssueKey) {
+      var id = idPerServerKey == null ? null : idPerServerKey.get(serverIssueKey);
+      var issue = id == null ? null : issuesPerId.get(id);
+      return issue == null ? null : Map.entry(id, issue);
+    }
+
+    void replace(String id, VersionedIssue issue) {
+      issuesPerId.replace(id, issue);
+    }
+
+    void removeByServerKeyOrIssueId(String key) {
+      var id = idPerServerKey == null ? null : idPerServerKey.remove(key);
+      if (id != null) {
+        issuesPerId.remove(id);
+        return;
+      }
+      var removed = issuesPerId.remove(key);
+      var serverIssueKey = removed == null ? null : serverIssueKeyOf(removed.issue());
+      if (serverIssueKey != null && idPerServerKey != null) {
+        idPerServerKey.remove(serverIssueKey, key);
+      }
+    }
+
+    @CheckForNull
+    private static String serverIssueKeyOf(Issue issue) {
+      return issue instanceof DelegatingIssue delegatingIssue ? delegatingIssue.getServerIssueKey() : null;
+    }
   }
 }
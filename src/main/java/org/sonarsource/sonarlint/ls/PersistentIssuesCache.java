@@ -0,0 +1,181 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
+import org.sonarsource.sonarlint.ls.util.Utils;
+
+/**
+ * Optional on-disk copy of the diagnostics last published for a given content of a file, so that they can be shown as soon as the file is opened again
+ * after a restart, while it is being analyzed. One JSON file is written per URI, entries are only served back for the exact same content.
+ */
+public class PersistentIssuesCache {
+
+  static final Duration MAX_AGE = Duration.ofDays(30);
+  private static final String EXTENSION = ".json";
+
+  private final Path storageDir;
+  private final LanguageClientLogOutput logOutput;
+  private final Gson gson;
+  private final ExecutorService writer;
+  private volatile boolean enabled;
+
+  public PersistentIssuesCache(Path storageDir, LanguageClientLogOutput logOutput) {
+    this.storageDir = storageDir;
+    this.logOutput = logOutput;
+    // Diagnostic fields use lsp4j specific type adapters (e.g. for Either)
+    this.gson = new MessageJsonHandler(Map.of()).getGson();
+    this.writer = Executors.newSingleThreadExecutor(Utils.threadFactory("SonarLint persistent issues", true));
+  }
+
+  public void initialize(boolean enabled) {
+    this.enabled = enabled;
+    if (enabled) {
+      submit(this::purgeOldEntries);
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void store(URI fileUri, String content, List<Diagnostic> diagnostics, List<Diagnostic> securityHotspots) {
+    if (!enabled) {
+      return;
+    }
+    var findings = new PersistedFindings(fileUri.toString(), DigestUtils.sha256Hex(content), diagnostics, securityHotspots);
+    submit(() -> write(fileUri, findings));
+  }
+
+  public Optional<PersistedFindings> load(URI fileUri, String content) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    var file = fileFor(fileUri);
+    if (!Files.isRegularFile(file)) {
+      return Optional.empty();
+    }
+    try {
+      var findings = gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), PersistedFindings.class);
+      if (findings == null || !fileUri.toString().equals(findings.uri) || !DigestUtils.sha256Hex(content).equals(findings.contentHash)) {
+        return Optional.empty();
+      }
+      return Optional.of(findings);
+    } catch (Exception e) {
+      logOutput.debug("Unable to read persisted issues of " + fileUri + ": " + e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  public void shutdown() {
+    Utils.shutdownAndAwait(writer, false);
+  }
+
+  private void submit(Runnable operation) {
+    try {
+      writer.execute(operation);
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+    }
+  }
+
+  private void write(URI fileUri, PersistedFindings findings) {
+    var file = fileFor(fileUri);
+    try {
+      Files.createDirectories(storageDir);
+      var tmpFile = Files.createTempFile(storageDir, file.getFileName().toString(), ".tmp");
+      Files.writeString(tmpFile, gson.toJson(findings), StandardCharsets.UTF_8);
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (Exception e) {
+      logOutput.debug("Unable to persist issues of " + fileUri + ": " + e.getMessage());
+    }
+  }
+
+  private void purgeOldEntries() {
+    if (!Files.isDirectory(storageDir)) {
+      return;
+    }
+    var oldestKept = Instant.now().minus(MAX_AGE);
+    try (Stream<Path> files = Files.list(storageDir)) {
+      files.filter(f -> isOlderThan(f, oldestKept)).forEach(f -> {
+        try {
+          Files.deleteIfExists(f);
+        } catch (IOException e) {
+          logOutput.debug("Unable to delete persisted issues " + f + ": " + e.getMessage());
+        }
+      });
+    } catch (IOException e) {
+      logOutput.debug("Unable to clean up persisted issues: " + e.getMessage());
+    }
+  }
+
+  private static boolean isOlderThan(Path file, Instant instant) {
+    try {
+      return Files.getLastModifiedTime(file).toInstant().isBefore(instant);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  Path fileFor(URI fileUri) {
+    return storageDir.resolve(DigestUtils.sha256Hex(fileUri.toString()) + EXTENSION);
+  }
+
+  public static class PersistedFindings {
+    private final String uri;
+    private final String contentHash;
+    private final List<Diagnostic> diagnostics;
+    private final List<Diagnostic> securityHotspots;
+
+    PersistedFindings(String uri, String contentHash, List<Diagnostic> diagnostics, List<Diagnostic> securityHotspots) {
+      this.uri = uri;
+      this.contentHash = contentHash;
+      this.diagnostics = diagnostics;
+      this.securityHotspots = securityHotspots;
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+      return diagnostics != null ? diagnostics : List.of();
+    }
+
+    public List<Diagnostic> getSecurityHotspots() {
+      return securityHotspots != null ? securityHotspots : List.of();
+    }
+  }
+}
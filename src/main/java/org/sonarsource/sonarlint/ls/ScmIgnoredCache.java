@@ -20,11 +20,15 @@
 package org.sonarsource.sonarlint.ls;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.sonarsource.sonarlint.core.commons.log.ClientLogOutput;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
 import org.sonarsource.sonarlint.ls.util.Utils;
@@ -36,12 +40,17 @@ public class ScmIgnoredCache {
   private final SonarLintExtendedLanguageClient client;
   private final LanguageClientLogOutput logOutput;
   public final Map<URI, Optional<Boolean>> filesIgnoredByUri = new ConcurrentHashMap<>();
+  private volatile boolean bulkRequestsSupported;
 
   public ScmIgnoredCache(SonarLintExtendedLanguageClient client, LanguageClientLogOutput logOutput) {
     this.client = client;
     this.logOutput = logOutput;
   }
 
+  public void initialize(boolean bulkRequestsSupported) {
+    this.bulkRequestsSupported = bulkRequestsSupported;
+  }
+
   public void didClose(URI fileUri) {
     filesIgnoredByUri.remove(fileUri);
   }
@@ -60,25 +69,80 @@ public class ScmIgnoredCache {
     return isIgnored;
   }
 
-  private CompletableFuture<Optional<Boolean>> getOrFetchAsync(URI fileUri) {
+  /**
+   * Non-blocking variant of {@link #isIgnored(URI)}. The returned future never fails, and completes with an empty result if the client does not
+   * answer within a minute.
+   */
+  public CompletableFuture<Optional<Boolean>> getOrFetchAsync(URI fileUri) {
     if (filesIgnoredByUri.containsKey(fileUri)) {
       return CompletableFuture.completedFuture(filesIgnoredByUri.get(fileUri));
     }
-    return client.isIgnoredByScm(fileUri.toString())
+    CompletableFuture<Boolean> request;
+    try {
+      request = client.isIgnoredByScm(fileUri.toString());
+    } catch (Exception e) {
+      logOutput.log(format("Unable to get SCM ignore status %s", e), ClientLogOutput.Level.WARN);
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+    return request
       .handle((r, t) -> {
         if (t != null) {
           logOutput.log(format("Unable to check if file %s is SCM ignored %s", fileUri, t), ClientLogOutput.Level.ERROR);
         }
         return r;
       })
-      .thenApply(ignored -> {
-        var ignoredOpt = ofNullable(ignored);
-        filesIgnoredByUri.put(fileUri, ignoredOpt);
-        logOutput.log(format("Cached SCM ignore status for file \"%s\": %s", fileUri,
-          ignoredOpt.map(b -> Boolean.TRUE.equals(b) ? "Ignored" : "Not ignored").orElse("Unknown")),
-          ClientLogOutput.Level.DEBUG);
-        return ignoredOpt;
-      });
+      .thenApply(ignored -> cache(fileUri, ignored))
+      .completeOnTimeout(Optional.empty(), 1, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Same as {@link #getOrFetchAsync(URI)} for several files. When the client supports it, statuses that are not cached yet are fetched with a
+   * single request.
+   */
+  public Map<URI, CompletableFuture<Optional<Boolean>>> getOrFetchAsync(Collection<URI> fileUris) {
+    var lookups = new HashMap<URI, CompletableFuture<Optional<Boolean>>>();
+    if (!bulkRequestsSupported) {
+      fileUris.forEach(fileUri -> lookups.put(fileUri, getOrFetchAsync(fileUri)));
+      return lookups;
+    }
+    var toFetch = new ArrayList<String>();
+    fileUris.forEach(fileUri -> {
+      if (filesIgnoredByUri.containsKey(fileUri)) {
+        lookups.put(fileUri, CompletableFuture.completedFuture(filesIgnoredByUri.get(fileUri)));
+      } else {
+        toFetch.add(fileUri.toString());
+      }
+    });
+    if (toFetch.isEmpty()) {
+      return lookups;
+    }
+    CompletableFuture<Map<String, Boolean>> request;
+    try {
+      request = client.areIgnoredByScm(new SonarLintExtendedLanguageClient.FileUrisParams(toFetch));
+    } catch (Exception e) {
+      logOutput.log(format("Unable to get SCM ignore status %s", e), ClientLogOutput.Level.WARN);
+      toFetch.forEach(fileUri -> lookups.put(URI.create(fileUri), CompletableFuture.completedFuture(Optional.empty())));
+      return lookups;
+    }
+    var replies = request.handle((r, t) -> {
+      if (t != null) {
+        logOutput.log(format("Unable to check if %d files are SCM ignored %s", toFetch.size(), t), ClientLogOutput.Level.ERROR);
+      }
+      return r != null ? r : Map.<String, Boolean>of();
+    });
+    toFetch.forEach(fileUri -> lookups.put(URI.create(fileUri), replies
+      .thenApply(ignoredPerUri -> cache(URI.create(fileUri), ignoredPerUri.get(fileUri)))
+      .completeOnTimeout(Optional.empty(), 1, TimeUnit.MINUTES)));
+    return lookups;
+  }
+
+  private Optional<Boolean> cache(URI fileUri, @Nullable Boolean ignored) {
+    var ignoredOpt = ofNullable(ignored);
+    filesIgnoredByUri.put(fileUri, ignoredOpt);
+    logOutput.log(format("Cached SCM ignore status for file \"%s\": %s", fileUri,
+      ignoredOpt.map(b -> Boolean.TRUE.equals(b) ? "Ignored" : "Not ignored").orElse("Unknown")),
+      ClientLogOutput.Level.DEBUG);
+    return ignoredOpt;
   }
 
 }
@@ -49,7 +49,7 @@ public class SkippedPluginsNotifier {
     this.client = client;
   }
 
-  public void notifyOnceForSkippedPlugins(AnalysisResults analysisResults, Collection<PluginDetails> allPlugins) {
+  public synchronized void notifyOnceForSkippedPlugins(AnalysisResults analysisResults, Collection<PluginDetails> allPlugins) {
     var attemptedLanguages = analysisResults.languagePerFile().values()
       .stream()
       .filter(Objects::nonNull)
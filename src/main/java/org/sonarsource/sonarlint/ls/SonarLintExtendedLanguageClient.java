@@ -89,6 +89,14 @@ public interface SonarLintExtendedLanguageClient extends LanguageClient {
   @JsonRequest("sonarlint/isIgnoredByScm")
   CompletableFuture<Boolean> isIgnoredByScm(String fileUri);
 
+  /**
+   * Bulk variant of {@link #isIgnoredByScm(String)}, only called if the client advertised support for bulk file requests.
+   *
+   * @return the SCM ignore status per file URI. Files whose status is unknown can be omitted.
+   */
+  @JsonRequest("sonarlint/areIgnoredByScm")
+  CompletableFuture<Map<String, Boolean>> areIgnoredByScm(FileUrisParams params);
+
   class ShouldAnalyseFileCheckResult {
     boolean shouldBeAnalysed;
     String reason;
@@ -526,6 +534,14 @@ public interface SonarLintExtendedLanguageClient extends LanguageClient {
   @JsonRequest("sonarlint/getJavaConfig")
   CompletableFuture<GetJavaConfigResponse> getJavaConfig(String fileUri);
 
+  /**
+   * Bulk variant of {@link #getJavaConfig(String)}, only called if the client advertised support for bulk file requests.
+   *
+   * @return the Java configuration per file URI. Files without configuration can be omitted.
+   */
+  @JsonRequest("sonarlint/getJavaConfigs")
+  CompletableFuture<Map<String, GetJavaConfigResponse>> getJavaConfigs(FileUrisParams params);
+
   class GetJavaConfigResponse {
 
     private String projectRoot;
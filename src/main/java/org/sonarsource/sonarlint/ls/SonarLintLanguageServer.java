@@ -111,11 +111,11 @@ import org.sonarsource.sonarlint.ls.connected.TaintIssuesUpdater;
 import org.sonarsource.sonarlint.ls.connected.TaintVulnerabilitiesCache;
 import org.sonarsource.sonarlint.ls.connected.api.RequestsHandlerServer;
 import org.sonarsource.sonarlint.ls.connected.events.ServerSentEventsHandler;
-import org.sonarsource.sonarlint.ls.connected.events.ServerSentEventsHandlerService;
 import org.sonarsource.sonarlint.ls.connected.notifications.SmartNotifications;
 import org.sonarsource.sonarlint.ls.connected.notifications.TaintVulnerabilityRaisedNotification;
 import org.sonarsource.sonarlint.ls.connected.sync.ServerSynchronizer;
 import org.sonarsource.sonarlint.ls.file.FileTypeClassifier;
+import org.sonarsource.sonarlint.ls.file.FolderFileSystem;
 import org.sonarsource.sonarlint.ls.file.OpenFilesCache;
 import org.sonarsource.sonarlint.ls.file.VersionedOpenFile;
 import org.sonarsource.sonarlint.ls.folders.ModuleEventsProcessor;
@@ -176,8 +176,10 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
   private final IssuesCache issuesCache;
   private final IssuesCache securityHotspotsCache;
   private final DiagnosticPublisher diagnosticPublisher;
+  private final PersistentIssuesCache persistentIssuesCache;
   private final ScmIgnoredCache scmIgnoredCache;
   private final ServerSynchronizer serverSynchronizer;
+  private final ServerSentEventsHandler serverSentEventsHandler;
   private final LanguageClientLogger lsLogOutput;
 
   private final TaintIssuesUpdater taintIssuesUpdater;
@@ -219,6 +221,8 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
     this.openNotebooksCache = new OpenNotebooksCache(lsLogOutput, notebookDiagnosticPublisher);
     this.notebookDiagnosticPublisher.setOpenNotebooksCache(openNotebooksCache);
     this.diagnosticPublisher = new DiagnosticPublisher(client, taintVulnerabilitiesCache, issuesCache, securityHotspotsCache, openNotebooksCache);
+    this.persistentIssuesCache = new PersistentIssuesCache(
+      Optional.ofNullable(EnginesFactory.sonarLintUserHomeOverride).orElse(SonarLintUserHome.get()).resolve("issues"), globalLogOutput);
     this.progressManager = new ProgressManager(client, globalLogOutput);
     this.requestsHandlerServer = new RequestsHandlerServer(client);
     var vsCodeClient = new SonarLintVSCodeClient(client, requestsHandlerServer, globalLogOutput);
@@ -236,7 +240,8 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
     this.standaloneEngineManager = new StandaloneEngineManager(enginesFactory);
     this.settingsManager.addListener(lsLogOutput);
     this.bindingManager = new ProjectBindingManager(enginesFactory, workspaceFoldersManager, settingsManager, client, globalLogOutput,
-      taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade, openNotebooksCache);
+      taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade, openNotebooksCache,
+      folder -> FolderFileSystem.fileIndexOf(folder, javaConfigCache, fileTypeClassifier));
     vsCodeClient.setBindingManager(bindingManager);
     this.telemetry = new SonarLintTelemetry(settingsManager, bindingManager, nodeJsRuntime, backendServiceFacade, globalLogOutput);
     backendServiceFacade.setTelemetry(telemetry);
@@ -248,11 +253,12 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
     vsCodeClient.setSmartNotifications(smartNotifications);
     var skippedPluginsNotifier = new SkippedPluginsNotifier(client);
     this.scmIgnoredCache = new ScmIgnoredCache(client, globalLogOutput);
-    this.moduleEventsProcessor = new ModuleEventsProcessor(standaloneEngineManager, workspaceFoldersManager, bindingManager, fileTypeClassifier, javaConfigCache);
+    this.moduleEventsProcessor = new ModuleEventsProcessor(standaloneEngineManager, workspaceFoldersManager, bindingManager, fileTypeClassifier, javaConfigCache,
+      globalLogOutput);
     var analysisTaskExecutor = new AnalysisTaskExecutor(scmIgnoredCache, lsLogOutput, globalLogOutput, workspaceFoldersManager, bindingManager, javaConfigCache, settingsManager,
       fileTypeClassifier, issuesCache, securityHotspotsCache, taintVulnerabilitiesCache, telemetry, skippedPluginsNotifier, standaloneEngineManager, diagnosticPublisher,
-      client, openNotebooksCache, notebookDiagnosticPublisher, progressManager);
-    this.analysisScheduler = new AnalysisScheduler(lsLogOutput, workspaceFoldersManager, bindingManager, openFilesCache, openNotebooksCache, analysisTaskExecutor, client);
+      client, openNotebooksCache, notebookDiagnosticPublisher, progressManager, persistentIssuesCache);
+    this.analysisScheduler = new AnalysisScheduler(lsLogOutput, workspaceFoldersManager, bindingManager, openFilesCache, openNotebooksCache, analysisTaskExecutor, client, progressManager);
     this.workspaceFoldersManager.addListener(moduleEventsProcessor);
     bindingManager.setAnalysisManager(analysisScheduler);
     this.settingsManager.addListener((WorkspaceSettingsChangeListener) analysisScheduler);
@@ -261,8 +267,8 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
     this.commandManager = new CommandManager(client, settingsManager, bindingManager, serverSynchronizer, telemetry, taintVulnerabilitiesCache,
       issuesCache, securityHotspotsCache, backendServiceFacade, workspaceFoldersManager, openNotebooksCache, globalLogOutput);
     var taintVulnerabilityRaisedNotification = new TaintVulnerabilityRaisedNotification(client, commandManager);
-    ServerSentEventsHandlerService serverSentEventsHandler = new ServerSentEventsHandler(bindingManager, taintVulnerabilitiesCache,
-      taintVulnerabilityRaisedNotification, settingsManager, workspaceFoldersManager, analysisScheduler);
+    this.serverSentEventsHandler = new ServerSentEventsHandler(bindingManager, taintVulnerabilitiesCache,
+      taintVulnerabilityRaisedNotification, settingsManager, workspaceFoldersManager, analysisScheduler, serverSynchronizer);
     vsCodeClient.setServerSentEventsHandlerService(serverSentEventsHandler);
     this.branchManager = new WorkspaceFolderBranchManager(client, bindingManager, backendServiceFacade, globalLogOutput);
     this.bindingManager.setBranchResolver(branchManager::getReferenceBranchNameForFolder);
@@ -320,11 +326,15 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
       var architecture = (String) options.get("architecture");
       var additionalAttributes = (Map<String, Object>) options.getOrDefault("additionalAttributes", Map.of());
       var showVerboseLogs = (boolean) options.getOrDefault("showVerboseLogs", true);
+      var enablePersistentIssueCache = (boolean) options.getOrDefault("enablePersistentIssueCache", false);
+      var enableBulkFileRequests = (boolean) options.getOrDefault("enableBulkFileRequests", false);
       var userAgent = productName + " " + productVersion;
 
       lsLogOutput.initialize(showVerboseLogs);
-      analysisScheduler.initialize();
       diagnosticPublisher.initialize(firstSecretDetected);
+      persistentIssuesCache.initialize(enablePersistentIssueCache);
+      javaConfigCache.initialize(enableBulkFileRequests);
+      scmIgnoredCache.initialize(enableBulkFileRequests);
 
       requestsHandlerServer.initialize(clientVersion, workspaceName);
       backendServiceFacade.setTelemetryInitParams(new TelemetryInitParams(productKey, telemetryStorage,
@@ -388,7 +398,7 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
   private static TextDocumentSyncOptions getTextDocumentSyncOptions() {
     var textDocumentSyncOptions = new TextDocumentSyncOptions();
     textDocumentSyncOptions.setOpenClose(true);
-    textDocumentSyncOptions.setChange(TextDocumentSyncKind.Full);
+    textDocumentSyncOptions.setChange(TextDocumentSyncKind.Incremental);
     return textDocumentSyncOptions;
   }
 
@@ -398,12 +408,14 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
         // prevent creation of new engines
         enginesFactory::shutdown,
         analysisScheduler::shutdown,
+        persistentIssuesCache::shutdown,
         branchManager::shutdown,
         telemetry::stop,
         settingsManager::shutdown,
         workspaceFoldersManager::shutdown,
         moduleEventsProcessor::shutdown,
         taintIssuesUpdater::shutdown,
+        serverSentEventsHandler::shutdown,
         // shutdown engines after the rest so that no operations remain on them, and they won't be recreated accidentally
         bindingManager::shutdown,
         serverSynchronizer::shutdown,
@@ -465,20 +477,24 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
       lsLogOutput.debug(String.format("Skipping text document analysis of notebook \"%s\"", uri));
       return;
     }
-    runIfAnalysisNeeded(uri.toString(), () -> {
-      var file = openFilesCache.didOpen(uri, params.getTextDocument().getLanguageId(), params.getTextDocument().getText(), params.getTextDocument().getVersion());
+    var document = params.getTextDocument();
+    // Content is tracked right away, so that incremental changes received before the client answers are not lost
+    openFilesCache.didOpenDocument(uri, document.getLanguageId(), document.getText(), document.getVersion());
+    // The document may have been closed before the client answered, in which case there is nothing to analyze
+    runIfAnalysisNeeded(uri.toString(), () -> openFilesCache.trackForAnalysis(uri).ifPresent(file -> {
+      // Show what was found on the same content in a previous session while the file is analyzed again
+      persistentIssuesCache.load(uri, file.getContent()).ifPresent(findings -> diagnosticPublisher.publishPersistedDiagnostics(uri, findings));
       analysisScheduler.didOpen(file);
       taintIssuesUpdater.updateTaintIssuesAsync(uri);
-    });
+    }));
   }
 
   @Override
   public void didChange(DidChangeTextDocumentParams params) {
     var uri = create(params.getTextDocument().getUri());
-    runIfAnalysisNeeded(params.getTextDocument().getUri(), () -> {
-      openFilesCache.didChange(uri, params.getContentChanges().get(0).getText(), params.getTextDocument().getVersion());
-      analysisScheduler.didChange(uri);
-    });
+    // Incremental changes have to be applied in the order they are received, not in the order the client answers
+    openFilesCache.didChange(uri, params.getContentChanges(), params.getTextDocument().getVersion());
+    runIfAnalysisNeeded(params.getTextDocument().getUri(), () -> analysisScheduler.didChange(uri));
   }
 
   @Override
@@ -528,6 +544,7 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
   @Override
   public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
     moduleEventsProcessor.didChangeWatchedFiles(params.getChanges());
+    analysisScheduler.didChangeWatchedFiles(params.getChanges());
   }
 
   @Override
@@ -782,7 +799,7 @@ public class SonarLintLanguageServer implements SonarLintExtendedLanguageServer,
 
   public CompletableFuture<Void> forgetFolderHotspots() {
     var filesToForget = securityHotspotsCache.keepOnly(openFilesCache.getAll());
-    filesToForget.forEach(f -> diagnosticPublisher.publishDiagnostics(f, true));
+    diagnosticPublisher.publishDiagnostics(filesToForget, true);
     return null;
   }
 
@@ -203,7 +203,7 @@ public class SonarLintVSCodeClient implements SonarLintClient {
 
   @Override
   public void didReceiveServerEvent(DidReceiveServerEventParams params) {
-    serverSentEventsHandlerService.handleEvents(params.getServerEvent());
+    serverSentEventsHandlerService.handleEvents(params.getConnectionId(), params.getServerEvent());
   }
 
   public void setSettingsManager(SettingsManager settingsManager) {
@@ -23,6 +23,7 @@ import java.io.File;
 import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -31,7 +32,11 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -59,6 +64,7 @@ import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient;
 import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient.ConnectionCheckResult;
 import org.sonarsource.sonarlint.ls.backend.BackendServiceFacade;
 import org.sonarsource.sonarlint.ls.connected.domain.TaintIssue;
+import org.sonarsource.sonarlint.ls.file.FolderFileIndex;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFolderWrapper;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFoldersManager;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
@@ -71,6 +77,7 @@ import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettingsChangeListen
 import org.sonarsource.sonarlint.ls.settings.WorkspaceSettings;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceSettingsChangeListener;
 import org.sonarsource.sonarlint.ls.util.FileUtils;
+import org.sonarsource.sonarlint.ls.util.Utils;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.function.Predicate.not;
@@ -96,20 +103,29 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
   private final DiagnosticPublisher diagnosticPublisher;
   private final BackendServiceFacade backendServiceFacade;
   private final OpenNotebooksCache openNotebooksCache;
+  private final Function<WorkspaceFolderWrapper, FolderFileIndex> fileIndexProvider;
+  /**
+   * Path prefixes of bound folders, kept when the binding cache is cleared, and reused as long as neither the files of the folder nor the
+   * storage of the project changed
+   */
+  private final ConcurrentMap<PathPrefixesKey, CachedPathPrefixes> pathPrefixesCache = new ConcurrentHashMap<>();
+  private final ConcurrentMap<BoundProject, Long> projectStorageVersions = new ConcurrentHashMap<>();
+  private final Set<BoundProject> projectsSyncedAtStartup = ConcurrentHashMap.newKeySet();
+  private final ExecutorService initialSyncExecutor;
 
   public ProjectBindingManager(EnginesFactory enginesFactory, WorkspaceFoldersManager foldersManager, SettingsManager settingsManager, SonarLintExtendedLanguageClient client,
     LanguageClientLogOutput globalLogOutput, TaintVulnerabilitiesCache taintVulnerabilitiesCache, DiagnosticPublisher diagnosticPublisher,
-    BackendServiceFacade backendServiceFacade, OpenNotebooksCache openNotebooksCache) {
+    BackendServiceFacade backendServiceFacade, OpenNotebooksCache openNotebooksCache, Function<WorkspaceFolderWrapper, FolderFileIndex> fileIndexProvider) {
     this(enginesFactory, foldersManager, settingsManager, client, new ConcurrentHashMap<>(), globalLogOutput, new ConcurrentHashMap<>(),
       taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade,
-      openNotebooksCache);
+      openNotebooksCache, fileIndexProvider, Executors.newSingleThreadExecutor(Utils.threadFactory("SonarLint initial sync", true)));
   }
 
   public ProjectBindingManager(EnginesFactory enginesFactory, WorkspaceFoldersManager foldersManager, SettingsManager settingsManager, SonarLintExtendedLanguageClient client,
     ConcurrentMap<URI, Optional<ProjectBindingWrapper>> folderBindingCache, @Nullable LanguageClientLogOutput globalLogOutput,
     ConcurrentMap<String, Optional<ConnectedSonarLintEngine>> connectedEngineCacheByConnectionId, TaintVulnerabilitiesCache taintVulnerabilitiesCache,
     DiagnosticPublisher diagnosticPublisher, BackendServiceFacade backendServiceFacade,
-    OpenNotebooksCache openNotebooksCache) {
+    OpenNotebooksCache openNotebooksCache, Function<WorkspaceFolderWrapper, FolderFileIndex> fileIndexProvider, ExecutorService initialSyncExecutor) {
     this.enginesFactory = enginesFactory;
     this.foldersManager = foldersManager;
     this.settingsManager = settingsManager;
@@ -121,6 +137,8 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
     this.diagnosticPublisher = diagnosticPublisher;
     this.backendServiceFacade = backendServiceFacade;
     this.openNotebooksCache = openNotebooksCache;
+    this.fileIndexProvider = fileIndexProvider;
+    this.initialSyncExecutor = initialSyncExecutor;
   }
 
   // Can't use constructor injection because of cyclic dependency
@@ -133,6 +151,13 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
     fileBindingCache.clear();
   }
 
+  /**
+   * To be called each time the storage of a project is updated, as the server file list might have changed
+   */
+  public void didUpdateProjectStorage(String connectionId, String projectKey) {
+    projectStorageVersions.merge(new BoundProject(connectionId, projectKey), 1L, Long::sum);
+  }
+
   /**
    * Return the binding of the given folder.
    *
@@ -171,16 +196,23 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
 
   private Optional<ProjectBindingWrapper> getBinding(Optional<WorkspaceFolderWrapper> folder, URI fileUri) {
     var bindingCache = folder.isPresent() ? folderBindingCache : fileBindingCache;
-    return bindingCache.computeIfAbsent(fileUri, k -> {
-      var settings = folder.map(WorkspaceFolderWrapper::getSettings)
-        .orElse(settingsManager.getCurrentDefaultFolderSettings());
-      if (!settings.hasBinding()) {
-        return Optional.empty();
-      } else {
-        var folderRoot = folder.map(WorkspaceFolderWrapper::getRootPath).orElse(Paths.get(fileUri).getParent());
-        return Optional.ofNullable(computeProjectBinding(settings, folderRoot));
-      }
-    });
+    var initialSync = new AtomicReference<Runnable>();
+    try {
+      return bindingCache.computeIfAbsent(fileUri, k -> {
+        var settings = folder.map(WorkspaceFolderWrapper::getSettings)
+          .orElse(settingsManager.getCurrentDefaultFolderSettings());
+        if (!settings.hasBinding()) {
+          return Optional.empty();
+        } else {
+          var folderRoot = folder.map(WorkspaceFolderWrapper::getRootPath).orElse(Paths.get(fileUri).getParent());
+          return Optional.ofNullable(computeProjectBinding(settings, folder.orElse(null), folderRoot, initialSync::set));
+        }
+      });
+    } finally {
+      // Only start the sync once the binding is cached, so that the end of the sync can invalidate it. Also start it if the binding could not be
+      // resolved from the local storage, as the sync will create it.
+      Optional.ofNullable(initialSync.get()).ifPresent(initialSyncExecutor::execute);
+    }
   }
 
   private Optional<ProjectBindingWrapper> getBindingAndRepublishTaints(Optional<WorkspaceFolderWrapper> folder, URI fileUri) {
@@ -195,8 +227,14 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
     return connectedEngineCacheByConnectionId.getOrDefault(connectionId, Optional.empty());
   }
 
+  /**
+   * Resolve the binding from the local storage, without waiting for the initial sync of the project
+   *
+   * @param initialSyncScheduler receives the initial sync of the project to run in background, if it was not done yet
+   */
   @CheckForNull
-  private ProjectBindingWrapper computeProjectBinding(WorkspaceFolderSettings settings, Path folderRoot) {
+  private ProjectBindingWrapper computeProjectBinding(WorkspaceFolderSettings settings, @Nullable WorkspaceFolderWrapper folder, Path folderRoot,
+    Consumer<Runnable> initialSyncScheduler) {
     var connectionId = requireNonNull(settings.getConnectionId());
     var endpointParams = getEndpointParamsFor(connectionId);
 
@@ -212,19 +250,76 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
     var projectKey = requireNonNull(settings.getProjectKey());
     Supplier<String> branchProvider = () -> resolveBranchNameForFolder(folderRoot.toUri(), engine, projectKey);
     var httpClient = backendServiceFacade.getBackendService().getHttpClient(connectionId);
-    syncAtStartup(engine, endpointParams, projectKey, branchProvider, httpClient, globalLogOutput);
+    var boundProject = new BoundProject(connectionId, projectKey);
+    if (projectsSyncedAtStartup.add(boundProject)) {
+      initialSyncScheduler.accept(() -> {
+        if (syncAtStartup(engine, endpointParams, projectKey, branchProvider, httpClient, globalLogOutput)) {
+          didCompleteInitialSync(boundProject);
+        } else {
+          // Bindings are left untouched, so that the server is not hammered with retries while it is unreachable
+          projectsSyncedAtStartup.remove(boundProject);
+        }
+      });
+    }
+
+    var projectBinding = folder != null ? getOrCalculatePathPrefixes(folder, boundProject, engine)
+      : calculatePathPrefixes(folderRoot, FileUtils.allRelativePathsForFilesInTree(folderRoot, globalLogOutput), projectKey, engine);
+    var issueTrackerWrapper = new ServerIssueTrackerWrapper(engine, endpointParams, projectBinding, branchProvider, httpClient,
+      backendServiceFacade, foldersManager, globalLogOutput);
+    return new ProjectBindingWrapper(connectionId, projectBinding, engine, issueTrackerWrapper);
+  }
+
+  private ProjectBinding getOrCalculatePathPrefixes(WorkspaceFolderWrapper folder, BoundProject boundProject, ConnectedSonarLintEngine engine) {
+    var cacheKey = new PathPrefixesKey(folder.getUri(), boundProject);
+    // Read versions before walking the tree, so that concurrent changes invalidate the result
+    var fileTreeVersion = folder.getFileTreeVersion();
+    var storageVersion = projectStorageVersions.getOrDefault(boundProject, 0L);
+    var cached = pathPrefixesCache.get(cacheKey);
+    if (cached != null && cached.fileTreeVersion() == fileTreeVersion && cached.storageVersion() == storageVersion) {
+      globalLogOutput.debug("Reusing path prefixes of project '%s' for folder %s", boundProject.projectKey(), folder.getRootPath());
+      return cached.projectBinding();
+    }
+    // Files of the folder are listed from the index shared with the analysis, instead of walking the tree again
+    var ideFilePaths = fileIndexProvider.apply(folder).relativePaths();
+    var projectBinding = calculatePathPrefixes(folder.getRootPath(), ideFilePaths, boundProject.projectKey(), engine);
+    pathPrefixesCache.put(cacheKey, new CachedPathPrefixes(fileTreeVersion, storageVersion, projectBinding));
+    return projectBinding;
+  }
 
-    var ideFilePaths = FileUtils.allRelativePathsForFilesInTree(folderRoot, globalLogOutput);
+  private ProjectBinding calculatePathPrefixes(Path folderRoot, Collection<String> ideFilePaths, String projectKey, ConnectedSonarLintEngine engine) {
     var projectBinding = engine.calculatePathPrefixes(projectKey, ideFilePaths);
     globalLogOutput.debug("Resolved binding %s for folder %s",
       ToStringBuilder.reflectionToString(projectBinding, ToStringStyle.SHORT_PREFIX_STYLE),
       folderRoot);
-    var issueTrackerWrapper = new ServerIssueTrackerWrapper(engine, endpointParams, projectBinding, branchProvider, httpClient,
-      backendServiceFacade, foldersManager, globalLogOutput);
-    return new ProjectBindingWrapper(connectionId, projectBinding, engine, issueTrackerWrapper);
+    return projectBinding;
   }
 
-  private static void syncAtStartup(ConnectedSonarLintEngine engine, EndpointParams endpointParams, String projectKey,
+  /**
+   * Bindings computed before the initial sync might rely on an outdated list of server files, and the analysis of open files on outdated rules
+   * and server issues
+   */
+  private void didCompleteInitialSync(BoundProject boundProject) {
+    didUpdateProjectStorage(boundProject.connectionId(), boundProject.projectKey());
+    Predicate<Optional<ProjectBindingWrapper>> isBindingOfProject = binding -> binding.isPresent()
+      && binding.get().getConnectionId().equals(boundProject.connectionId())
+      && binding.get().getBinding().projectKey().equals(boundProject.projectKey());
+    folderBindingCache.values().removeIf(isBindingOfProject);
+    fileBindingCache.values().removeIf(isBindingOfProject);
+    analysisManager.didSyncStorages();
+    forEachBoundFolder((folder, folderSettings) -> {
+      if (boundProject.connectionId().equals(folderSettings.getConnectionId()) && boundProject.projectKey().equals(folderSettings.getProjectKey())) {
+        if (folder != null) {
+          getBindingAndRepublishTaints(folder);
+        }
+        analysisManager.analyzeAllOpenFilesInFolder(folder);
+      }
+    });
+  }
+
+  /**
+   * @return false if the sync failed, so that it is attempted again during the next binding computation
+   */
+  private static boolean syncAtStartup(ConnectedSonarLintEngine engine, EndpointParams endpointParams, String projectKey,
     Supplier<String> branchProvider, HttpClient httpClient, LanguageClientLogOutput globalLogOutput) {
     try {
       engine.updateProject(endpointParams, httpClient, projectKey, null);
@@ -233,8 +328,10 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
       engine.syncServerIssues(endpointParams, httpClient, projectKey, currentBranchName, null);
       engine.syncServerTaintIssues(endpointParams, httpClient, projectKey, currentBranchName, null);
       engine.syncServerHotspots(endpointParams, httpClient, projectKey, currentBranchName, null);
+      return true;
     } catch (Exception exceptionDuringSync) {
       globalLogOutput.warn("Exception happened during initial sync with project " + projectKey, exceptionDuringSync);
+      return false;
     }
   }
 
@@ -382,6 +479,8 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
   private void clearCachesAndStopEngine(String connectionId) {
     folderBindingCache.entrySet().removeIf(e -> e.getValue().isPresent() && e.getValue().get().getConnectionId().equals(connectionId));
     fileBindingCache.entrySet().removeIf(e -> e.getValue().isPresent() && e.getValue().get().getConnectionId().equals(connectionId));
+    pathPrefixesCache.keySet().removeIf(k -> k.boundProject().connectionId().equals(connectionId));
+    projectsSyncedAtStartup.removeIf(p -> p.connectionId().equals(connectionId));
     if (connectedEngineCacheByConnectionId.containsKey(connectionId)) {
       tryStopServer(connectionId, connectedEngineCacheByConnectionId.remove(connectionId));
     }
@@ -427,6 +526,7 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
   }
 
   public void shutdown() {
+    Utils.shutdownAndAwait(initialSyncExecutor, true);
     connectedEngineCacheByConnectionId.forEach(this::tryStopServer);
   }
 
@@ -477,6 +577,19 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
     });
   }
 
+  /**
+   * Only republish taint vulnerabilities of folders bound to one of the given projects, as the storage of other projects did not change
+   */
+  public void updateTaintIssuesOfProjects(Map<String, Set<String>> projectKeysByConnectionId) {
+    forEachBoundFolder((folder, folderSettings) -> {
+      var projectKeys = projectKeysByConnectionId.get(folderSettings.getConnectionId());
+      if (folder == null || projectKeys == null || !projectKeys.contains(folderSettings.getProjectKey())) {
+        return;
+      }
+      getBindingAndRepublishTaints(folder);
+    });
+  }
+
   private void updateAllTaintIssuesForOneFolder(@Nullable WorkspaceFolderWrapper folder, ProjectBinding binding, String connectionId) {
     getStartedConnectedEngine(connectionId).ifPresent(engine -> {
       var branchName = resolveBranchNameForFolder(folder == null ? null : folder.getUri(), engine, binding.projectKey());
@@ -560,4 +673,10 @@ public class ProjectBindingManager implements WorkspaceSettingsChangeListener, W
       throw new IllegalStateException(String.format("Failed to fetch list of projects from '%s'", connectionId), downloadFailed);
     }
   }
+
+  private record BoundProject(String connectionId, String projectKey) {}
+
+  private record PathPrefixesKey(URI folderUri, BoundProject boundProject) {}
+
+  private record CachedPathPrefixes(long fileTreeVersion, long storageVersion, ProjectBinding projectBinding) {}
 }
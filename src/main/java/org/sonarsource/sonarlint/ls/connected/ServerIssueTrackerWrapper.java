@@ -23,6 +23,8 @@ import com.google.common.collect.Streams;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -94,38 +96,55 @@ public class ServerIssueTrackerWrapper {
   }
 
   public void matchAndTrack(String filePath, Collection<Issue> issues, IssueListener issueListener, boolean shouldFetchServerIssues) {
-    if (issues.isEmpty()) {
-      issueTrackerCache.put(filePath, Collections.emptyList());
+    matchAndTrack(Map.of(filePath, issues), issueListener, shouldFetchServerIssues);
+  }
+
+  /**
+   * Track the issues of all files of an analysis at once: a single tracker update, and a single backend request per workspace folder
+   */
+  public void matchAndTrack(Map<String, Collection<Issue>> issuesPerFilePath, IssueListener issueListener, boolean shouldFetchServerIssues) {
+    var issueTrackablesPerFilePath = new LinkedHashMap<String, Collection<Trackable>>();
+    var issueTrackablesPerFilePathPerFolder = new LinkedHashMap<URI, Map<String, Collection<Trackable>>>();
+    issuesPerFilePath.forEach((filePath, issues) -> {
+      if (issues.isEmpty()) {
+        issueTrackerCache.put(filePath, Collections.emptyList());
+        return;
+      }
+      var issueTrackables = toIssueTrackables(issues);
+      cachingIssueTracker.matchAndTrackAsNew(filePath, issueTrackables);
+      cachingHotspotsTracker.matchAndTrackAsNew(filePath, toHotspotTrackables(issues));
+      issueTrackablesPerFilePath.put(filePath, issueTrackables);
+      getWorkspaceFolderUri(issues, workspaceFoldersManager)
+        .ifPresent(uri -> issueTrackablesPerFilePathPerFolder.computeIfAbsent(uri, k -> new LinkedHashMap<>()).put(filePath, issueTrackables));
+    });
+    if (issueTrackablesPerFilePath.isEmpty()) {
       return;
     }
 
-    var issueTrackables = toIssueTrackables(issues);
-    cachingIssueTracker.matchAndTrackAsNew(filePath, issueTrackables);
-    cachingHotspotsTracker.matchAndTrackAsNew(filePath, toHotspotTrackables(issues));
-
+    var filePaths = issueTrackablesPerFilePath.keySet();
     if (shouldFetchServerIssues) {
-      tracker.update(endpointParams, httpClient, engine, projectBinding,
-        Collections.singleton(filePath), getReferenceBranchNameForFolder.get());
+      tracker.update(endpointParams, httpClient, engine, projectBinding, filePaths, getReferenceBranchNameForFolder.get());
     } else {
-      tracker.update(engine, projectBinding, getReferenceBranchNameForFolder.get(), Collections.singleton(filePath));
+      tracker.update(engine, projectBinding, getReferenceBranchNameForFolder.get(), filePaths);
     }
 
-    Optional<URI> workspaceFolderUri = getWorkspaceFolderUri(issues, workspaceFoldersManager);
-    workspaceFolderUri.ifPresent(uri -> matchAndTrackIssues(filePath, issueListener, shouldFetchServerIssues, issueTrackables, uri));
-    hotspotsTrackerCache.getLiveOrFail(filePath).stream()
+    issueTrackablesPerFilePathPerFolder.forEach((workspaceFolderUri, issueTrackablesPerFilePathInFolder) ->
+      matchAndTrackIssues(issueTrackablesPerFilePathInFolder, issueListener, shouldFetchServerIssues, workspaceFolderUri));
+    filePaths.forEach(filePath -> hotspotsTrackerCache.getLiveOrFail(filePath).stream()
       .filter(not(Trackable::isResolved))
-      .forEach(trackable -> issueListener.handle(new DelegatingIssue(trackable)));
+      .forEach(trackable -> issueListener.handle(new DelegatingIssue(trackable))));
   }
 
-  private void matchAndTrackIssues(String filePath, IssueListener issueListener, boolean shouldFetchServerIssues,
-    Collection<Trackable> issueTrackables, URI workspaceFolderUri) {
-    var issuesByFilepath = getClientTrackedIssuesByServerRelativePath(filePath, issueTrackables);
+  private void matchAndTrackIssues(Map<String, Collection<Trackable>> issueTrackablesPerFilePath, IssueListener issueListener, boolean shouldFetchServerIssues,
+    URI workspaceFolderUri) {
+    var issuesByFilepath = getClientTrackedIssuesByServerRelativePath(issueTrackablesPerFilePath);
     var trackWithServerIssuesResponse = Utils.safelyGetCompletableFuture(backend.getBackendService().matchIssues(
       new TrackWithServerIssuesParams(workspaceFolderUri.toString(), issuesByFilepath, shouldFetchServerIssues)
     ), logOutput);
     trackWithServerIssuesResponse.ifPresentOrElse(
-      r -> matchAndTrackIssues(filePath, issueListener, issueTrackables, r.getIssuesByServerRelativePath()),
-      () -> issueTrackables.stream().map(DelegatingIssue::new).forEach(issueListener::handle)
+      r -> issueTrackablesPerFilePath.forEach((filePath, issueTrackables) ->
+        matchAndTrackIssues(filePath, issueListener, issueTrackables, r.getIssuesByServerRelativePath())),
+      () -> issueTrackablesPerFilePath.values().forEach(issueTrackables -> issueTrackables.stream().map(DelegatingIssue::new).forEach(issueListener::handle))
     );
   }
 
@@ -148,9 +167,11 @@ public class ServerIssueTrackerWrapper {
 
 
   @NotNull
-  private static Map<String, List<ClientTrackedFindingDto>> getClientTrackedIssuesByServerRelativePath(String filePath, Collection<Trackable> issueTrackables) {
-    var clientTrackedIssueDtos = issueTrackables.stream().map(ServerIssueTrackerWrapper::createClientTrackedIssueDto).toList();
-    return Map.of(filePath, clientTrackedIssueDtos);
+  private static Map<String, List<ClientTrackedFindingDto>> getClientTrackedIssuesByServerRelativePath(Map<String, Collection<Trackable>> issueTrackablesPerFilePath) {
+    var clientTrackedIssueDtosPerFilePath = new HashMap<String, List<ClientTrackedFindingDto>>();
+    issueTrackablesPerFilePath.forEach((filePath, issueTrackables) -> clientTrackedIssueDtosPerFilePath.put(filePath,
+      issueTrackables.stream().map(ServerIssueTrackerWrapper::createClientTrackedIssueDto).toList()));
+    return clientTrackedIssueDtosPerFilePath;
   }
 
   static Optional<URI> getWorkspaceFolderUri(Collection<Issue> issues, WorkspaceFoldersManager workspaceFoldersManager) {
@@ -188,12 +209,14 @@ public class ServerIssueTrackerWrapper {
   }
 
   static Collection<Trackable> toIssueTrackables(Collection<Issue> issues) {
+    // Issues of a same file share its content, only split it once
+    var linesPerFile = new HashMap<AnalysisClientInputFile, List<String>>();
     return issues.stream()
       .filter(it -> it.getType() != RuleType.SECURITY_HOTSPOT)
       .map(issue -> {
         var inputFile = issue.getInputFile() instanceof AnalysisClientInputFile actualInputFile ? actualInputFile : null;
         if (inputFile != null) {
-          var fileLines = inputFile.contents().lines().toList();
+          var fileLines = linesPerFile.computeIfAbsent(inputFile, f -> f.contents().lines().toList());
           var textRange = issue.getTextRange();
           var textRangeContent = getTextRangeContentOfFile(fileLines, textRange);
           var startLine = issue.getStartLine();
@@ -20,60 +20,75 @@
 package org.sonarsource.sonarlint.ls.connected;
 
 import java.net.URI;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Range;
 import org.sonarsource.sonarlint.ls.AnalysisScheduler;
 import org.sonarsource.sonarlint.ls.connected.domain.TaintIssue;
 import org.sonarsource.sonarlint.ls.util.Utils;
 
-import static java.util.Collections.emptyList;
 import static org.sonarsource.sonarlint.ls.util.Utils.buildMessageWithPluralizedSuffix;
 
+/**
+ * Taint vulnerabilities of each file, indexed by key and by location, with their diagnostics converted once. Issues of a file are replaced as a
+ * whole, so that readers always see a consistent state while the analysis and server-sent events update the cache concurrently.
+ */
 public class TaintVulnerabilitiesCache {
 
-  private final Map<URI, List<TaintIssue>> taintVulnerabilitiesPerFile = new ConcurrentHashMap<>();
+  private final Map<URI, FileTaintIssues> taintVulnerabilitiesPerFile = new ConcurrentHashMap<>();
+  private final Map<String, URI> fileUriPerTaintVulnerabilityKey = new ConcurrentHashMap<>();
 
   public void didClose(URI fileUri) {
     clear(fileUri);
   }
 
   public void clear(URI fileUri) {
-    taintVulnerabilitiesPerFile.remove(fileUri);
+    taintVulnerabilitiesPerFile.computeIfPresent(fileUri, (uri, previous) -> {
+      unindex(uri, previous);
+      return null;
+    });
   }
 
   public Optional<TaintIssue> getTaintVulnerabilityForDiagnostic(URI fileUri, Diagnostic d) {
-    return taintVulnerabilitiesPerFile.getOrDefault(fileUri, Collections.emptyList())
-      .stream()
-      .filter(i -> hasSameKey(d, i) || hasSameRuleKeyAndLocation(d, i))
-      .findFirst();
-  }
-
-  private static boolean hasSameKey(Diagnostic d, TaintIssue i) {
-    return d.getData() != null && d.getData().equals(i.getKey());
+    var fileIssues = taintVulnerabilitiesPerFile.get(fileUri);
+    if (fileIssues == null) {
+      return Optional.empty();
+    }
+    if (d.getData() instanceof String key && fileIssues.issuesByKey.containsKey(key)) {
+      return Optional.of(fileIssues.issuesByKey.get(key));
+    }
+    var code = d.getCode();
+    if (code == null || !code.isLeft()) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(fileIssues.issuesByRuleKeyAndRange.get(new RuleKeyAndRange(code.getLeft(), d.getRange())));
   }
 
-  private static boolean hasSameRuleKeyAndLocation(Diagnostic d, TaintIssue i) {
-    return i.getRuleKey().equals(d.getCode().getLeft()) && Utils.locationMatches(i, d);
+  public Optional<TaintIssue> getTaintVulnerabilityByKey(String issueId) {
+    return getFileWithTaintVulnerability(issueId)
+      .map(taintVulnerabilitiesPerFile::get)
+      .map(fileIssues -> fileIssues.issuesByKey.get(issueId));
   }
 
-  public Optional<TaintIssue> getTaintVulnerabilityByKey(String issueId) {
-    return taintVulnerabilitiesPerFile.values().stream()
-      .flatMap(List::stream)
-      .filter(i -> issueId.equals(i.getKey()))
-      .findFirst();
+  public Optional<URI> getFileWithTaintVulnerability(String issueId) {
+    return Optional.ofNullable(fileUriPerTaintVulnerabilityKey.get(issueId));
   }
 
+  /**
+   * @return diagnostics shared between calls, that must not be modified
+   */
   public Stream<Diagnostic> getAsDiagnostics(URI fileUri, boolean focusOnNewCode) {
-    return taintVulnerabilitiesPerFile.getOrDefault(fileUri, emptyList())
-      .stream()
-      .flatMap(i -> TaintVulnerabilitiesCache.convert(i, focusOnNewCode).stream());
+    var fileIssues = taintVulnerabilitiesPerFile.get(fileUri);
+    return fileIssues == null ? Stream.empty() : fileIssues.getDiagnostics(focusOnNewCode).stream();
   }
 
   static Optional<Diagnostic> convert(TaintIssue issue, boolean focusOnNewCode) {
@@ -105,16 +120,31 @@ public class TaintVulnerabilitiesCache {
   }
 
   public void reload(URI fileUri, List<TaintIssue> taintIssues) {
-    taintVulnerabilitiesPerFile.put(fileUri, taintIssues);
+    taintVulnerabilitiesPerFile.compute(fileUri, (uri, previous) -> {
+      if (previous != null) {
+        unindex(uri, previous);
+      }
+      var fileIssues = new FileTaintIssues(taintIssues);
+      fileIssues.issuesByKey.keySet().forEach(key -> fileUriPerTaintVulnerabilityKey.put(key, uri));
+      return fileIssues;
+    });
   }
 
   public void removeTaintIssue(String fileUriStr, String key) {
     var fileUri = URI.create(fileUriStr);
-    var issues = taintVulnerabilitiesPerFile.get(fileUri);
-    if (issues != null) {
-      var issueToRemove = issues.stream().filter(taintIssue -> taintIssue.getKey().equals(key)).findFirst();
-      issueToRemove.ifPresent(issues::remove);
-    }
+    taintVulnerabilitiesPerFile.computeIfPresent(fileUri, (uri, previous) -> {
+      var issueToRemove = previous.issuesByKey.get(key);
+      if (issueToRemove == null) {
+        return previous;
+      }
+      fileUriPerTaintVulnerabilityKey.remove(key, uri);
+      return new FileTaintIssues(previous.issues.stream().filter(taintIssue -> taintIssue != issueToRemove).toList());
+    });
+  }
+
+  private void unindex(URI fileUri, FileTaintIssues fileIssues) {
+    // The same issue may have been reloaded for another file in the meantime
+    fileIssues.issuesByKey.keySet().forEach(key -> fileUriPerTaintVulnerabilityKey.remove(key, fileUri));
   }
 
   public Set<URI> getAllFilesWithTaintIssues(){
@@ -122,6 +152,48 @@ public class TaintVulnerabilitiesCache {
   }
 
   public Map<URI, List<TaintIssue>> getTaintVulnerabilitiesPerFile() {
-    return taintVulnerabilitiesPerFile;
+    return taintVulnerabilitiesPerFile.entrySet().stream()
+      .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().issues));
+  }
+
+  private record RuleKeyAndRange(@Nullable String ruleKey, Range range) {
+  }
+
+  private static final class FileTaintIssues {
+    private final List<TaintIssue> issues;
+    private final Map<String, TaintIssue> issuesByKey = new HashMap<>();
+    private final Map<RuleKeyAndRange, TaintIssue> issuesByRuleKeyAndRange = new HashMap<>();
+    private volatile List<Diagnostic> diagnostics;
+    private volatile List<Diagnostic> diagnosticsFocusedOnNewCode;
+
+    private FileTaintIssues(List<TaintIssue> issues) {
+      this.issues = List.copyOf(issues);
+      this.issues.forEach(issue -> {
+        if (issue.getKey() != null) {
+          issuesByKey.putIfAbsent(issue.getKey(), issue);
+        }
+        issuesByRuleKeyAndRange.putIfAbsent(new RuleKeyAndRange(issue.getRuleKey(), Utils.convert(issue)), issue);
+      });
+    }
+
+    private List<Diagnostic> getDiagnostics(boolean focusOnNewCode) {
+      // Conversion is idempotent, so concurrent callers may convert twice but never see a partial list
+      if (focusOnNewCode) {
+        if (diagnosticsFocusedOnNewCode == null) {
+          diagnosticsFocusedOnNewCode = convertAll(true);
+        }
+        return diagnosticsFocusedOnNewCode;
+      }
+      if (diagnostics == null) {
+        diagnostics = convertAll(false);
+      }
+      return diagnostics;
+    }
+
+    private List<Diagnostic> convertAll(boolean focusOnNewCode) {
+      return issues.stream()
+        .flatMap(i -> TaintVulnerabilitiesCache.convert(i, focusOnNewCode).stream())
+        .toList();
+    }
   }
 }
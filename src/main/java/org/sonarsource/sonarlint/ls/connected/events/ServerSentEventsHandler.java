@@ -19,8 +19,18 @@
  */
 package org.sonarsource.sonarlint.ls.connected.events;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.sonarsource.sonarlint.core.commons.push.ServerEvent;
 import org.sonarsource.sonarlint.core.serverapi.push.IssueChangedEvent;
 import org.sonarsource.sonarlint.core.serverapi.push.ServerHotspotEvent;
@@ -30,44 +40,100 @@ import org.sonarsource.sonarlint.ls.AnalysisScheduler;
 import org.sonarsource.sonarlint.ls.connected.ProjectBindingManager;
 import org.sonarsource.sonarlint.ls.connected.TaintVulnerabilitiesCache;
 import org.sonarsource.sonarlint.ls.connected.notifications.TaintVulnerabilityRaisedNotification;
+import org.sonarsource.sonarlint.ls.connected.sync.ServerSynchronizer;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFoldersManager;
 import org.sonarsource.sonarlint.ls.settings.SettingsManager;
+import org.sonarsource.sonarlint.ls.util.Utils;
 
 import static org.sonarsource.sonarlint.ls.settings.SettingsManager.DEFAULT_CONNECTION_ID;
 
 public class ServerSentEventsHandler implements ServerSentEventsHandlerService {
+  private static final long DEFAULT_REFRESH_DELAY_MS = 200;
+
   private final ProjectBindingManager projectBindingManager;
   private final TaintVulnerabilitiesCache taintVulnerabilitiesCache;
   private final TaintVulnerabilityRaisedNotification taintVulnerabilityRaisedNotification;
   private final SettingsManager settingsManager;
   private final WorkspaceFoldersManager workspaceFoldersManager;
   private final AnalysisScheduler analysisScheduler;
+  private final ServerSynchronizer serverSynchronizer;
+  // Events often come in bursts (e.g. bulk change of issues on the server), refresh each impacted file once per burst
+  private final ScheduledExecutorService refreshScheduler;
+  private final long refreshDelayMs;
+  private final Set<URI> filesToRefresh = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean refreshScheduled = new AtomicBoolean();
 
   public ServerSentEventsHandler(ProjectBindingManager projectBindingManager, TaintVulnerabilitiesCache taintVulnerabilitiesCache,
     TaintVulnerabilityRaisedNotification taintVulnerabilityRaisedNotification, SettingsManager settingsManager,
-    WorkspaceFoldersManager workspaceFoldersManager, AnalysisScheduler analysisScheduler) {
+    WorkspaceFoldersManager workspaceFoldersManager, AnalysisScheduler analysisScheduler, ServerSynchronizer serverSynchronizer) {
+    this(projectBindingManager, taintVulnerabilitiesCache, taintVulnerabilityRaisedNotification, settingsManager, workspaceFoldersManager,
+      analysisScheduler, serverSynchronizer, DEFAULT_REFRESH_DELAY_MS);
+  }
+
+  @VisibleForTesting
+  ServerSentEventsHandler(ProjectBindingManager projectBindingManager, TaintVulnerabilitiesCache taintVulnerabilitiesCache,
+    TaintVulnerabilityRaisedNotification taintVulnerabilityRaisedNotification, SettingsManager settingsManager,
+    WorkspaceFoldersManager workspaceFoldersManager, AnalysisScheduler analysisScheduler, ServerSynchronizer serverSynchronizer, long refreshDelayMs) {
     this.projectBindingManager = projectBindingManager;
     this.taintVulnerabilitiesCache = taintVulnerabilitiesCache;
     this.taintVulnerabilityRaisedNotification = taintVulnerabilityRaisedNotification;
     this.settingsManager = settingsManager;
     this.workspaceFoldersManager = workspaceFoldersManager;
     this.analysisScheduler = analysisScheduler;
+    this.serverSynchronizer = serverSynchronizer;
+    this.refreshDelayMs = refreshDelayMs;
+    this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(Utils.threadFactory("SonarLint taint vulnerabilities refresh", true));
   }
 
   @Override
-  public void handleEvents(ServerEvent event) {
-    if (event instanceof TaintVulnerabilityRaisedEvent) {
+  public void handleEvents(String connectionId, ServerEvent event) {
+    if (event instanceof TaintVulnerabilityRaisedEvent taintVulnerabilityRaisedEvent) {
+      serverSynchronizer.didReceiveServerEvent(connectionId, taintVulnerabilityRaisedEvent.getProjectKey());
       handleTaintVulnerabilityRaisedEvent(event);
-    } else if (event instanceof TaintVulnerabilityClosedEvent ||
-      event instanceof IssueChangedEvent) {
-      taintVulnerabilitiesCache.getAllFilesWithTaintIssues()
-        .forEach(projectBindingManager::updateTaintIssueCacheFromStorageForFile);
+    } else if (event instanceof TaintVulnerabilityClosedEvent taintVulnerabilityClosedEvent) {
+      serverSynchronizer.didReceiveServerEvent(connectionId, taintVulnerabilityClosedEvent.getProjectKey());
+      refreshFilesWithTaintVulnerabilities(Set.of(taintVulnerabilityClosedEvent.getTaintIssueKey()));
+    } else if (event instanceof IssueChangedEvent issueChangedEvent) {
+      serverSynchronizer.didReceiveServerEvent(connectionId, issueChangedEvent.getProjectKey());
+      refreshFilesWithTaintVulnerabilities(issueChangedEvent.getImpactedIssueKeys());
     } else if (event instanceof ServerHotspotEvent serverHotspotEvent) {
       var fileUri = getFileUriFromEvent(serverHotspotEvent);
       fileUri.ifPresent(analysisScheduler::didReceiveHotspotEvent);
     }
   }
 
+  /**
+   * Only files that have one of the given taint vulnerabilities need to be refreshed. Other keys are regular issues, or taint vulnerabilities of
+   * files that are not open, that are not in the cache.
+   */
+  private void refreshFilesWithTaintVulnerabilities(Collection<String> issueKeys) {
+    var impactedFiles = new ArrayList<URI>();
+    issueKeys.forEach(issueKey -> taintVulnerabilitiesCache.getFileWithTaintVulnerability(issueKey).ifPresent(impactedFiles::add));
+    if (impactedFiles.isEmpty()) {
+      return;
+    }
+    filesToRefresh.addAll(impactedFiles);
+    if (refreshScheduled.compareAndSet(false, true)) {
+      try {
+        refreshScheduler.schedule(this::refreshPendingFiles, refreshDelayMs, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // Shutting down
+      }
+    }
+  }
+
+  private void refreshPendingFiles() {
+    // Events received from now on schedule another refresh
+    refreshScheduled.set(false);
+    var files = new ArrayList<>(filesToRefresh);
+    filesToRefresh.removeAll(files);
+    files.forEach(projectBindingManager::updateTaintIssueCacheFromStorageForFile);
+  }
+
+  public void shutdown() {
+    refreshScheduler.shutdownNow();
+  }
+
   private Optional<URI> getFileUriFromEvent(ServerHotspotEvent event) {
     var serverPath = event.getFilePath();
     return projectBindingManager.serverPathToFileUri(serverPath);
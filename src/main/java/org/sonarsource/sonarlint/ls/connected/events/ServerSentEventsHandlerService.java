@@ -22,6 +22,6 @@ package org.sonarsource.sonarlint.ls.connected.events;
 import org.sonarsource.sonarlint.core.commons.push.ServerEvent;
 
 public interface ServerSentEventsHandlerService {
-  void handleEvents(ServerEvent event);
+  void handleEvents(String connectionId, ServerEvent event);
   void handleTaintVulnerabilityRaisedEvent(ServerEvent event);
 }
@@ -19,11 +19,27 @@
  */
 package org.sonarsource.sonarlint.ls.connected.sync;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.lsp4j.MessageParams;
@@ -32,19 +48,32 @@ import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.sonarsource.sonarlint.core.client.api.connected.ConnectedSonarLintEngine;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.TextRangeWithHash;
 import org.sonarsource.sonarlint.core.commons.progress.CanceledException;
 import org.sonarsource.sonarlint.core.commons.progress.ClientProgressMonitor;
 import org.sonarsource.sonarlint.core.http.HttpClient;
 import org.sonarsource.sonarlint.core.serverapi.EndpointParams;
+import org.sonarsource.sonarlint.core.serverconnection.ProjectBinding;
 import org.sonarsource.sonarlint.ls.AnalysisScheduler;
 import org.sonarsource.sonarlint.ls.backend.BackendServiceFacade;
 import org.sonarsource.sonarlint.ls.connected.ProjectBindingManager;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
+import org.sonarsource.sonarlint.ls.progress.NoOpProgressFacade;
 import org.sonarsource.sonarlint.ls.progress.ProgressFacade;
 import org.sonarsource.sonarlint.ls.progress.ProgressManager;
+import org.sonarsource.sonarlint.ls.util.Utils;
 
 public class ServerSynchronizer {
 
+  private static final int DEFAULT_PARALLELISM = 4;
+  private static final int DEFAULT_PARALLELISM_PER_CONNECTION = 2;
+  /**
+   * The timer checks this many times per sync period which projects are due, so that projects with server events don't wait for a full period
+   */
+  private static final int CHECKS_PER_SYNC_PERIOD = 4;
+  private static final int MAX_IDLE_BACKOFF_FACTOR = 8;
+
   private final LanguageClient client;
   private final ProgressManager progressManager;
   private final ProjectBindingManager bindingManager;
@@ -52,39 +81,64 @@ public class ServerSynchronizer {
   private final Timer serverSyncTimer;
   private final BackendServiceFacade backendServiceFacade;
   private final LanguageClientLogOutput logOutput;
+  private final ExecutorService syncExecutor;
+  private final int parallelismPerConnection;
+  private final LongSupplier clock;
+  private final long syncPeriod;
+  private final long startTime;
+  private final Map<SyncedProject, SyncWatermark> syncWatermarks = new ConcurrentHashMap<>();
+  private final Set<SyncedProject> projectsWithServerEvents = ConcurrentHashMap.newKeySet();
+  private final Set<String> connectionsWithServerEvents = ConcurrentHashMap.newKeySet();
 
   public ServerSynchronizer(LanguageClient client, ProgressManager progressManager, ProjectBindingManager bindingManager,
     AnalysisScheduler analysisScheduler, BackendServiceFacade backendServiceFacade, LanguageClientLogOutput logOutput) {
-    this(client, progressManager, bindingManager, analysisScheduler, new Timer("Binding updates checker"), backendServiceFacade, logOutput);
+    this(client, progressManager, bindingManager, analysisScheduler, new Timer("Binding updates checker"), backendServiceFacade, logOutput,
+      System::currentTimeMillis);
   }
 
   ServerSynchronizer(LanguageClient client, ProgressManager progressManager, ProjectBindingManager bindingManager,
-    AnalysisScheduler analysisScheduler, Timer serverSyncTimer, BackendServiceFacade backendServiceFacade, LanguageClientLogOutput logOutput) {
+    AnalysisScheduler analysisScheduler, Timer serverSyncTimer, BackendServiceFacade backendServiceFacade, LanguageClientLogOutput logOutput,
+    LongSupplier clock) {
     this.client = client;
     this.progressManager = progressManager;
     this.bindingManager = bindingManager;
     this.analysisScheduler = analysisScheduler;
     this.backendServiceFacade = backendServiceFacade;
     this.logOutput = logOutput;
-    var syncPeriod = Long.parseLong(StringUtils.defaultIfBlank(System.getenv("SONARLINT_INTERNAL_SYNC_PERIOD"), "3600")) * 1000;
+    this.clock = clock;
+    this.startTime = clock.getAsLong();
+    var parallelism = Math.max(1, Integer.parseInt(StringUtils.defaultIfBlank(System.getenv("SONARLINT_INTERNAL_SYNC_PARALLELISM"),
+      String.valueOf(DEFAULT_PARALLELISM))));
+    this.parallelismPerConnection = Math.max(1, Integer.parseInt(StringUtils.defaultIfBlank(System.getenv("SONARLINT_INTERNAL_SYNC_PARALLELISM_PER_CONNECTION"),
+      String.valueOf(DEFAULT_PARALLELISM_PER_CONNECTION))));
+    this.syncExecutor = Executors.newFixedThreadPool(parallelism, Utils.threadFactory("SonarLint server synchronization", true));
+    this.syncPeriod = Long.parseLong(StringUtils.defaultIfBlank(System.getenv("SONARLINT_INTERNAL_SYNC_PERIOD"), "3600")) * 1000;
+    var checkPeriod = Math.max(1, syncPeriod / CHECKS_PER_SYNC_PERIOD);
     this.serverSyncTimer = serverSyncTimer;
-    this.serverSyncTimer.scheduleAtFixedRate(new SyncTask(), syncPeriod, syncPeriod);
+    this.serverSyncTimer.scheduleAtFixedRate(new SyncTask(), checkPeriod, checkPeriod);
   }
 
   public void updateAllBindings(CancelChecker cancelToken, @Nullable Either<String, Integer> workDoneToken) {
     progressManager.doWithProgress("Update bindings", workDoneToken, cancelToken, progress -> {
       // Clear cached bindings to force rebind during next analysis
       bindingManager.clearBindingCache();
-      updateBindings(bindingManager.getActiveConnectionsAndProjects(), progress);
+      var activeConnectionsAndProjects = bindingManager.getActiveConnectionsAndProjects();
+      var syncTime = clock.getAsLong();
+      var syncedProjects = updateBindings(activeConnectionsAndProjects, progress);
+      recordSync(syncedProjects, syncTime, null);
       bindingManager.updateAllTaintIssues();
     });
   }
 
-  private void updateBindings(Map<String, Map<String, Set<String>>> projectKeyByConnectionIdsToUpdate,
+  private Set<SyncedProject> updateBindings(Map<String, Map<String, Set<String>>> projectKeyByConnectionIdsToUpdate,
     ProgressFacade progress) {
-    var failedConnectionIds = tryUpdateConnectionsAndBoundProjectStorages(projectKeyByConnectionIdsToUpdate, progress);
+    var syncedProjects = ConcurrentHashMap.<SyncedProject>newKeySet();
+    // All taint vulnerabilities are republished after an update of the bindings
+    var failedConnectionIds = syncConnections(projectKeyByConnectionIdsToUpdate, true, progress, syncedProjects, ConcurrentHashMap.newKeySet());
+    analysisScheduler.didSyncStorages();
     showOperationResult(failedConnectionIds);
     triggerAnalysisOfAllOpenFilesInBoundFolders(failedConnectionIds);
+    return syncedProjects;
   }
 
   private void triggerAnalysisOfAllOpenFilesInBoundFolders(Set<String> failedConnectionIds) {
@@ -105,82 +159,350 @@ public class ServerSynchronizer {
     }
   }
 
-  private Set<String> tryUpdateConnectionsAndBoundProjectStorages(Map<String, Map<String, Set<String>>> projectKeyByConnectionIdsToUpdate, ProgressFacade progress) {
-    var failedConnectionIds = new LinkedHashSet<String>();
-    projectKeyByConnectionIdsToUpdate.forEach(
-      (connectionId, projectKeys) -> {
-        var progressFraction = 1.0f / projectKeyByConnectionIdsToUpdate.size();
-        var httpClient = backendServiceFacade.getBackendService().getHttpClient(connectionId);
-        tryUpdateConnectionAndBoundProjectsStorages(progress, failedConnectionIds, connectionId, projectKeys, progressFraction, httpClient);
-      });
+  /**
+   * Connections are independent, and so are projects of a connection once the connection storage is synchronized. Run them concurrently, with a limited
+   * number of concurrent requests per connection to not overload a single server.
+   *
+   * @param updateProjectStorages false to only synchronize the storages of started engines, as the periodic synchronization does
+   * @param syncedProjects receives the projects, and connections without projects, whose storages were entirely synchronized
+   * @param projectsWithTaintChanges receives the projects whose taint vulnerabilities were changed by the synchronization of one of their branches
+   * @return the IDs of connections that could not be updated
+   */
+  private Set<String> syncConnections(Map<String, Map<String, Set<String>>> branchNamesByProjectKeyByConnectionId, boolean updateProjectStorages,
+    ProgressFacade progress, Set<SyncedProject> syncedProjects, Set<SyncedProject> projectsWithTaintChanges) {
+    var failedConnectionIds = Collections.synchronizedSet(new LinkedHashSet<String>());
+    var aggregatedProgress = new AggregatedProgress(progress, branchNamesByProjectKeyByConnectionId.values().stream()
+      .mapToInt(branchNamesByProjectKey -> countSteps(branchNamesByProjectKey, updateProjectStorages))
+      .sum());
+    var connectionSyncs = new ArrayList<CompletableFuture<Void>>();
+    branchNamesByProjectKeyByConnectionId.forEach((connectionId, branchNamesByProjectKey) -> connectionSyncs.add(
+      syncConnection(connectionId, branchNamesByProjectKey, updateProjectStorages, failedConnectionIds, syncedProjects, projectsWithTaintChanges,
+        aggregatedProgress)));
+    try {
+      CompletableFuture.allOf(connectionSyncs.toArray(CompletableFuture[]::new)).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof CanceledException canceled) {
+        throw canceled;
+      }
+      throw e;
+    }
     return failedConnectionIds;
   }
 
-  private void tryUpdateConnectionAndBoundProjectsStorages(ProgressFacade progress, Set<String> failedConnectionIds, String connectionId,
-    Map<String, Set<String>> branchNamesByProjectKey, float progressFraction, HttpClient httpClient) {
-    progress.doInSubProgress(connectionId, progressFraction, subProgress -> {
-      var endpointParams = bindingManager.getEndpointParamsFor(connectionId);
-      if (endpointParams == null) {
-        failedConnectionIds.add(connectionId);
-        return;
-      }
-      var engineOpt = bindingManager.getOrCreateConnectedEngine(connectionId);
-      if (engineOpt.isEmpty()) {
+  private static int countSteps(Map<String, Set<String>> branchNamesByProjectKey, boolean updateProjectStorages) {
+    var branchCount = branchNamesByProjectKey.values().stream().mapToInt(Set::size).sum();
+    return (updateProjectStorages ? branchNamesByProjectKey.size() : 0) + 1 + branchCount;
+  }
+
+  private CompletableFuture<Void> syncConnection(String connectionId, Map<String, Set<String>> branchNamesByProjectKey, boolean updateProjectStorages,
+    Set<String> failedConnectionIds, Set<SyncedProject> syncedProjects, Set<SyncedProject> projectsWithTaintChanges, AggregatedProgress progress) {
+    var httpClient = backendServiceFacade.getBackendService().getHttpClient(connectionId);
+    var endpointParams = bindingManager.getEndpointParamsFor(connectionId);
+    Optional<ConnectedSonarLintEngine> engineOpt;
+    if (endpointParams == null) {
+      engineOpt = Optional.empty();
+    } else {
+      engineOpt = updateProjectStorages ? bindingManager.getOrCreateConnectedEngine(connectionId) : bindingManager.getStartedConnectedEngine(connectionId);
+    }
+    if (engineOpt.isEmpty()) {
+      if (updateProjectStorages) {
         failedConnectionIds.add(connectionId);
-        return;
       }
-      subProgress.doInSubProgress("Update projects storages", 0.5f, s -> tryUpdateBoundProjectsStorage(
-        branchNamesByProjectKey.keySet(), endpointParams, engineOpt.get(), httpClient, s));
-      subProgress.doInSubProgress("Sync projects storages", 0.5f, s -> syncOneEngine(
-        connectionId, branchNamesByProjectKey, engineOpt.get(), httpClient, s));
-    });
+      progress.stepsCompleted(connectionId, countSteps(branchNamesByProjectKey, updateProjectStorages));
+      return CompletableFuture.completedFuture(null);
+    }
+    var engine = engineOpt.get();
+    var connectionSteps = new ConnectionSteps();
+
+    var projectStorageUpdates = new LinkedHashMap<String, CompletableFuture<Boolean>>();
+    if (updateProjectStorages) {
+      branchNamesByProjectKey.keySet().forEach(projectKey -> projectStorageUpdates.put(projectKey, runStep(connectionSteps, progress, connectionId + " - " + projectKey,
+        () -> tryUpdateProjectStorage(connectionId, projectKey, endpointParams, engine, httpClient, progress))));
+    }
+    return CompletableFuture.allOf(projectStorageUpdates.values().toArray(CompletableFuture[]::new))
+      .thenCompose(v -> runStep(connectionSteps, progress, connectionId,
+        () -> trySync(connectionId, branchNamesByProjectKey.keySet(), engine, httpClient, progress)))
+      .thenCompose(synced -> {
+        if (synced && branchNamesByProjectKey.isEmpty()) {
+          syncedProjects.add(new SyncedProject(connectionId, null));
+        }
+        var projectSyncs = new ArrayList<CompletableFuture<Void>>();
+        branchNamesByProjectKey.forEach((projectKey, branchNames) -> {
+          if (!synced) {
+            progress.stepsCompleted(connectionId, branchNames.size());
+            return;
+          }
+          // Branches of a project share its issue storage, so only projects are synchronized concurrently
+          var projectSync = projectStorageUpdates.getOrDefault(projectKey, CompletableFuture.completedFuture(true));
+          for (var branchName : branchNames) {
+            projectSync = projectSync.thenCompose(previousStepsSynced -> runStep(connectionSteps, progress, connectionId + " - " + projectKey + " - " + branchName,
+              () -> trySyncIssuesForBranch(engine, endpointParams, connectionId, projectKey, branchName, httpClient, progress, projectsWithTaintChanges))
+              .thenApply(branchSynced -> previousStepsSynced && branchSynced));
+          }
+          projectSyncs.add(projectSync.thenAccept(projectSynced -> {
+            if (projectSynced) {
+              syncedProjects.add(new SyncedProject(connectionId, projectKey));
+            }
+          }));
+        });
+        return CompletableFuture.allOf(projectSyncs.toArray(CompletableFuture[]::new));
+      });
   }
 
-  private void tryUpdateBoundProjectsStorage(Set<String> projectKeys, EndpointParams endpointParams,
-    ConnectedSonarLintEngine engine, HttpClient httpClient, ProgressFacade progress) {
-    projectKeys.forEach(projectKey -> progress.doInSubProgress(projectKey, 1.0f / projectKeys.size(), subProgress -> {
+  private static CompletableFuture<Boolean> runStep(ConnectionSteps connectionSteps, AggregatedProgress progress, String title, Supplier<Boolean> step) {
+    return connectionSteps.submit(() -> {
       try {
-        engine.updateProject(endpointParams, httpClient, projectKey, subProgress.asCoreMonitor());
-      } catch (CanceledException e) {
-        throw e;
-      } catch (Exception updateFailed) {
-        logOutput.error("Binding update failed for project key '%s'", projectKey, updateFailed);
+        progress.checkCanceled();
+        return step.get();
+      } finally {
+        progress.stepsCompleted(title, 1);
       }
-    }));
+    });
+  }
+
+  private boolean tryUpdateProjectStorage(String connectionId, String projectKey, EndpointParams endpointParams, ConnectedSonarLintEngine engine,
+    HttpClient httpClient, AggregatedProgress progress) {
+    try {
+      engine.updateProject(endpointParams, httpClient, projectKey, progress.asCoreMonitor());
+      bindingManager.didUpdateProjectStorage(connectionId, projectKey);
+      return true;
+    } catch (CanceledException e) {
+      throw e;
+    } catch (Exception updateFailed) {
+      logOutput.error("Binding update failed for project key '%s'", projectKey, updateFailed);
+      return false;
+    }
   }
 
-  private void syncOneEngine(String connectionId, Map<String, Set<String>> branchNamesByProjectKey, ConnectedSonarLintEngine engine,
-  HttpClient httpClient, @Nullable ProgressFacade progress) {
+  private boolean trySync(String connectionId, Set<String> projectKeys, ConnectedSonarLintEngine engine, HttpClient httpClient, AggregatedProgress progress) {
     try {
       var endpointParams = bindingManager.getEndpointParamsFor(connectionId);
       if (endpointParams == null) {
-        return;
+        return false;
+      }
+      engine.sync(endpointParams, httpClient, projectKeys, progress.asCoreMonitor());
+      return true;
+    } catch (CanceledException e) {
+      throw e;
+    } catch (Exception e) {
+      logOutput.error("Error while synchronizing storage", e);
+      return false;
+    }
+  }
+
+  private boolean trySyncIssuesForBranch(ConnectedSonarLintEngine engine, EndpointParams endpointParams, String connectionId, String projectKey,
+    String branchName, HttpClient httpClient, AggregatedProgress progress, Set<SyncedProject> projectsWithTaintChanges) {
+    try {
+      var progressMonitor = progress.asCoreMonitor();
+      engine.syncServerIssues(endpointParams, httpClient, projectKey, branchName, progressMonitor);
+      var taintsBeforeSync = loadTaintStates(engine, projectKey, branchName);
+      engine.syncServerTaintIssues(endpointParams, httpClient, projectKey, branchName, progressMonitor);
+      if (!taintsBeforeSync.equals(loadTaintStates(engine, projectKey, branchName))) {
+        projectsWithTaintChanges.add(new SyncedProject(connectionId, projectKey));
       }
-      var progressMonitor = progress != null ? progress.asCoreMonitor() : null;
-      engine.sync(endpointParams, httpClient, branchNamesByProjectKey.keySet(), progressMonitor);
-      syncIssues(engine, endpointParams, branchNamesByProjectKey, httpClient, progressMonitor);
+      engine.syncServerHotspots(endpointParams, httpClient, projectKey, branchName, progressMonitor);
+      return true;
+    } catch (CanceledException e) {
+      throw e;
     } catch (Exception e) {
       logOutput.error("Error while synchronizing storage", e);
+      return false;
     }
   }
 
-  private static void syncIssues(ConnectedSonarLintEngine engine, EndpointParams endpointParams,
-    Map<String, Set<String>> branchNamesByProjectKey,
-    HttpClient httpClient,
-    @Nullable ClientProgressMonitor progressMonitor) {
-    branchNamesByProjectKey
-      .forEach((projectKey, branchNames) -> branchNames.forEach(branchName -> syncIssuesForBranch(engine, endpointParams, projectKey, branchName, httpClient, progressMonitor)));
+  /**
+   * Only reads the local storage, so the taint vulnerabilities are republished to the client only when a synchronization changed them
+   */
+  private static Set<TaintState> loadTaintStates(ConnectedSonarLintEngine engine, String projectKey, String branchName) {
+    // Path prefixes are not needed to compare issues of the storage
+    return engine.getAllServerTaintIssues(new ProjectBinding(projectKey, "", ""), branchName).stream()
+      .map(taint -> new TaintState(taint.getKey(), taint.isResolved(), taint.getSeverity(), taint.getTextRange()))
+      .collect(Collectors.toSet());
   }
 
-  private static void syncIssuesForBranch(ConnectedSonarLintEngine engine, EndpointParams endpointParams, String projectKey,
-    String branchName, HttpClient httpClient, @Nullable ClientProgressMonitor progressMonitor) {
-    engine.syncServerIssues(endpointParams, httpClient, projectKey, branchName, progressMonitor);
-    engine.syncServerTaintIssues(endpointParams, httpClient, projectKey, branchName, progressMonitor);
-    engine.syncServerHotspots(endpointParams, httpClient, projectKey, branchName, progressMonitor);
+  /**
+   * Server-sent events are the first sign of activity on a project, so synchronize it at the next check instead of waiting for its interval
+   */
+  public void didReceiveServerEvent(String connectionId, String projectKey) {
+    connectionsWithServerEvents.add(connectionId);
+    projectsWithServerEvents.add(new SyncedProject(connectionId, projectKey));
+  }
+
+  private Map<String, Map<String, Set<String>>> selectProjectsDueForSync(Map<String, Map<String, Set<String>>> activeConnectionsAndProjects,
+    Set<SyncedProject> projectsWithEvents, long now) {
+    var dueProjects = new LinkedHashMap<String, Map<String, Set<String>>>();
+    activeConnectionsAndProjects.forEach((connectionId, branchNamesByProjectKey) -> {
+      var dueBranchNamesByProjectKey = new LinkedHashMap<String, Set<String>>();
+      branchNamesByProjectKey.forEach((projectKey, branchNames) -> {
+        var project = new SyncedProject(connectionId, projectKey);
+        if (projectsWithEvents.contains(project) || isDue(project, now)) {
+          dueBranchNamesByProjectKey.put(projectKey, branchNames);
+        }
+      });
+      // Connections of started engines without bound projects still have their own storage to keep up to date
+      if (!dueBranchNamesByProjectKey.isEmpty() || (branchNamesByProjectKey.isEmpty() && isDue(new SyncedProject(connectionId, null), now))) {
+        dueProjects.put(connectionId, dueBranchNamesByProjectKey);
+      }
+    });
+    return dueProjects;
+  }
+
+  private boolean isDue(SyncedProject project, long now) {
+    var watermark = syncWatermarks.get(project);
+    if (watermark == null) {
+      // Bound projects are synchronized when their binding is computed
+      return now - startTime >= syncPeriod;
+    }
+    return now - watermark.lastSyncTime >= watermark.interval;
+  }
+
+  /**
+   * Projects that failed to synchronize are not recorded, so that they stay due for the next check
+   *
+   * @param activeProjects when not null, projects with server events or changes found by the synchronization. Their interval is reset, and other
+   * projects back off if their connection sends server events.
+   */
+  private void recordSync(Set<SyncedProject> syncedProjects, long syncTime, @Nullable Set<SyncedProject> activeProjects) {
+    syncedProjects.forEach(syncedProject -> syncWatermarks.compute(syncedProject, (project, previous) -> {
+      if (project.projectKey() == null) {
+        return new SyncWatermark(syncTime, syncPeriod);
+      }
+      var previousInterval = previous == null ? syncPeriod : previous.interval;
+      if (activeProjects == null) {
+        return new SyncWatermark(syncTime, previousInterval);
+      }
+      if (activeProjects.contains(project)) {
+        return new SyncWatermark(syncTime, syncPeriod);
+      }
+      // SonarCloud and older SonarQube versions send no events, the lack of them doesn't mean that their projects are idle
+      if (!connectionsWithServerEvents.contains(project.connectionId())) {
+        return new SyncWatermark(syncTime, previousInterval);
+      }
+      return new SyncWatermark(syncTime, Math.min(previousInterval * 2, syncPeriod * MAX_IDLE_BACKOFF_FACTOR));
+    }));
   }
 
   public void shutdown() {
     serverSyncTimer.cancel();
+    Utils.shutdownAndAwait(syncExecutor, true);
+  }
+
+  /**
+   * Steps of a synchronization run concurrently, so they can't report their own progress as nested sub-progress. Report the share of completed steps
+   * instead, and give the engine a monitor that only forwards cancellation.
+   */
+  private static class AggregatedProgress implements ClientProgressMonitor {
+    private final ProgressFacade progress;
+    private final int totalSteps;
+    private int completedSteps;
+
+    AggregatedProgress(ProgressFacade progress, int totalSteps) {
+      this.progress = progress;
+      this.totalSteps = totalSteps;
+    }
+
+    synchronized void stepsCompleted(String title, int count) {
+      completedSteps += count;
+      var monitor = progress.asCoreMonitor();
+      if (monitor != null && totalSteps > 0) {
+        monitor.setMessage(title);
+        monitor.setFraction((float) completedSteps / totalSteps);
+      }
+    }
+
+    void checkCanceled() {
+      progress.checkCanceled();
+    }
+
+    ClientProgressMonitor asCoreMonitor() {
+      return this;
+    }
+
+    @Override
+    public boolean isCanceled() {
+      try {
+        progress.checkCanceled();
+        return false;
+      } catch (CanceledException e) {
+        return true;
+      }
+    }
+
+    @Override
+    public void setMessage(String msg) {
+      // Steps report their completion only
+    }
+
+    @Override
+    public void setIndeterminate(boolean indeterminate) {
+      // Steps report their completion only
+    }
+
+    @Override
+    public void setFraction(float fraction) {
+      // Steps report their completion only
+    }
+  }
+
+  /**
+   * Steps of a connection wait for one of its permits before being handed to the shared pool, so that a busy server doesn't hold threads that could
+   * synchronize other connections
+   */
+  private class ConnectionSteps {
+    private final Queue<Runnable> pendingSteps = new ArrayDeque<>();
+    private int availablePermits = parallelismPerConnection;
+
+    <T> CompletableFuture<T> submit(Supplier<T> step) {
+      var result = new CompletableFuture<T>();
+      Runnable task = () -> {
+        try {
+          result.complete(step.get());
+        } catch (Exception e) {
+          result.completeExceptionally(e);
+        } finally {
+          release();
+        }
+      };
+      synchronized (this) {
+        if (availablePermits == 0) {
+          pendingSteps.add(() -> execute(task, result));
+          return result;
+        }
+        availablePermits--;
+      }
+      execute(task, result);
+      return result;
+    }
+
+    private void execute(Runnable task, CompletableFuture<?> result) {
+      try {
+        syncExecutor.execute(task);
+      } catch (RejectedExecutionException e) {
+        result.completeExceptionally(e);
+        release();
+      }
+    }
+
+    private void release() {
+      Runnable next;
+      synchronized (this) {
+        next = pendingSteps.poll();
+        if (next == null) {
+          availablePermits++;
+          return;
+        }
+      }
+      next.run();
+    }
+  }
+
+  private record SyncedProject(String connectionId, @Nullable String projectKey) {
+  }
+
+  private record SyncWatermark(long lastSyncTime, long interval) {
+  }
+
+  private record TaintState(String key, boolean resolved, IssueSeverity severity, @Nullable TextRangeWithHash textRange) {
   }
 
   private class SyncTask extends TimerTask {
@@ -190,17 +512,25 @@ public class ServerSynchronizer {
     }
 
     private void syncBoundProjects() {
-      var projectsToSynchronize = bindingManager.getActiveConnectionsAndProjects();
+      var syncTime = clock.getAsLong();
+      var projectsWithEvents = Set.copyOf(projectsWithServerEvents);
+      var projectsToSynchronize = selectProjectsDueForSync(bindingManager.getActiveConnectionsAndProjects(), projectsWithEvents, syncTime);
       if (!projectsToSynchronize.isEmpty()) {
 
         logOutput.debug("Synchronizing storages...");
-        projectsToSynchronize.forEach((connectionId, branchNamesByProjectKey) -> bindingManager.getStartedConnectedEngine(connectionId)
-          .ifPresent(engine -> {
-            var httpClient = backendServiceFacade.getBackendService().getHttpClient(connectionId);
-            syncOneEngine(connectionId, branchNamesByProjectKey, engine, httpClient, null);
-          })
-        );
-        bindingManager.updateAllTaintIssues();
+        var syncedProjects = ConcurrentHashMap.<SyncedProject>newKeySet();
+        var projectsWithTaintChanges = ConcurrentHashMap.<SyncedProject>newKeySet();
+        syncConnections(projectsToSynchronize, false, new NoOpProgressFacade(), syncedProjects, projectsWithTaintChanges);
+        // Events of projects that failed to synchronize keep them due for the next check
+        projectsWithEvents.stream().filter(syncedProjects::contains).forEach(projectsWithServerEvents::remove);
+        var activeProjects = new HashSet<>(projectsWithEvents);
+        activeProjects.addAll(projectsWithTaintChanges);
+        recordSync(syncedProjects, syncTime, activeProjects);
+        analysisScheduler.didSyncStorages();
+        if (!projectsWithTaintChanges.isEmpty()) {
+          bindingManager.updateTaintIssuesOfProjects(projectsWithTaintChanges.stream()
+            .collect(Collectors.groupingBy(SyncedProject::connectionId, Collectors.mapping(SyncedProject::projectKey, Collectors.toSet()))));
+        }
       }
     }
   }
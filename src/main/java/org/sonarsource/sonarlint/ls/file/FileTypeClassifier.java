@@ -49,4 +49,11 @@ public class FileTypeClassifier {
     }
     return false;
   }
+
+  /**
+   * For files that are not open, and so have no language ID
+   */
+  public static boolean isJavaFile(URI fileUri) {
+    return fileUri.toString().endsWith(".java");
+  }
 }
@@ -0,0 +1,203 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonarsource.sonarlint.ls.folders.WorkspaceFolderWrapper;
+import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettings;
+import org.sonarsource.sonarlint.ls.util.FileUtils;
+
+/**
+ * Index of the files of a workspace folder, partitioned by extension and by type (main or test). The folder is walked once, on first use, then the
+ * index is kept up to date from file system events. Files are classified again when the folder settings change.
+ */
+public class FolderFileIndex {
+
+  private final WorkspaceFolderWrapper folder;
+  private final BiPredicate<WorkspaceFolderSettings, Path> isTest;
+
+  private final Map<String, Partition> partitionsPerExtension = new HashMap<>();
+  private boolean built;
+  @CheckForNull
+  private WorkspaceFolderSettings classifiedWith;
+
+  public FolderFileIndex(WorkspaceFolderWrapper folder, BiPredicate<WorkspaceFolderSettings, Path> isTest) {
+    this.folder = folder;
+    this.isTest = isTest;
+  }
+
+  /**
+   * @return the indexed files ending with the given suffix, of the given type
+   */
+  public synchronized List<Path> files(String suffix, InputFile.Type type) {
+    ensureUpToDate();
+    var partition = partitionsPerExtension.get(extension(suffix));
+    if (partition == null) {
+      return List.of();
+    }
+    var dottedSuffix = "." + suffix;
+    return partition.filesOfType(type).stream()
+      .filter(filePath -> filePath.toString().endsWith(dottedSuffix))
+      .toList();
+  }
+
+  /**
+   * @return all indexed files, with their type
+   */
+  public synchronized Map<Path, InputFile.Type> files() {
+    ensureUpToDate();
+    var files = new LinkedHashMap<Path, InputFile.Type>();
+    partitionsPerExtension.values().forEach(partition -> {
+      partition.mainFiles.forEach(f -> files.put(f, InputFile.Type.MAIN));
+      partition.testFiles.forEach(f -> files.put(f, InputFile.Type.TEST));
+    });
+    return files;
+  }
+
+  /**
+   * @return the paths of the indexed files relative to the folder, in SonarQube format. Hidden files and folders are skipped.
+   */
+  public synchronized List<String> relativePaths() {
+    ensureUpToDate();
+    var rootPath = folder.getRootPath();
+    var relativePaths = new ArrayList<String>();
+    partitionsPerExtension.values().forEach(partition -> Stream.concat(partition.mainFiles.stream(), partition.testFiles.stream())
+      .map(rootPath::relativize)
+      .filter(relativePath -> !isHidden(relativePath))
+      .forEach(relativePath -> relativePaths.add(FileUtils.toSonarQubePath(relativePath.toString()))));
+    return relativePaths;
+  }
+
+  private static boolean isHidden(Path relativePath) {
+    for (var name : relativePath) {
+      if (name.toString().startsWith(".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public synchronized void didCreate(Path path) {
+    if (!built) {
+      return;
+    }
+    if (Files.isDirectory(path)) {
+      walk(path).forEach(this::add);
+    } else if (Files.isRegularFile(path)) {
+      add(path);
+    }
+  }
+
+  public synchronized void didChange(Path path) {
+    if (built && Files.isRegularFile(path) && !contains(path)) {
+      // The creation was missed
+      add(path);
+    }
+  }
+
+  public synchronized void didDelete(Path path) {
+    if (!built) {
+      return;
+    }
+    if (!remove(path)) {
+      // Can be a folder, forget about everything that was inside
+      partitionsPerExtension.values().forEach(partition -> {
+        partition.mainFiles.removeIf(f -> f.startsWith(path));
+        partition.testFiles.removeIf(f -> f.startsWith(path));
+      });
+    }
+  }
+
+  private void ensureUpToDate() {
+    var settings = folder.getSettings();
+    if (!built) {
+      classifiedWith = settings;
+      walk(folder.getRootPath()).forEach(this::add);
+      built = true;
+    } else if (settings != classifiedWith) {
+      classifiedWith = settings;
+      partitionsPerExtension.values().forEach(Partition::reclassify);
+    }
+  }
+
+  private static List<Path> walk(Path dir) {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      return paths.filter(Files::isRegularFile).toList();
+    } catch (IOException | RuntimeException e) {
+      throw new IllegalStateException("Cannot browse the files", e);
+    }
+  }
+
+  private void add(Path filePath) {
+    partitionsPerExtension.computeIfAbsent(extension(filePath.getFileName().toString()), e -> new Partition()).add(filePath);
+  }
+
+  private boolean remove(Path filePath) {
+    var partition = partitionsPerExtension.get(extension(filePath.getFileName().toString()));
+    return partition != null && (partition.mainFiles.remove(filePath) | partition.testFiles.remove(filePath));
+  }
+
+  private boolean contains(Path filePath) {
+    var partition = partitionsPerExtension.get(extension(filePath.getFileName().toString()));
+    return partition != null && (partition.mainFiles.contains(filePath) || partition.testFiles.contains(filePath));
+  }
+
+  private static String extension(String fileNameOrSuffix) {
+    return fileNameOrSuffix.substring(fileNameOrSuffix.lastIndexOf('.') + 1);
+  }
+
+  private class Partition {
+    private final Set<Path> mainFiles = new LinkedHashSet<>();
+    private final Set<Path> testFiles = new LinkedHashSet<>();
+
+    private void add(Path filePath) {
+      if (isTest.test(classifiedWith, filePath)) {
+        testFiles.add(filePath);
+      } else {
+        mainFiles.add(filePath);
+      }
+    }
+
+    private Set<Path> filesOfType(InputFile.Type type) {
+      return type == InputFile.Type.TEST ? testFiles : mainFiles;
+    }
+
+    private void reclassify() {
+      var allFiles = new ArrayList<>(mainFiles);
+      allFiles.addAll(testFiles);
+      mainFiles.clear();
+      testFiles.clear();
+      allFiles.forEach(this::add);
+    }
+  }
+}
@@ -19,9 +19,7 @@
  */
 package org.sonarsource.sonarlint.ls.file;
 
-import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.stream.Stream;
 import org.sonar.api.batch.fs.InputFile;
@@ -45,40 +43,33 @@ public class FolderFileSystem implements ClientModuleFileSystem {
 
   @Override
   public Stream<ClientInputFile> files(String suffix, InputFile.Type type) {
-    var settings = folder.getSettings();
-    try {
-      return Files.walk(folder.getRootPath())
-        .filter(Files::isRegularFile)
-        .filter(filePath -> filePath.toString().endsWith("." + suffix))
-        .filter(filePath -> typeMatches(filePath.toUri(), type, settings))
-        .map(filePath -> toClientInputFile(filePath, type));
-    } catch (IOException e) {
-      throw new IllegalStateException("Cannot browse the files", e);
-    }
+    return fileIndex().files(suffix, type).stream()
+      .map(filePath -> toClientInputFile(filePath, type));
   }
 
   @Override
   public Stream<ClientInputFile> files() {
-    var settings = folder.getSettings();
-    try {
-      return Files.walk(folder.getRootPath())
-        .filter(Files::isRegularFile)
-        .map(filePath -> toClientInputFile(filePath, getInputFileType(settings, filePath)));
-    } catch (IOException e) {
-      throw new IllegalStateException("Cannot browse the files", e);
-    }
+    return fileIndex().files().entrySet().stream()
+      .map(file -> toClientInputFile(file.getKey(), file.getValue()));
   }
 
-  private boolean typeMatches(URI uri, InputFile.Type type, WorkspaceFolderSettings settings) {
-    return isTestType(type) == isTestFile(settings, uri);
+  private FolderFileIndex fileIndex() {
+    return fileIndexOf(folder, javaConfigCache, fileTypeClassifier);
   }
 
-  private InputFile.Type getInputFileType(WorkspaceFolderSettings settings, Path filePath) {
-    return isTestFile(settings, filePath.toUri()) ? InputFile.Type.TEST : InputFile.Type.MAIN;
+  /**
+   * The index is shared by all consumers of the files of the folder, they all have to create it the same way
+   */
+  public static FolderFileIndex fileIndexOf(WorkspaceFolderWrapper folder, JavaConfigCache javaConfigCache, FileTypeClassifier fileTypeClassifier) {
+    return folder.getOrCreateFileIndex(f -> new FolderFileIndex(f,
+      (settings, filePath) -> isTestFile(javaConfigCache, fileTypeClassifier, settings, filePath.toUri())));
   }
 
-  private boolean isTestFile(WorkspaceFolderSettings settings, URI fileUri) {
-    return fileTypeClassifier.isTest(settings, fileUri, false, () -> javaConfigCache.getOrFetch(fileUri));
+  /**
+   * Only configurations already in the cache are used, the folder walk must not send a request per Java file to the client
+   */
+  private static boolean isTestFile(JavaConfigCache javaConfigCache, FileTypeClassifier fileTypeClassifier, WorkspaceFolderSettings settings, URI fileUri) {
+    return fileTypeClassifier.isTest(settings, fileUri, FileTypeClassifier.isJavaFile(fileUri), () -> javaConfigCache.getCached(fileUri));
   }
 
   private static boolean isTestType(InputFile.Type type) {
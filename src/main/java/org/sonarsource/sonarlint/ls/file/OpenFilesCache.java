@@ -21,19 +21,25 @@ package org.sonarsource.sonarlint.ls.file;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogger;
 
 import static java.lang.String.format;
 
 /**
  * Keep track of files opened in the editor, with associated metadata.
+ * <p>
+ * The content of all opened documents is tracked, so that incremental changes can be applied in order. Only documents that should be analyzed are exposed as
+ * {@link VersionedOpenFile}.
  */
 public class OpenFilesCache {
   private final LanguageClientLogger lsLogOutput;
 
+  private final Map<URI, OpenDocument> openDocumentsPerFileURI = new ConcurrentHashMap<>();
   private final Map<URI, VersionedOpenFile> openFilesPerFileURI = new ConcurrentHashMap<>();
 
   public OpenFilesCache(LanguageClientLogger lsLogOutput) {
@@ -41,19 +47,52 @@ public class OpenFilesCache {
   }
 
   public VersionedOpenFile didOpen(URI fileUri, String languageId, String fileContent, int version) {
+    didOpenDocument(fileUri, languageId, fileContent, version);
     var file = new VersionedOpenFile(fileUri, languageId, version, fileContent);
     openFilesPerFileURI.put(fileUri, file);
     return file;
   }
 
+  /**
+   * Start tracking the content of a document, without exposing it for analysis yet.
+   */
+  public void didOpenDocument(URI fileUri, String languageId, String fileContent, int version) {
+    openDocumentsPerFileURI.put(fileUri, new OpenDocument(languageId, new PieceTable(fileContent), version));
+  }
+
+  /**
+   * Expose a document previously opened with {@link #didOpenDocument(URI, String, String, int)} for analysis.
+   *
+   * @return the open file, or empty if the document has been closed in the meantime
+   */
+  public Optional<VersionedOpenFile> trackForAnalysis(URI fileUri) {
+    return Optional.ofNullable(openDocumentsPerFileURI.computeIfPresent(fileUri, (uri, document) -> {
+      openFilesPerFileURI.put(uri, document.toVersionedOpenFile(uri));
+      return document;
+    })).map(document -> openFilesPerFileURI.get(fileUri));
+  }
+
   public void didChange(URI fileUri, String fileContent, int version) {
-    if (!openFilesPerFileURI.containsKey(fileUri)) {
+    didChange(fileUri, List.of(new TextDocumentContentChangeEvent(fileContent)), version);
+  }
+
+  /**
+   * Apply changes in the order they were sent by the client. Each change is relative to the content resulting from the previous one.
+   */
+  public void didChange(URI fileUri, List<TextDocumentContentChangeEvent> changes, int version) {
+    var document = openDocumentsPerFileURI.computeIfPresent(fileUri, (uri, previous) -> {
+      changes.forEach(previous.content::apply);
+      previous.version = version;
+      openFilesPerFileURI.computeIfPresent(uri, (u, previousFile) -> previous.toVersionedOpenFile(u));
+      return previous;
+    });
+    if (document == null) {
       lsLogOutput.warn(format("Illegal state. File \"%s\" is reported changed but we missed the open notification", fileUri));
     }
-    openFilesPerFileURI.computeIfPresent(fileUri, (uri, previous) -> new VersionedOpenFile(uri, previous.getLanguageId(), version, fileContent));
   }
 
   public void didClose(URI fileUri) {
+    openDocumentsPerFileURI.remove(fileUri);
     openFilesPerFileURI.remove(fileUri);
   }
 
@@ -65,4 +104,20 @@ public class OpenFilesCache {
     return openFilesPerFileURI.values();
   }
 
+  private static class OpenDocument {
+    private final String languageId;
+    private final PieceTable content;
+    private int version;
+
+    private OpenDocument(String languageId, PieceTable content, int version) {
+      this.languageId = languageId;
+      this.content = content;
+      this.version = version;
+    }
+
+    private VersionedOpenFile toVersionedOpenFile(URI uri) {
+      return new VersionedOpenFile(uri, languageId, version, content.snapshot());
+    }
+  }
+
 }
@@ -0,0 +1,323 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.file;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.concurrent.Immutable;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+
+/**
+ * Content of a document opened in the editor, stored as a piece table so that incremental changes don't copy the whole text.
+ * <p>
+ * The document is a sequence of pieces pointing either to the original text, or to an append-only buffer holding all inserted text. Buffers are never modified
+ * in place, and each of them indexes its line breaks, so that positions are resolved without scanning the text. The full text is only materialized on demand.
+ * <p>
+ * Not thread safe, changes are expected to be applied by the thread processing LSP notifications. Use {@link #snapshot()} to share the current content with
+ * other threads.
+ */
+class PieceTable {
+
+  static final int MAX_PIECES = 512;
+  private static final int MIN_ADDED_LENGTH_BEFORE_COMPACTION = 64 * 1024;
+
+  private Buffer original;
+  private Buffer added;
+  /**
+   * Never modified once assigned, so that it can be shared with snapshots.
+   */
+  private List<Piece> pieces;
+  private int length;
+  @CheckForNull
+  private String text;
+
+  PieceTable(String content) {
+    reset(content);
+  }
+
+  private void reset(String content) {
+    original = new Buffer(content);
+    added = new Buffer("");
+    pieces = content.isEmpty() ? List.of() : List.of(new Piece(false, 0, content.length()));
+    length = content.length();
+    text = content;
+  }
+
+  int length() {
+    return length;
+  }
+
+  int pieceCount() {
+    return pieces.size();
+  }
+
+  String getText() {
+    if (text == null) {
+      text = materialize(original.chars, added.chars, pieces, length);
+    }
+    return text;
+  }
+
+  Snapshot snapshot() {
+    return new Snapshot(original.chars, added.chars, pieces, length, text);
+  }
+
+  /**
+   * Apply a change as sent by the client: a full replacement of the content if the range is missing, a replacement of the range otherwise.
+   */
+  void apply(TextDocumentContentChangeEvent change) {
+    var range = change.getRange();
+    if (range == null) {
+      reset(change.getText());
+    } else {
+      replace(offsetAt(range.getStart()), offsetAt(range.getEnd()), change.getText());
+    }
+  }
+
+  void replace(int startOffset, int endOffset, String newText) {
+    var start = Math.max(0, Math.min(startOffset, length));
+    var end = Math.max(start, Math.min(endOffset, length));
+    var newPieces = new ArrayList<Piece>(pieces.size() + 2);
+    copyPieces(0, start, newPieces);
+    if (!newText.isEmpty()) {
+      var addedStart = added.length;
+      added.append(newText);
+      addPiece(newPieces, new Piece(true, addedStart, newText.length()));
+    }
+    copyPieces(end, length, newPieces);
+    pieces = newPieces;
+    length += newText.length() - (end - start);
+    text = null;
+    if (pieces.size() > MAX_PIECES || added.length > Math.max(MIN_ADDED_LENGTH_BEFORE_COMPACTION, 2 * length)) {
+      reset(getText());
+    }
+  }
+
+  private void copyPieces(int from, int to, List<Piece> target) {
+    var pieceStart = 0;
+    for (var piece : pieces) {
+      if (pieceStart >= to) {
+        return;
+      }
+      var pieceEnd = pieceStart + piece.length;
+      if (pieceEnd > from) {
+        var sliceStart = Math.max(from, pieceStart) - pieceStart;
+        var sliceEnd = Math.min(to, pieceEnd) - pieceStart;
+        addPiece(target, new Piece(piece.inAddedBuffer, piece.start + sliceStart, sliceEnd - sliceStart));
+      }
+      pieceStart = pieceEnd;
+    }
+  }
+
+  private static void addPiece(List<Piece> target, Piece piece) {
+    if (!target.isEmpty()) {
+      var lastIndex = target.size() - 1;
+      var last = target.get(lastIndex);
+      // Typing usually appends to the buffer right after the previous insertion, so extend the previous piece
+      if (last.inAddedBuffer == piece.inAddedBuffer && last.start + last.length == piece.start) {
+        target.set(lastIndex, new Piece(last.inAddedBuffer, last.start, last.length + piece.length));
+        return;
+      }
+    }
+    target.add(piece);
+  }
+
+  /**
+   * Convert a position (0-based line, offset in UTF-16 code units) to an offset in the content. As required by the LSP specification, a character offset
+   * greater than the line length defaults back to the line length, and a line number greater than the number of lines defaults to the end of the content.
+   * <p>
+   * Line terminators are \n, \r\n and \r. Edits can put the two characters of a \r\n sequence in different pieces, for instance when deleting the text
+   * between a \r and a \n, so a piece starting with \n right after a piece ending with \r doesn't start a new line.
+   */
+  int offsetAt(Position position) {
+    var lineStart = lineStartOffset(position.getLine());
+    if (lineStart < 0) {
+      return length;
+    }
+    var offset = lineStart;
+    var remaining = position.getCharacter();
+    var pieceStart = 0;
+    for (var piece : pieces) {
+      var pieceEnd = pieceStart + piece.length;
+      if (remaining <= 0) {
+        break;
+      }
+      if (offset < pieceEnd) {
+        var buffer = bufferOf(piece);
+        while (remaining > 0 && offset < pieceEnd) {
+          var c = buffer.chars[piece.start + offset - pieceStart];
+          if (c == '\n' || c == '\r') {
+            return offset;
+          }
+          offset++;
+          remaining--;
+        }
+      }
+      pieceStart = pieceEnd;
+    }
+    return offset;
+  }
+
+  private int lineStartOffset(int line) {
+    if (line <= 0) {
+      return 0;
+    }
+    var linesBefore = 0;
+    var pieceStart = 0;
+    var previousEndsWithCr = false;
+    var lineStart = -1;
+    for (var piece : pieces) {
+      var buffer = bufferOf(piece);
+      var bufferEnd = piece.start + piece.length;
+      var startsWithLf = buffer.chars[piece.start] == '\n';
+      if (lineStart >= 0) {
+        // The line ended with the piece before, a \r there goes on with a \n starting this piece
+        return previousEndsWithCr && startsWithLf ? (lineStart + 1) : lineStart;
+      }
+      // The first line break of the piece ends the line terminator started by the previous piece
+      var skippedLineBreaks = previousEndsWithCr && startsWithLf ? 1 : 0;
+      var lineBreaks = buffer.countLineBreaks(piece.start, bufferEnd) - skippedLineBreaks;
+      if (linesBefore + lineBreaks >= line) {
+        var lineEnd = buffer.lineEnd(piece.start, bufferEnd, line - linesBefore + skippedLineBreaks);
+        lineStart = pieceStart + lineEnd - piece.start;
+        if (lineEnd < bufferEnd) {
+          return lineStart;
+        }
+      }
+      linesBefore += lineBreaks;
+      previousEndsWithCr = buffer.chars[bufferEnd - 1] == '\r';
+      pieceStart += piece.length;
+    }
+    return lineStart;
+  }
+
+  private Buffer bufferOf(Piece piece) {
+    return piece.inAddedBuffer ? added : original;
+  }
+
+  private static String materialize(char[] originalChars, char[] addedChars, List<Piece> pieces, int length) {
+    var result = new StringBuilder(length);
+    pieces.forEach(piece -> result.append(piece.inAddedBuffer ? addedChars : originalChars, piece.start, piece.length));
+    return result.toString();
+  }
+
+  private record Piece(boolean inAddedBuffer, int start, int length) {
+  }
+
+  private static final class Buffer {
+    private char[] chars;
+    private int length;
+    /**
+     * Offsets right after each line terminator, in increasing order.
+     */
+    private int[] lineEnds = new int[16];
+    private int lineEndsCount;
+
+    private Buffer(String content) {
+      chars = new char[content.length()];
+      append(content);
+    }
+
+    /**
+     * Characters are only ever written after the current length: when the array has to grow, a new one is allocated, so that snapshots holding the previous
+     * array keep seeing the same characters.
+     */
+    private void append(String content) {
+      var newLength = length + content.length();
+      if (newLength > chars.length) {
+        chars = Arrays.copyOf(chars, Math.max(newLength, 2 * chars.length));
+      }
+      content.getChars(0, content.length(), chars, length);
+      for (var i = length; i < newLength; i++) {
+        var c = chars[i];
+        if (c == '\n' && i > 0 && chars[i - 1] == '\r' && lineEndsCount > 0 && lineEnds[lineEndsCount - 1] == i) {
+          // \r\n is a single line terminator, even when written by two insertions: pieces ending with the \r are handled when counting
+          lineEnds[lineEndsCount - 1] = i + 1;
+        } else if (c == '\n' || c == '\r') {
+          if (lineEndsCount == lineEnds.length) {
+            lineEnds = Arrays.copyOf(lineEnds, 2 * lineEnds.length);
+          }
+          lineEnds[lineEndsCount++] = i + 1;
+        }
+      }
+      length = newLength;
+    }
+
+    /**
+     * @return the number of line terminators ending in ]from, to], including a \r at to - 1 that is followed by \n in the buffer
+     */
+    private int countLineBreaks(int from, int to) {
+      return countLineEndsUpTo(to) - countLineEndsUpTo(from) + (endsWithSplitCrLf(to) ? 1 : 0);
+    }
+
+    /**
+     * @return the offset right after the n-th (1-based) line terminator ending in ]from, to], as counted by {@link #countLineBreaks(int, int)}
+     */
+    private int lineEnd(int from, int to, int n) {
+      var index = countLineEndsUpTo(from) + n - 1;
+      return index < lineEndsCount && lineEnds[index] <= to ? lineEnds[index] : to;
+    }
+
+    /**
+     * A \r\n sequence of the buffer is indexed as a single line terminator ending after the \n, a range ending between the two characters has to count it
+     */
+    private boolean endsWithSplitCrLf(int to) {
+      return to > 0 && to < length && chars[to - 1] == '\r' && chars[to] == '\n';
+    }
+
+    private int countLineEndsUpTo(int offset) {
+      var index = Arrays.binarySearch(lineEnds, 0, lineEndsCount, offset);
+      return index >= 0 ? (index + 1) : -(index + 1);
+    }
+  }
+
+  /**
+   * Immutable view of the content at a given time. Buffers are append-only, so the snapshot shares them with the piece table instead of copying the text.
+   */
+  @Immutable
+  static final class Snapshot {
+    private final char[] originalChars;
+    private final char[] addedChars;
+    private final List<Piece> pieces;
+    private final int length;
+    @CheckForNull
+    private volatile String text;
+
+    private Snapshot(char[] originalChars, char[] addedChars, List<Piece> pieces, int length, @CheckForNull String text) {
+      this.originalChars = originalChars;
+      this.addedChars = addedChars;
+      this.pieces = pieces;
+      this.length = length;
+      this.text = text;
+    }
+
+    String getText() {
+      var result = text;
+      if (result == null) {
+        result = materialize(originalChars, addedChars, pieces, length);
+        text = result;
+      }
+      return result;
+    }
+  }
+}
@@ -20,8 +20,9 @@
 package org.sonarsource.sonarlint.ls.file;
 
 import java.net.URI;
+import javax.annotation.CheckForNull;
 import javax.annotation.concurrent.Immutable;
-import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 
 /**
  * Represent a versioned open file and its immutable metadata in the editor.
@@ -31,13 +32,31 @@ public class VersionedOpenFile {
   private final URI uri;
   private final String languageId;
   private final int version;
+  /**
+   * Only set when the content was not given as a snapshot.
+   */
+  @CheckForNull
   private final String content;
+  /**
+   * When present, the content is only materialized when first requested.
+   */
+  @CheckForNull
+  private final PieceTable.Snapshot snapshot;
 
   public VersionedOpenFile(URI uri, String languageId, int version, String content) {
     this.uri = uri;
     this.languageId = languageId;
     this.version = version;
     this.content = content;
+    this.snapshot = null;
+  }
+
+  VersionedOpenFile(URI uri, String languageId, int version, PieceTable.Snapshot snapshot) {
+    this.uri = uri;
+    this.languageId = languageId;
+    this.version = version;
+    this.content = null;
+    this.snapshot = snapshot;
   }
 
   public URI getUri() {
@@ -52,8 +71,9 @@ public class VersionedOpenFile {
     return version;
   }
 
+  @CheckForNull
   public String getContent() {
-    return content;
+    return snapshot != null ? snapshot.getText() : content;
   }
 
   public boolean isJava() {
@@ -62,7 +82,7 @@ public class VersionedOpenFile {
 
   @Override
   public String toString() {
-    return ToStringBuilder.reflectionToString(this);
+    return ReflectionToStringBuilder.toStringExclude(this, "snapshot");
   }
 
   public boolean isCOrCpp() {
@@ -21,9 +21,14 @@ package org.sonarsource.sonarlint.ls.folders;
 
 import java.net.URI;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.eclipse.lsp4j.FileChangeType;
 import org.eclipse.lsp4j.FileEvent;
 import org.sonarsource.sonarlint.core.analysis.api.ClientModuleFileEvent;
@@ -34,6 +39,7 @@ import org.sonarsource.sonarlint.ls.connected.ProjectBindingWrapper;
 import org.sonarsource.sonarlint.ls.file.FileTypeClassifier;
 import org.sonarsource.sonarlint.ls.file.FolderFileSystem;
 import org.sonarsource.sonarlint.ls.java.JavaConfigCache;
+import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
 import org.sonarsource.sonarlint.ls.standalone.StandaloneEngineManager;
 import org.sonarsource.sonarlint.ls.util.Utils;
 import org.sonarsource.sonarlint.plugin.api.module.file.ModuleFileEvent;
@@ -48,40 +54,112 @@ public class ModuleEventsProcessor implements WorkspaceFolderLifecycleListener {
   private final ProjectBindingManager bindingManager;
   private final StandaloneEngineManager standaloneEngineManager;
   private final ExecutorService asyncExecutor;
+  private final LanguageClientLogOutput logOutput;
+  private final Map<URI, Type> pendingEventTypesPerUri = new LinkedHashMap<>();
+  private boolean processingScheduled;
 
   public ModuleEventsProcessor(StandaloneEngineManager standaloneEngineManager, WorkspaceFoldersManager workspaceFoldersManager, ProjectBindingManager bindingManager,
-    FileTypeClassifier fileTypeClassifier, JavaConfigCache javaConfigCache) {
+    FileTypeClassifier fileTypeClassifier, JavaConfigCache javaConfigCache, LanguageClientLogOutput logOutput) {
     this.standaloneEngineManager = standaloneEngineManager;
     this.workspaceFoldersManager = workspaceFoldersManager;
     this.bindingManager = bindingManager;
     this.fileTypeClassifier = fileTypeClassifier;
     this.javaConfigCache = javaConfigCache;
+    this.logOutput = logOutput;
     this.asyncExecutor = Executors.newSingleThreadExecutor(Utils.threadFactory("SonarLint Language Server Module Events Processor", false));
   }
 
+  /**
+   * Events are queued per file until the processing thread gets to them, so that a burst of events (e.g. a branch checkout or a clean build) is
+   * coalesced and sent to the engines in a single batch.
+   */
   public void didChangeWatchedFiles(List<FileEvent> changes) {
-    changes.forEach(fileEvent -> {
-      var fileUri = URI.create(fileEvent.getUri());
-      var eventType = translate(fileEvent.getType());
-      asyncExecutor.execute(() -> processFileEvent(fileUri, eventType));
-    });
+    synchronized (pendingEventTypesPerUri) {
+      changes.forEach(fileEvent -> pendingEventTypesPerUri.compute(URI.create(fileEvent.getUri()),
+        (uri, pendingType) -> coalesce(pendingType, translate(fileEvent.getType()))));
+      if (!processingScheduled && !pendingEventTypesPerUri.isEmpty()) {
+        processingScheduled = true;
+        asyncExecutor.execute(this::processPendingFileEvents);
+      }
+    }
   }
 
-  private void processFileEvent(URI fileUri, Type eventType) {
-    workspaceFoldersManager.findFolderForFile(fileUri)
-      .ifPresent(folder -> {
-        var settings = folder.getSettings();
-        var baseDir = folder.getRootPath();
-
-        var binding = bindingManager.getBinding(fileUri);
-
-        var engineForFile = binding.isPresent() ? binding.get().getEngine() : standaloneEngineManager.getOrCreateStandaloneEngine();
+  /**
+   * Merge a new event with the one still waiting to be processed for the same file, so that only the net effect is sent to the engine.
+   *
+   * @return null if the events cancel each other
+   */
+  @CheckForNull
+  static Type coalesce(@Nullable Type pendingType, Type newType) {
+    if (pendingType == null) {
+      return newType;
+    }
+    switch (pendingType) {
+      case CREATED:
+        // The engine never knew about the file
+        return newType == Type.DELETED ? null : Type.CREATED;
+      case DELETED:
+        return newType == Type.DELETED ? Type.DELETED : Type.MODIFIED;
+      default:
+        return newType == Type.DELETED ? Type.DELETED : Type.MODIFIED;
+    }
+  }
 
+  private void processPendingFileEvents() {
+    Map<URI, Type> eventTypesPerUri;
+    synchronized (pendingEventTypesPerUri) {
+      eventTypesPerUri = new LinkedHashMap<>(pendingEventTypesPerUri);
+      pendingEventTypesPerUri.clear();
+      processingScheduled = false;
+    }
+    var eventsPerFolder = new LinkedHashMap<WorkspaceFolderWrapper, Map<SonarLintEngine, List<Map.Entry<URI, Type>>>>();
+    eventTypesPerUri.entrySet().forEach(event -> workspaceFoldersManager.findFolderForFile(event.getKey())
+      .ifPresent(folder -> {
+        var binding = bindingManager.getBinding(event.getKey());
+        SonarLintEngine engineForFile = binding.isPresent() ? binding.get().getEngine() : standaloneEngineManager.getOrCreateStandaloneEngine();
+        eventsPerFolder.computeIfAbsent(folder, f -> new LinkedHashMap<>()).computeIfAbsent(engineForFile, e -> new ArrayList<>()).add(event);
+      }));
+    eventsPerFolder.forEach((folder, eventsPerEngine) -> {
+      var settings = folder.getSettings();
+      var baseDir = folder.getRootPath();
+      var moduleKey = WorkspaceFoldersProvider.key(folder);
+      // Sensors handling the events may list the files of the module, which must already take them into account
+      updateFileIndex(folder, eventsPerEngine);
+      eventsPerEngine.forEach((engine, events) -> events.forEach(event -> {
+        var fileUri = event.getKey();
+        // Only use configurations already in the cache, to not send a request to the client per Java file of the batch
         var inputFile = new InFolderClientInputFile(fileUri, baseDir.relativize(Paths.get(fileUri)).toString(),
-          fileTypeClassifier.isTest(settings, fileUri, false, () -> javaConfigCache.getOrFetch(fileUri)));
+          fileTypeClassifier.isTest(settings, fileUri, FileTypeClassifier.isJavaFile(fileUri), () -> javaConfigCache.getCached(fileUri)));
+        engine.fireModuleFileEvent(moduleKey, ClientModuleFileEvent.of(inputFile, event.getValue()));
+      }));
+      if (eventsPerEngine.values().stream().flatMap(List::stream).anyMatch(event -> event.getValue() != Type.MODIFIED)) {
+        folder.didChangeFileTree();
+      }
+    });
+  }
 
-        engineForFile.fireModuleFileEvent(WorkspaceFoldersProvider.key(folder), ClientModuleFileEvent.of(inputFile, eventType));
-      });
+  private void updateFileIndex(WorkspaceFolderWrapper folder, Map<SonarLintEngine, List<Map.Entry<URI, Type>>> eventsPerEngine) {
+    var fileIndex = folder.getFileIndex();
+    if (fileIndex == null) {
+      return;
+    }
+    eventsPerEngine.values().forEach(events -> events.forEach(event -> {
+      var filePath = Paths.get(event.getKey());
+      try {
+        switch (event.getValue()) {
+          case CREATED:
+            fileIndex.didCreate(filePath);
+            break;
+          case DELETED:
+            fileIndex.didDelete(filePath);
+            break;
+          default:
+            fileIndex.didChange(filePath);
+        }
+      } catch (IllegalStateException e) {
+        logOutput.error("Unable to update the file index for " + filePath, e);
+      }
+    }));
   }
 
   private static ModuleFileEvent.Type translate(FileChangeType type) {
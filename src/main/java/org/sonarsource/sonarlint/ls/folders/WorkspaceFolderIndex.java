@@ -0,0 +1,241 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.folders;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import org.sonarsource.sonarlint.ls.util.Utils;
+
+/**
+ * Immutable path segment trie of workspace folders, resolving the deepest folder containing a file in O(path depth). Lookups don't allocate: segments
+ * of the file path are hashed and compared in place.
+ * <p>
+ * Matching follows {@link WorkspaceFoldersManager#isAncestor(URI, URI)}: scheme, host and port must be equal, and folder path segments must be
+ * a prefix of the file path segments. Empty segments are ignored, and file URIs are compared case-insensitively on Windows.
+ * <p>
+ * Nodes are not generic, so that their children can be stored in plain arrays. Values are only ever inserted as {@code T}.
+ */
+final class WorkspaceFolderIndex<T> {
+
+  private static final boolean WINDOWS = System.getProperty("os.name") != null && System.getProperty("os.name").startsWith("Windows");
+
+  private final Root[] roots;
+  private final Consumer<URI> multipleCandidatesListener;
+
+  private WorkspaceFolderIndex(Root[] roots, Consumer<URI> multipleCandidatesListener) {
+    this.roots = roots;
+    this.multipleCandidatesListener = multipleCandidatesListener;
+  }
+
+  static <T> WorkspaceFolderIndex<T> of(Map<URI, T> valuesPerFolderUri) {
+    return of(valuesPerFolderUri, fileUri -> {
+    });
+  }
+
+  /**
+   * @param multipleCandidatesListener notified of the files contained in several nested folders
+   */
+  static <T> WorkspaceFolderIndex<T> of(Map<URI, T> valuesPerFolderUri, Consumer<URI> multipleCandidatesListener) {
+    var rootBuilders = new ArrayList<RootBuilder>();
+    valuesPerFolderUri.forEach((folderUri, value) -> {
+      if (folderUri.isOpaque()) {
+        // Nothing can be contained in an opaque URI
+        return;
+      }
+      var rootBuilder = rootBuilders.stream().filter(r -> sameAuthority(r.authority, folderUri)).findFirst().orElseGet(() -> {
+        var newRootBuilder = new RootBuilder(folderUri);
+        rootBuilders.add(newRootBuilder);
+        return newRootBuilder;
+      });
+      var node = rootBuilder.node;
+      var path = Objects.toString(folderUri.getPath(), "");
+      for (var start = nextSegmentStart(path, 0); start < path.length(); start = nextSegmentStart(path, segmentEnd(path, start))) {
+        var segment = path.substring(start, segmentEnd(path, start));
+        node = node.children.computeIfAbsent(rootBuilder.caseInsensitive ? segment.toLowerCase(Locale.ROOT) : segment, s -> new NodeBuilder());
+      }
+      node.value = value;
+    });
+    var roots = rootBuilders.stream().map(RootBuilder::build).toArray(Root[]::new);
+    return new WorkspaceFolderIndex<>(roots, multipleCandidatesListener);
+  }
+
+  /**
+   * @return the value of the deepest folder containing the given file, or null if there is none
+   */
+  @CheckForNull
+  T findDeepest(URI fileUri) {
+    if (roots.length == 0) {
+      return null;
+    }
+    if (fileUri.isOpaque()) {
+      throw new IllegalArgumentException("Only hierarchical URIs are supported");
+    }
+    for (var root : roots) {
+      if (sameAuthority(root.authority, fileUri)) {
+        var deepest = root.findDeepest(fileUri);
+        if (deepest == null) {
+          return null;
+        }
+        if (deepest.nested) {
+          multipleCandidatesListener.accept(fileUri);
+        }
+        @SuppressWarnings("unchecked")
+        var value = (T) deepest.value;
+        return value;
+      }
+    }
+    return null;
+  }
+
+  private static int nextSegmentStart(String path, int from) {
+    var i = from;
+    while (i < path.length() && path.charAt(i) == '/') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int segmentEnd(String path, int start) {
+    var end = path.indexOf('/', start);
+    return end < 0 ? path.length() : end;
+  }
+
+  private static int hash(String s, int start, int end, boolean caseInsensitive) {
+    var h = 0;
+    for (var i = start; i < end; i++) {
+      var c = s.charAt(i);
+      h = 31 * h + (caseInsensitive ? Character.toLowerCase(c) : c);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean sameAuthority(URI a, URI b) {
+    var schemeA = a.getScheme();
+    var schemeB = b.getScheme();
+    return (schemeA == null ? schemeB == null : schemeA.equalsIgnoreCase(schemeB))
+      && Objects.equals(a.getHost(), b.getHost())
+      && a.getPort() == b.getPort();
+  }
+
+  private static final class Root {
+    private final URI authority;
+    private final boolean caseInsensitive;
+    private final Node node;
+
+    private Root(URI authority, boolean caseInsensitive, Node node) {
+      this.authority = authority;
+      this.caseInsensitive = caseInsensitive;
+      this.node = node;
+    }
+
+    /**
+     * @return the deepest node holding a value on the path of the file
+     */
+    @CheckForNull
+    private Node findDeepest(URI fileUri) {
+      var path = Objects.toString(fileUri.getPath(), "");
+      var current = node;
+      var deepest = current.value != null ? current : null;
+      for (var start = nextSegmentStart(path, 0); start < path.length(); start = nextSegmentStart(path, segmentEnd(path, start))) {
+        current = current.child(path, start, segmentEnd(path, start), caseInsensitive);
+        if (current == null) {
+          break;
+        }
+        if (current.value != null) {
+          deepest = current;
+        }
+      }
+      return deepest;
+    }
+  }
+
+  /**
+   * Children are stored in an open addressing table, so that they can be looked up from a region of the file path.
+   */
+  private static final class Node {
+    private final String[] keys;
+    private final Node[] children;
+    @CheckForNull
+    private final Object value;
+    /**
+     * True if the value of an ancestor node also applies to the files of this node
+     */
+    private final boolean nested;
+
+    private Node(NodeBuilder builder, boolean caseInsensitive, boolean hasAncestorValue) {
+      this.value = builder.value;
+      this.nested = hasAncestorValue && value != null;
+      var capacity = builder.children.isEmpty() ? 1 : (Integer.highestOneBit(builder.children.size() * 2) << 1);
+      this.keys = new String[capacity];
+      this.children = new Node[capacity];
+      var childrenHaveAncestorValue = hasAncestorValue || value != null;
+      builder.children.forEach((key, child) -> {
+        var i = hash(key, 0, key.length(), caseInsensitive) & (capacity - 1);
+        while (keys[i] != null) {
+          i = (i + 1) & (capacity - 1);
+        }
+        keys[i] = key;
+        children[i] = new Node(child, caseInsensitive, childrenHaveAncestorValue);
+      });
+    }
+
+    @CheckForNull
+    private Node child(String path, int start, int end, boolean caseInsensitive) {
+      var mask = keys.length - 1;
+      var length = end - start;
+      var i = hash(path, start, end, caseInsensitive) & mask;
+      String key;
+      while ((key = keys[i]) != null) {
+        if (key.length() == length && path.regionMatches(caseInsensitive, start, key, 0, length)) {
+          return children[i];
+        }
+        i = (i + 1) & mask;
+      }
+      return null;
+    }
+  }
+
+  private static final class NodeBuilder {
+    private final Map<String, NodeBuilder> children = new HashMap<>();
+    @CheckForNull
+    private Object value;
+  }
+
+  private static final class RootBuilder {
+    private final URI authority;
+    private final boolean caseInsensitive;
+    private final NodeBuilder node = new NodeBuilder();
+
+    private RootBuilder(URI authority) {
+      this.authority = authority;
+      this.caseInsensitive = WINDOWS && Utils.uriHasFileScheme(authority);
+    }
+
+    private Root build() {
+      return new Root(authority, caseInsensitive, new Node(node, caseInsensitive, false));
+    }
+  }
+}
@@ -25,10 +25,13 @@ import java.nio.file.Paths;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.eclipse.lsp4j.WorkspaceFolder;
+import org.sonarsource.sonarlint.ls.file.FolderFileIndex;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettings;
 
@@ -38,6 +41,8 @@ public class WorkspaceFolderWrapper {
   private final LanguageClientLogOutput logOutput;
   private WorkspaceFolderSettings settings;
   private final CountDownLatch initLatch = new CountDownLatch(1);
+  private volatile FolderFileIndex fileIndex;
+  private final AtomicLong fileTreeVersion = new AtomicLong();
 
   public WorkspaceFolderWrapper(URI uri, WorkspaceFolder lspFolder, LanguageClientLogOutput logOutput) {
     this.uri = uri;
@@ -101,4 +106,30 @@ public class WorkspaceFolderWrapper {
     initLatch.countDown();
   }
 
+  /**
+   * @return the index of the files of this folder, or null if nobody needed it yet
+   */
+  @CheckForNull
+  public FolderFileIndex getFileIndex() {
+    return fileIndex;
+  }
+
+  public synchronized FolderFileIndex getOrCreateFileIndex(Function<WorkspaceFolderWrapper, FolderFileIndex> indexFactory) {
+    if (fileIndex == null) {
+      fileIndex = indexFactory.apply(this);
+    }
+    return fileIndex;
+  }
+
+  /**
+   * @return a counter incremented each time files are created or deleted in this folder, to know if results derived from the file tree are stale
+   */
+  public long getFileTreeVersion() {
+    return fileTreeVersion.get();
+  }
+
+  public void didChangeFileTree() {
+    fileTreeVersion.incrementAndGet();
+  }
+
 }
@@ -24,7 +24,6 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -47,6 +46,7 @@ import static java.net.URI.create;
 
 public class WorkspaceFoldersManager {
   private final Map<URI, WorkspaceFolderWrapper> folders = new ConcurrentHashMap<>();
+  private volatile WorkspaceFolderIndex<WorkspaceFolderWrapper> folderIndex = WorkspaceFolderIndex.of(Map.of());
   private final List<WorkspaceFolderLifecycleListener> listeners = new ArrayList<>();
   private ProjectBindingManager bindingManager;
   private final BackendServiceFacade backendServiceFacade;
@@ -103,6 +103,7 @@ public class WorkspaceFoldersManager {
   @CheckForNull
   private WorkspaceFolderWrapper removeFolder(URI uri) {
     var removed = folders.remove(uri);
+    reindexFolders();
     if (removed == null) {
       logOutput.warn("Unregistered workspace folder was missing: " + uri);
       return null;
@@ -114,7 +115,9 @@ public class WorkspaceFoldersManager {
 
   private WorkspaceFolderWrapper addFolder(WorkspaceFolder added, URI uri) {
     var addedWrapper = new WorkspaceFolderWrapper(uri, added, logOutput);
-    if (folders.put(uri, addedWrapper) != null) {
+    var previous = folders.put(uri, addedWrapper);
+    reindexFolders();
+    if (previous != null) {
       logOutput.warn("Registered workspace folder %s was already added", addedWrapper);
     } else {
       logOutput.debug("Folder %s added", addedWrapper);
@@ -134,19 +137,16 @@ public class WorkspaceFoldersManager {
     backendServiceFacade.getBackendService().removeWorkspaceFolder(removedUri);
   }
 
+  private synchronized void reindexFolders() {
+    folderIndex = WorkspaceFolderIndex.of(folders,
+      uri -> logOutput.debug("Multiple candidates workspace folders to contains %s. Default to the deepest one.", uri));
+  }
+
+  /**
+   * Find the workspace folder containing the given file. In case of nested workspace folders, the deepest one is returned.
+   */
   public Optional<WorkspaceFolderWrapper> findFolderForFile(URI uri) {
-    var folderUriCandidates = folders.keySet().stream()
-      .filter(wfRoot -> isAncestor(wfRoot, uri))
-      // Sort by path descending length to prefer the deepest one in case of multiple nested workspace folders
-      .sorted(Comparator.<URI>comparingInt(wfRoot -> wfRoot.getPath().length()).reversed())
-      .toList();
-    if (folderUriCandidates.isEmpty()) {
-      return Optional.empty();
-    }
-    if (folderUriCandidates.size() > 1) {
-      logOutput.debug("Multiple candidates workspace folders to contains %s. Default to the deepest one.", uri);
-    }
-    return Optional.of(folders.get(folderUriCandidates.get(0)));
+    return Optional.ofNullable(folderIndex.findDeepest(uri));
   }
 
   // Visible for testing
@@ -24,6 +24,8 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,7 +34,10 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
 import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient;
 import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient.GetJavaConfigResponse;
 import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageServer.ServerMode;
@@ -48,16 +53,48 @@ import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.joining;
 
 public class JavaConfigCache {
+  private static final int DEFAULT_MAX_ENTRIES = 10_000;
+  private static final long DEFAULT_MAX_WEIGHT = 1_000_000;
+  private static final long EVICTION_LOG_PERIOD_MS = TimeUnit.MINUTES.toMillis(1);
+
   private final SonarLintExtendedLanguageClient client;
   private final OpenFilesCache openFilesCache;
   private final LanguageClientLogOutput logOutput;
-  private final Map<URI, Optional<SonarLintExtendedLanguageClient.GetJavaConfigResponse>> javaConfigPerFileURI = new ConcurrentHashMap<>();
+  private final JavaConfigLruMap javaConfigPerFileURI;
   private final Map<Path, List<Path>> jvmClasspathPerJavaHome = new ConcurrentHashMap<>();
+  private final Map<FilteredClasspathKey, String> filteredClasspaths = new ConcurrentHashMap<>();
+  private final AtomicLong classpathVersion = new AtomicLong();
+  private final AtomicLong lastEvictionLogTime = new AtomicLong();
+  private volatile boolean bulkRequestsSupported;
 
   public JavaConfigCache(SonarLintExtendedLanguageClient client, OpenFilesCache openFilesCache, LanguageClientLogOutput logOutput) {
+    this(client, openFilesCache, logOutput,
+      Integer.parseInt(StringUtils.defaultIfBlank(System.getenv("SONARLINT_INTERNAL_JAVA_CONFIG_CACHE_MAX_ENTRIES"), String.valueOf(DEFAULT_MAX_ENTRIES))),
+      Long.parseLong(StringUtils.defaultIfBlank(System.getenv("SONARLINT_INTERNAL_JAVA_CONFIG_CACHE_MAX_WEIGHT"), String.valueOf(DEFAULT_MAX_WEIGHT))));
+  }
+
+  JavaConfigCache(SonarLintExtendedLanguageClient client, OpenFilesCache openFilesCache, LanguageClientLogOutput logOutput, int maxEntries, long maxWeight) {
     this.client = client;
     this.openFilesCache = openFilesCache;
     this.logOutput = logOutput;
+    this.javaConfigPerFileURI = new JavaConfigLruMap(maxEntries, maxWeight, this::didEvict);
+  }
+
+  /**
+   * Evictions are the sign that the limits might be too low for the workspace, give the figures needed to tune them. They come in bursts, so log at
+   * most once per minute.
+   */
+  private void didEvict(URI fileUri) {
+    var now = System.currentTimeMillis();
+    var lastLogTime = lastEvictionLogTime.get();
+    if (now - lastLogTime >= EVICTION_LOG_PERIOD_MS && lastEvictionLogTime.compareAndSet(lastLogTime, now)) {
+      logOutput.debug(format("Evicted least recently used Java config for file \"%s\" (next evictions are not logged for a minute), %s", fileUri,
+        javaConfigPerFileURI.stats()));
+    }
+  }
+
+  public void initialize(boolean bulkRequestsSupported) {
+    this.bulkRequestsSupported = bulkRequestsSupported;
   }
 
   public Optional<SonarLintExtendedLanguageClient.GetJavaConfigResponse> getOrFetch(URI fileUri) {
@@ -75,31 +112,98 @@ public class JavaConfigCache {
   }
 
   /**
-   * Try to fetch Java config. In case of any error, cache an empty result to avoid repeated calls.
+   * Try to fetch Java config. In case of any error, cache an empty result to avoid repeated calls. The returned future never fails, and completes
+   * with an empty result if the client does not answer within a minute.
    */
-  private CompletableFuture<Optional<SonarLintExtendedLanguageClient.GetJavaConfigResponse>> getOrFetchAsync(URI fileUri) {
+  public CompletableFuture<Optional<SonarLintExtendedLanguageClient.GetJavaConfigResponse>> getOrFetchAsync(URI fileUri) {
     Optional<VersionedOpenFile> openFile = openFilesCache.getFile(fileUri);
     if (openFile.isPresent() && !openFile.get().isJava()) {
       return CompletableFuture.completedFuture(Optional.empty());
     }
-    if (javaConfigPerFileURI.containsKey(fileUri)) {
-      return CompletableFuture.completedFuture(javaConfigPerFileURI.get(fileUri));
+    var cachedConfig = javaConfigPerFileURI.get(fileUri);
+    if (cachedConfig != null) {
+      return CompletableFuture.completedFuture(cachedConfig);
+    }
+    CompletableFuture<GetJavaConfigResponse> request;
+    try {
+      request = client.getJavaConfig(fileUri.toString());
+    } catch (Exception e) {
+      logOutput.error("Unable to get Java config", e);
+      return CompletableFuture.completedFuture(empty());
     }
-    return client.getJavaConfig(fileUri.toString())
+    return request
       .handle((r, t) -> {
         if (t != null) {
           logOutput.error("Unable to fetch Java configuration of file " + fileUri, t);
         }
         return r;
       })
-      .thenApply(javaConfig -> {
-        var configOpt = ofNullable(javaConfig);
-        javaConfigPerFileURI.put(fileUri, configOpt);
-        openFile.map(VersionedOpenFile::isJava)
-          .filter(Boolean::booleanValue)
-          .ifPresent(isJava -> logOutput.debug("Cached Java config for file \"" + fileUri + "\""));
-        return configOpt;
-      });
+      .thenApply(javaConfig -> cache(fileUri, openFile, javaConfig))
+      .completeOnTimeout(empty(), 1, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Only look in the cache, never send a request to the client. Useful to classify files that are not open, without fetching the configuration of
+   * every file of the workspace.
+   */
+  public Optional<GetJavaConfigResponse> getCached(URI fileUri) {
+    return ofNullable(javaConfigPerFileURI.peek(fileUri)).flatMap(config -> config);
+  }
+
+  /**
+   * Same as {@link #getOrFetchAsync(URI)} for several files. When the client supports it, configurations that are not cached yet are fetched with
+   * a single request.
+   */
+  public Map<URI, CompletableFuture<Optional<GetJavaConfigResponse>>> getOrFetchAsync(Collection<URI> fileUris) {
+    var lookups = new HashMap<URI, CompletableFuture<Optional<GetJavaConfigResponse>>>();
+    if (!bulkRequestsSupported) {
+      fileUris.forEach(fileUri -> lookups.put(fileUri, getOrFetchAsync(fileUri)));
+      return lookups;
+    }
+    var toFetch = new HashMap<String, Optional<VersionedOpenFile>>();
+    fileUris.forEach(fileUri -> {
+      var openFile = openFilesCache.getFile(fileUri);
+      if (openFile.isPresent() && !openFile.get().isJava()) {
+        lookups.put(fileUri, CompletableFuture.completedFuture(empty()));
+        return;
+      }
+      var cachedConfig = javaConfigPerFileURI.get(fileUri);
+      if (cachedConfig != null) {
+        lookups.put(fileUri, CompletableFuture.completedFuture(cachedConfig));
+      } else {
+        toFetch.put(fileUri.toString(), openFile);
+      }
+    });
+    if (toFetch.isEmpty()) {
+      return lookups;
+    }
+    CompletableFuture<Map<String, GetJavaConfigResponse>> request;
+    try {
+      request = client.getJavaConfigs(new SonarLintExtendedLanguageClient.FileUrisParams(new ArrayList<>(toFetch.keySet())));
+    } catch (Exception e) {
+      logOutput.error("Unable to get Java config", e);
+      toFetch.keySet().forEach(fileUri -> lookups.put(URI.create(fileUri), CompletableFuture.completedFuture(empty())));
+      return lookups;
+    }
+    var replies = request.handle((r, t) -> {
+      if (t != null) {
+        logOutput.error("Unable to fetch Java configuration of " + toFetch.size() + " files", t);
+      }
+      return r != null ? r : Map.<String, GetJavaConfigResponse>of();
+    });
+    toFetch.forEach((fileUri, openFile) -> lookups.put(URI.create(fileUri), replies
+      .thenApply(configPerUri -> cache(URI.create(fileUri), openFile, configPerUri.get(fileUri)))
+      .completeOnTimeout(empty(), 1, TimeUnit.MINUTES)));
+    return lookups;
+  }
+
+  private Optional<GetJavaConfigResponse> cache(URI fileUri, Optional<VersionedOpenFile> openFile, @Nullable GetJavaConfigResponse javaConfig) {
+    var configOpt = ofNullable(javaConfig);
+    javaConfigPerFileURI.put(fileUri, configOpt);
+    openFile.map(VersionedOpenFile::isJava)
+      .filter(Boolean::booleanValue)
+      .ifPresent(isJava -> logOutput.debug("Cached Java config for file \"" + fileUri + "\""));
+    return configOpt;
   }
 
   public Map<String, String> configureJavaProperties(Set<URI> fileInTheSameModule, Map<URI, GetJavaConfigResponse> javaConfigs) {
@@ -126,24 +230,43 @@ public class JavaConfigCache {
     // Assume all main files have the same classpath
     if (!mainFiles.isEmpty()) {
       var mainConfig = javaConfigs.get(mainFiles.get(0));
-      var classpath = computeClasspathSkipNonExisting(jdkClassesRoots, mainConfig);
+      var classpath = getOrComputeClasspathSkipNonExisting(vmLocationStr, jdkClassesRoots, mainConfig);
       props.put("sonar.java.libraries", classpath);
     }
 
     // Assume all test files have the same classpath
     if (!testFiles.isEmpty()) {
       var testConfig = javaConfigs.get(testFiles.get(0));
-      var classpath = computeClasspathSkipNonExisting(jdkClassesRoots, testConfig);
+      var classpath = getOrComputeClasspathSkipNonExisting(vmLocationStr, jdkClassesRoots, testConfig);
       props.put("sonar.java.test.libraries", classpath);
     }
 
     return props;
   }
 
+  /**
+   * Checking the existence of each classpath entry is costly for large projects, so the result is kept until the classpath of the project is updated
+   */
+  private String getOrComputeClasspathSkipNonExisting(@Nullable String vmLocation, List<Path> jdkClassesRoots, GetJavaConfigResponse config) {
+    var key = new FilteredClasspathKey(config.getProjectRoot(), vmLocation, Arrays.asList(config.getClasspath()));
+    var cached = filteredClasspaths.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    var versionBeforeCompute = classpathVersion.get();
+    var classpath = computeClasspathSkipNonExisting(jdkClassesRoots, config);
+    // Don't keep a result that might have been computed while the classpath was updated
+    if (classpathVersion.get() == versionBeforeCompute) {
+      filteredClasspaths.put(new FilteredClasspathKey(key.projectRoot(), vmLocation, List.of(config.getClasspath())), classpath);
+    }
+    return classpath;
+  }
+
   private String computeClasspathSkipNonExisting(List<Path> jdkClassesRoots, GetJavaConfigResponse testConfig) {
     return Stream.concat(
         jdkClassesRoots.stream().map(Path::toAbsolutePath).map(Path::toString),
         Stream.of(testConfig.getClasspath()))
+      .parallel()
       .filter(path -> {
         boolean exists = new File(path).exists();
         if (!exists) {
@@ -159,30 +282,45 @@ public class JavaConfigCache {
   }
 
   public void didClasspathUpdate(URI projectUri) {
+    classpathVersion.incrementAndGet();
+    filteredClasspaths.keySet().removeIf(key -> key.projectRoot() == null || sameProject(projectUri, key.projectRoot()));
     // Clear cached value to force refetch during next analysis
-    for (var it = javaConfigPerFileURI.entrySet().iterator(); it.hasNext(); ) {
-      var entry = it.next();
-      var cachedResponseOpt = entry.getValue();
-      // If we have cached an empty result, still clear the value on classpath update to force next analysis to re-attempt fetch
-      if (cachedResponseOpt.isEmpty() || sameProject(projectUri, cachedResponseOpt.get())) {
-        it.remove();
-        logOutput.debug("Evicted Java config cache for file \"" + entry.getKey() + "\"");
-      }
-    }
+    // If we have cached an empty result, still clear the value on classpath update to force next analysis to re-attempt fetch
+    javaConfigPerFileURI.removeIf((fileUri, cachedResponseOpt) -> cachedResponseOpt.isEmpty() || sameProject(projectUri, cachedResponseOpt.get()),
+      fileUri -> logOutput.debug("Evicted Java config cache for file \"" + fileUri + "\""));
   }
 
   private static boolean sameProject(URI projectUri, SonarLintExtendedLanguageClient.GetJavaConfigResponse cachedResponse) {
+    return sameProject(projectUri, cachedResponse.getProjectRoot());
+  }
+
+  private static boolean sameProject(URI projectUri, String projectRoot) {
     // Compare file and not directly URI because
     // file:/foo/bar and file:///foo/bar/ are not considered equals by java.net.URI
-    return Paths.get(URI.create(cachedResponse.getProjectRoot())).equals(Paths.get(projectUri));
+    return Paths.get(URI.create(projectRoot)).equals(Paths.get(projectUri));
   }
 
   public void didServerModeChange(ServerMode serverModeEnum) {
     logOutput.debug("Clearing Java config cache on server mode change");
     javaConfigPerFileURI.clear();
+    classpathVersion.incrementAndGet();
+    filteredClasspaths.clear();
   }
 
   public void didClose(URI fileUri) {
     javaConfigPerFileURI.remove(fileUri);
   }
+
+  public Stats getStats() {
+    return javaConfigPerFileURI.stats();
+  }
+
+  /**
+   * @param weight number of cached files, plus number of entries of the distinct classpaths they reference
+   */
+  public record Stats(int size, long weight, int distinctClasspaths, long hits, long misses, long evictions) {
+  }
+
+  private record FilteredClasspathKey(@Nullable String projectRoot, @Nullable String vmLocation, List<String> classpath) {
+  }
 }
@@ -0,0 +1,155 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.java;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient.GetJavaConfigResponse;
+
+/**
+ * Java configurations per file, evicted in least recently used order when there are too many files or too many classpath entries.
+ * <p>
+ * Files of the same module usually have the same classpath, so identical classpath arrays are shared between configurations. The weight of the map
+ * is the number of files plus the number of entries of the distinct classpaths it references.
+ */
+class JavaConfigLruMap {
+
+  private final int maxEntries;
+  private final long maxWeight;
+  private final Consumer<URI> evictionListener;
+  private final LinkedHashMap<URI, Optional<GetJavaConfigResponse>> configPerFileUri = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<List<String>, SharedClasspath> sharedClasspaths = new HashMap<>();
+  private long weight;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  JavaConfigLruMap(int maxEntries, long maxWeight, Consumer<URI> evictionListener) {
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.evictionListener = evictionListener;
+  }
+
+  /**
+   * @return null if there is no configuration for this file, as opposed to an empty configuration cached after a failed fetch
+   */
+  @CheckForNull
+  synchronized Optional<GetJavaConfigResponse> get(URI fileUri) {
+    var config = configPerFileUri.get(fileUri);
+    if (config == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return config;
+  }
+
+  /**
+   * Same as {@link #get(URI)}, but not counted as a hit or a miss, for lookups that never lead to a fetch
+   */
+  @CheckForNull
+  synchronized Optional<GetJavaConfigResponse> peek(URI fileUri) {
+    return configPerFileUri.get(fileUri);
+  }
+
+  synchronized void put(URI fileUri, Optional<GetJavaConfigResponse> config) {
+    config.ifPresent(this::shareClasspath);
+    release(configPerFileUri.put(fileUri, config));
+    weight++;
+    var eldestEntries = configPerFileUri.entrySet().iterator();
+    while ((configPerFileUri.size() > maxEntries || weight > maxWeight) && configPerFileUri.size() > 1) {
+      var eldest = eldestEntries.next();
+      eldestEntries.remove();
+      release(eldest.getValue());
+      evictions++;
+      evictionListener.accept(eldest.getKey());
+    }
+  }
+
+  synchronized void remove(URI fileUri) {
+    release(configPerFileUri.remove(fileUri));
+  }
+
+  synchronized void removeIf(BiPredicate<URI, Optional<GetJavaConfigResponse>> predicate, Consumer<URI> removalListener) {
+    for (var it = configPerFileUri.entrySet().iterator(); it.hasNext(); ) {
+      var entry = it.next();
+      if (predicate.test(entry.getKey(), entry.getValue())) {
+        it.remove();
+        release(entry.getValue());
+        removalListener.accept(entry.getKey());
+      }
+    }
+  }
+
+  synchronized void clear() {
+    configPerFileUri.clear();
+    sharedClasspaths.clear();
+    weight = 0;
+  }
+
+  synchronized JavaConfigCache.Stats stats() {
+    return new JavaConfigCache.Stats(configPerFileUri.size(), weight, sharedClasspaths.size(), hits, misses, evictions);
+  }
+
+  private void shareClasspath(GetJavaConfigResponse config) {
+    var classpath = config.getClasspath();
+    if (classpath == null) {
+      return;
+    }
+    var shared = sharedClasspaths.computeIfAbsent(Arrays.asList(classpath), k -> {
+      weight += classpath.length;
+      return new SharedClasspath(classpath);
+    });
+    shared.referenceCount++;
+    config.setClasspath(shared.classpath);
+  }
+
+  private void release(@CheckForNull Optional<GetJavaConfigResponse> removedConfig) {
+    if (removedConfig == null) {
+      return;
+    }
+    weight--;
+    removedConfig.map(GetJavaConfigResponse::getClasspath).ifPresent(classpath -> {
+      var classpathKey = Arrays.asList(classpath);
+      var shared = sharedClasspaths.get(classpathKey);
+      if (shared != null && --shared.referenceCount == 0) {
+        sharedClasspaths.remove(classpathKey);
+        weight -= classpath.length;
+      }
+    });
+  }
+
+  private static final class SharedClasspath {
+    private final String[] classpath;
+    private int referenceCount;
+
+    private SharedClasspath(String[] classpath) {
+      this.classpath = classpath;
+    }
+  }
+}
@@ -22,9 +22,9 @@ package org.sonarsource.sonarlint.ls.notebooks;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.sonarsource.sonarlint.ls.DiagnosticPublisher;
@@ -39,7 +39,7 @@ public class NotebookDiagnosticPublisher {
   private final SonarLintExtendedLanguageClient client;
 
   private final IssuesCache issuesCache;
-  private final Map<URI, List<URI>> notebookCellsWithIssues = new HashMap<>();
+  private final Map<URI, List<URI>> notebookCellsWithIssues = new ConcurrentHashMap<>();
   private OpenNotebooksCache openNotebooksCache;
 
   public NotebookDiagnosticPublisher(SonarLintExtendedLanguageClient client, IssuesCache issuesCache) {
@@ -55,6 +55,10 @@ public class LSProgressMonitor implements ClientProgressMonitor, ProgressFacade
     client.notifyProgress(new ProgressParams(progressToken, Either.forLeft(progressBegin)));
   }
 
+  Either<String, Integer> getProgressToken() {
+    return progressToken;
+  }
+
   boolean ended() {
     return ended;
   }
@@ -55,19 +55,7 @@ public class ProgressManager {
     if (workDoneToken == null && !workDoneProgressSupportedByClient) {
       runnableWithProgress.accept(new NoOpProgressFacade());
     } else {
-      Either<String, Integer> progressToken = workDoneToken != null ? workDoneToken : Either.forLeft("SonarLint" + ThreadLocalRandom.current().nextInt());
-      if (workDoneToken == null) {
-        try {
-          client.createProgress(new WorkDoneProgressCreateParams(progressToken)).get();
-        } catch (InterruptedException e) {
-          interrupted(e, globalLogOutput);
-        } catch (ExecutionException e) {
-          throw new IllegalStateException(e.getCause());
-        }
-      }
-      var progress = new LSProgressMonitor(client, progressToken, cancelToken);
-      liveProgress.put(progressToken, progress);
-      progress.start(progressTitle);
+      var progress = start(progressTitle, workDoneToken, cancelToken);
       try {
         runnableWithProgress.accept(progress);
       } catch (CanceledException canceled) {
@@ -76,10 +64,48 @@ public class ProgressManager {
         endIfNotAlreadyEnded(progress, e.getMessage());
         throw e;
       } finally {
-        endIfNotAlreadyEnded(progress, null);
-        liveProgress.remove(progressToken);
+        end(progress, null);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #doWithProgress(String, Either, CancelChecker, Consumer)}, for work split in several steps that do not run in a single call.
+   * The returned progress has to be ended with {@link #endProgress(ProgressFacade, String)}.
+   */
+  public ProgressFacade startProgress(String progressTitle, CancelChecker cancelToken) {
+    if (!workDoneProgressSupportedByClient) {
+      return new NoOpProgressFacade();
+    }
+    return start(progressTitle, null, cancelToken);
+  }
+
+  public void endProgress(ProgressFacade progress, @Nullable String msg) {
+    if (progress instanceof LSProgressMonitor lsProgress) {
+      end(lsProgress, msg);
+    }
+  }
+
+  private LSProgressMonitor start(String progressTitle, @Nullable Either<String, Integer> workDoneToken, CancelChecker cancelToken) {
+    Either<String, Integer> progressToken = workDoneToken != null ? workDoneToken : Either.forLeft("SonarLint" + ThreadLocalRandom.current().nextInt());
+    if (workDoneToken == null) {
+      try {
+        client.createProgress(new WorkDoneProgressCreateParams(progressToken)).get();
+      } catch (InterruptedException e) {
+        interrupted(e, globalLogOutput);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
       }
     }
+    var progress = new LSProgressMonitor(client, progressToken, cancelToken);
+    liveProgress.put(progressToken, progress);
+    progress.start(progressTitle);
+    return progress;
+  }
+
+  private void end(LSProgressMonitor progress, @Nullable String msg) {
+    endIfNotAlreadyEnded(progress, msg);
+    liveProgress.remove(progress.getProgressToken());
   }
 
   private static void endIfNotAlreadyEnded(LSProgressMonitor progress, @Nullable String msg) {
@@ -23,21 +23,25 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.AccessDeniedException;
-import java.nio.file.FileVisitResult;
+import java.nio.file.DirectoryIteratorException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
+import org.eclipse.jgit.ignore.IgnoreNode;
 import org.sonarsource.sonarlint.core.commons.TextRange;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
 
@@ -51,42 +55,133 @@ public class FileUtils {
    */
   private static final int MAX_RETRIES = WINDOWS ? 20 : 0;
 
+  private static final ForkJoinPool TREE_WALKER_POOL = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
   private FileUtils() {
     // utility class, forbidden constructor
   }
 
+  /**
+   * Collect the paths of all files in the tree, relative to the given directory, in SonarQube format. Hidden files and folders, as well as files
+   * ignored by Git, are skipped.
+   */
   public static Collection<String> allRelativePathsForFilesInTree(Path dir, LanguageClientLogOutput globalLogOutput) {
-    Set<String> paths = new HashSet<>();
-    var visitor = new SimpleFileVisitor<Path>() {
-      @Override
-      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        if (!isHidden(file)) {
-          retry(() -> paths.add(toSonarQubePath(dir.relativize(file).toString())));
-        }
-        return FileVisitResult.CONTINUE;
+    Set<String> paths = ConcurrentHashMap.newKeySet();
+    forEachRelativePathForFilesInTree(dir, globalLogOutput, paths::add);
+    return paths;
+  }
+
+  /**
+   * Same as {@link #allRelativePathsForFilesInTree(Path, LanguageClientLogOutput)}, without materializing the paths. Sub-folders are visited in
+   * parallel, so the consumer has to be thread-safe.
+   */
+  public static void forEachRelativePathForFilesInTree(Path dir, LanguageClientLogOutput globalLogOutput, Consumer<String> relativePathConsumer) {
+    if (!dir.toFile().exists()) {
+      return;
+    }
+    var rootIgnoreRules = GitIgnoreRules.NONE.withIgnoreFile(dir.resolve(".git").resolve("info").resolve("exclude"), "", globalLogOutput);
+    TREE_WALKER_POOL.invoke(new DirectoryWalk(dir, "", rootIgnoreRules, globalLogOutput, relativePathConsumer));
+  }
+
+  private static final class DirectoryWalk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Path dir;
+    private final String relativeDir;
+    private final transient GitIgnoreRules parentIgnoreRules;
+    private final transient LanguageClientLogOutput globalLogOutput;
+    private final transient Consumer<String> relativePathConsumer;
+
+    private DirectoryWalk(Path dir, String relativeDir, GitIgnoreRules parentIgnoreRules, LanguageClientLogOutput globalLogOutput,
+      Consumer<String> relativePathConsumer) {
+      this.dir = dir;
+      this.relativeDir = relativeDir;
+      this.parentIgnoreRules = parentIgnoreRules;
+      this.globalLogOutput = globalLogOutput;
+      this.relativePathConsumer = relativePathConsumer;
+    }
+
+    @Override
+    protected void compute() {
+      var ignoreRules = parentIgnoreRules.withIgnoreFile(dir.resolve(".gitignore"), relativeDir, globalLogOutput);
+      var filePaths = new ArrayList<String>();
+      var subDirectoryWalks = new ArrayList<DirectoryWalk>();
+      try {
+        // Reading the folder can be retried, so entries are only consumed once all of them were read
+        retry(() -> {
+          filePaths.clear();
+          subDirectoryWalks.clear();
+          readEntries(ignoreRules, filePaths, subDirectoryWalks);
+        });
+        filePaths.forEach(relativePathConsumer);
+      } catch (IOException | DirectoryIteratorException e) {
+        globalLogOutput.warn("IOException while reading the file or folder " + dir + ". Skipping. Issue tracking might be affected");
       }
+      invokeAll(subDirectoryWalks);
+    }
 
-      @Override
-      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-        if (isHidden(dir)) {
-          return FileVisitResult.SKIP_SUBTREE;
-        } else {
-          return FileVisitResult.CONTINUE;
+    private void readEntries(GitIgnoreRules ignoreRules, List<String> filePaths, List<DirectoryWalk> subDirectoryWalks) throws IOException {
+      try (var entries = Files.newDirectoryStream(dir)) {
+        for (var entry : entries) {
+          if (isHidden(entry)) {
+            continue;
+          }
+          var relativePath = relativeDir + entry.getFileName().toString();
+          var isDirectory = Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS);
+          if (ignoreRules.isIgnored(relativePath, isDirectory)) {
+            continue;
+          }
+          if (isDirectory) {
+            subDirectoryWalks.add(new DirectoryWalk(entry, relativePath + "/", ignoreRules, globalLogOutput, relativePathConsumer));
+          } else {
+            filePaths.add(relativePath);
+          }
         }
       }
+    }
+  }
+
+  /**
+   * Chain of the .gitignore files applying to a folder, from the deepest to the root.
+   */
+  private static final class GitIgnoreRules {
+    private static final GitIgnoreRules NONE = new GitIgnoreRules(null, "", null);
 
-      @Override
-      public FileVisitResult visitFileFailed(Path file, IOException e) {
-        globalLogOutput.warn("IOException while reading the file or folder " + file + ". Skipping. Issue tracking might be affected");
-        return FileVisitResult.CONTINUE;
+    @Nullable
+    private final IgnoreNode ignoreNode;
+    private final String baseRelativeDir;
+    @Nullable
+    private final GitIgnoreRules parent;
+
+    private GitIgnoreRules(@Nullable IgnoreNode ignoreNode, String baseRelativeDir, @Nullable GitIgnoreRules parent) {
+      this.ignoreNode = ignoreNode;
+      this.baseRelativeDir = baseRelativeDir;
+      this.parent = parent;
+    }
+
+    private GitIgnoreRules withIgnoreFile(Path ignoreFile, String baseRelativeDir, LanguageClientLogOutput globalLogOutput) {
+      if (!Files.isRegularFile(ignoreFile)) {
+        return this;
+      }
+      var node = new IgnoreNode();
+      try (var input = Files.newInputStream(ignoreFile)) {
+        node.parse(ignoreFile.toString(), input);
+      } catch (IOException e) {
+        globalLogOutput.warn("Unable to read " + ignoreFile + ". Its rules are not applied");
+        return this;
       }
+      return node.getRules().isEmpty() ? this : new GitIgnoreRules(node, baseRelativeDir, this);
+    }
 
-      @Override
-      public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
-        return FileVisitResult.CONTINUE;
+    private boolean isIgnored(String relativePath, boolean isDirectory) {
+      for (var rules = this; rules != null && rules.ignoreNode != null; rules = rules.parent) {
+        var result = rules.ignoreNode.isIgnored(relativePath.substring(rules.baseRelativeDir.length()), isDirectory);
+        if (result != IgnoreNode.MatchResult.CHECK_PARENT) {
+          return result == IgnoreNode.MatchResult.IGNORED;
+        }
       }
-    };
-    return allRelativePathsForFilesInTree(dir, visitor, paths);
+      return false;
+    }
   }
 
   public static Collection<String> allRelativePathsForFilesInTree(Path dir, SimpleFileVisitor<Path> visitor, Set<String> paths) {
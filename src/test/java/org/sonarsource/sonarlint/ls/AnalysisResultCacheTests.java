@@ -0,0 +1,79 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class AnalysisResultCacheTests {
+
+  @Test
+  void should_evict_least_recently_used_entries() {
+    var underTest = new AnalysisResultCache(2);
+    var issue = mock(Issue.class);
+    underTest.put("key1", URI.create("file:///folder/foo1.py"), List.of(issue));
+    underTest.put("key2", URI.create("file:///folder/foo2.py"), List.of());
+    underTest.get("key1");
+
+    underTest.put("key3", URI.create("file:///folder/foo3.py"), List.of());
+
+    assertThat(underTest.size()).isEqualTo(2);
+    assertThat(underTest.get("key1")).contains(List.of(issue));
+    assertThat(underTest.get("key2")).isEmpty();
+    assertThat(underTest.get("key3")).contains(List.of());
+  }
+
+  @Test
+  void should_clear_all_entries() {
+    var underTest = new AnalysisResultCache(2);
+    underTest.put("key1", URI.create("file:///folder/foo.py"), List.of());
+
+    underTest.clear();
+
+    assertThat(underTest.get("key1")).isEmpty();
+  }
+
+  @Test
+  void should_clear_entries_of_a_folder() {
+    var underTest = new AnalysisResultCache(2);
+    underTest.put("key1", URI.create("file:///folder1/foo.py"), List.of());
+    underTest.put("key2", URI.create("file:///folder2/foo.py"), List.of());
+
+    underTest.clear(Paths.get(URI.create("file:///folder1")));
+
+    assertThat(underTest.get("key1")).isEmpty();
+    assertThat(underTest.get("key2")).contains(List.of());
+  }
+
+  @Test
+  void keys_should_depend_on_all_parts_and_their_boundaries() {
+    assertThat(AnalysisResultCache.key("file:///foo.py", "python", "content"))
+      .isEqualTo(AnalysisResultCache.key("file:///foo.py", "python", "content"))
+      .isNotEqualTo(AnalysisResultCache.key("file:///foo.py", "python", "content2"))
+      .isNotEqualTo(AnalysisResultCache.key("file:///foo.py", "pythonc", "ontent"))
+      .isNotEqualTo(AnalysisResultCache.key("file:///bar.py", "python", "content"));
+  }
+}
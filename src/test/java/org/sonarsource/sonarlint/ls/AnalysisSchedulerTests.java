@@ -20,11 +20,20 @@
 package org.sonarsource.sonarlint.ls;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.eclipse.lsp4j.WorkDoneProgressCancelParams;
+import org.eclipse.lsp4j.WorkDoneProgressCreateParams;
+import org.eclipse.lsp4j.WorkDoneProgressEnd;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -33,16 +42,22 @@ import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageServer.ServerMode;
 import org.sonarsource.sonarlint.ls.connected.ProjectBindingManager;
 import org.sonarsource.sonarlint.ls.file.OpenFilesCache;
 import org.sonarsource.sonarlint.ls.file.VersionedOpenFile;
+import org.sonarsource.sonarlint.ls.folders.WorkspaceFolderWrapper;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFoldersManager;
+import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogger;
 import org.sonarsource.sonarlint.ls.notebooks.NotebookDiagnosticPublisher;
 import org.sonarsource.sonarlint.ls.notebooks.OpenNotebooksCache;
+import org.sonarsource.sonarlint.ls.progress.ProgressManager;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.waitAtMost;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
@@ -59,6 +74,8 @@ class AnalysisSchedulerTests {
   private OpenNotebooksCache openNotebooksCache;
   private LanguageClientLogger lsLogOutput;
   private SonarLintExtendedLanguageClient client;
+  private ProgressManager progressManager;
+  private WorkspaceFoldersManager foldersManager;
 
   @BeforeEach
   public void init() {
@@ -70,10 +87,10 @@ class AnalysisSchedulerTests {
         new SonarLintExtendedLanguageClient.FileUrisResult(List.of("file://Foo1.java", "file://Foo2.java"))));
     openFilesCache = new OpenFilesCache(lsLogOutput);
     openNotebooksCache = new OpenNotebooksCache(lsLogOutput, mock(NotebookDiagnosticPublisher.class));
-    underTest = new AnalysisScheduler(lsLogOutput, mock(WorkspaceFoldersManager.class), mock(ProjectBindingManager.class), openFilesCache,
-      openNotebooksCache, taskExecutor, 200, client);
-
-    underTest.initialize();
+    progressManager = new ProgressManager(client, mock(LanguageClientLogOutput.class));
+    foldersManager = mock(WorkspaceFoldersManager.class);
+    underTest = new AnalysisScheduler(lsLogOutput, foldersManager, mock(ProjectBindingManager.class), openFilesCache,
+      openNotebooksCache, taskExecutor, 200, client, progressManager);
   }
 
   @AfterEach
@@ -143,6 +160,33 @@ class AnalysisSchedulerTests {
     assertThat(submittedTask.shouldFetchServerIssues()).isFalse();
   }
 
+  @Test
+  void shouldNotDelayAnalysisOfOtherFilesWhenOneFileKeepsChanging() throws InterruptedException {
+    var file1 = openFilesCache.didOpen(JS_FILE_URI, "javascript", "alert();", 1);
+    var file2 = openFilesCache.didOpen(URI.create("file://foo2.js"), "javascript", "alert();", 1);
+    underTest.didChange(file1.getUri());
+    for (var i = 0; i < 6; i++) {
+      underTest.didChange(file2.getUri());
+      Thread.sleep(100);
+    }
+
+    ArgumentCaptor<AnalysisTask> taskCaptor = ArgumentCaptor.forClass(AnalysisTask.class);
+    verify(taskExecutor, timeout(1000).times(2)).run(taskCaptor.capture());
+
+    var submittedTasks = taskCaptor.getAllValues();
+    assertThat(submittedTasks.get(0).getFilesToAnalyze()).containsExactly(file1);
+    assertThat(submittedTasks.get(1).getFilesToAnalyze()).containsExactly(file2);
+  }
+
+  @Test
+  void shouldNotAnalyzeClosedFile() {
+    var file = openFilesCache.didOpen(JS_FILE_URI, "javascript", "alert();", 1);
+    underTest.didChange(file.getUri());
+    underTest.didClose(file.getUri());
+
+    verify(taskExecutor, after(1000).never()).run(any());
+  }
+
   @Test
   void shouldBatchAnalysisOnChangeWithNotebook() {
     var notebook1 = openNotebooksCache.didOpen(URI.create("file:///some/notebook1.ipynb"), 1, Collections.emptyList());
@@ -254,11 +298,14 @@ class AnalysisSchedulerTests {
 
     }).when(taskExecutor).run(any());
 
-    var file = openFilesCache.didOpen(JS_FILE_URI, "javascript", "alert(1);", 1);
-    underTest.didOpen(file);
-    verify(lsLogOutput, timeout(1000)).debug("Queuing analysis of file \"" + JS_FILE_URI + "\" (version 1)");
+    // Analysis of another file is not superseded by edits of the file
+    var otherFileUri = URI.create("file://other.js");
+    underTest.didOpen(openFilesCache.didOpen(otherFileUri, "javascript", "alert(1);", 1));
+    verify(lsLogOutput, timeout(1000)).debug("Queuing analysis of file \"" + otherFileUri + "\" (version 1)");
     verify(taskExecutor, timeout(1000)).run(any());
 
+    var file = openFilesCache.didOpen(JS_FILE_URI, "javascript", "alert(1);", 1);
+
     reset(taskExecutor);
 
     openFilesCache.didChange(JS_FILE_URI, "alert(2);", 2);
@@ -266,7 +313,7 @@ class AnalysisSchedulerTests {
 
     verify(lsLogOutput, timeout(1000)).debug("Queuing analysis of file \"" + JS_FILE_URI + "\" (version 2)");
 
-    // Analysis of version 2 is stuck in the executor service queue because analysis of version 1 is still running
+    // Analysis of version 2 is stuck in the executor service queue because analysis of the other file is still running
     verify(taskExecutor, timeout(1000).times(0)).run(any());
 
     reset(taskExecutor);
@@ -286,4 +333,138 @@ class AnalysisSchedulerTests {
     assertThat(task2.getFilesToAnalyze()).extracting(VersionedOpenFile::getVersion).containsOnly(3);
   }
 
+  @Test
+  void shouldStopRunningAnalysisOfSupersededVersion() {
+    doAnswer(invocation -> {
+      AnalysisTask task = invocation.getArgument(0);
+      while (!task.isCanceled()) {
+        Thread.sleep(10);
+      }
+      return null;
+    }).when(taskExecutor).run(any());
+    var file = openFilesCache.didOpen(JS_FILE_URI, "javascript", "alert(1);", 1);
+    underTest.didOpen(file);
+    ArgumentCaptor<AnalysisTask> taskCaptor = ArgumentCaptor.forClass(AnalysisTask.class);
+    verify(taskExecutor, timeout(1000)).run(taskCaptor.capture());
+    var firstTask = taskCaptor.getValue();
+    assertThat(firstTask.isCanceled()).isFalse();
+
+    openFilesCache.didChange(JS_FILE_URI, "alert(2);", 2);
+
+    assertThat(firstTask.isCanceled()).isTrue();
+    assertThat(firstTask.isSuperseded(file)).isTrue();
+    waitAtMost(1, TimeUnit.SECONDS).untilAsserted(() -> assertThat(firstTask.getFuture().isDone()).isTrue());
+  }
+
+  @Test
+  void shouldSplitBackgroundAnalysisInBatches() {
+    underTest.scanForHotspotsInFiles(jsFiles(60));
+
+    ArgumentCaptor<AnalysisTask> taskCaptor = ArgumentCaptor.forClass(AnalysisTask.class);
+    verify(taskExecutor, timeout(1000).times(2)).run(taskCaptor.capture());
+    assertThat(taskCaptor.getAllValues()).extracting(task -> task.getFilesToAnalyze().size()).containsExactly(50, 10);
+    assertThat(taskCaptor.getAllValues()).allMatch(AnalysisTask::shouldKeepHotspotsOnly);
+  }
+
+  @Test
+  void shouldShowSingleProgressForAllBackgroundBatches() {
+    progressManager.setWorkDoneProgressSupportedByClient(true);
+    when(client.createProgress(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    underTest.scanForHotspotsInFiles(jsFiles(60));
+
+    ArgumentCaptor<AnalysisTask> taskCaptor = ArgumentCaptor.forClass(AnalysisTask.class);
+    verify(taskExecutor, timeout(1000).times(2)).run(taskCaptor.capture());
+    assertThat(taskCaptor.getAllValues()).extracting(AnalysisTask::getProgress).doesNotContainNull();
+    verify(client, timeout(1000).times(1)).createProgress(any());
+    verify(client, timeout(1000).times(1)).notifyProgress(argThat(params -> params.getValue().getLeft() instanceof WorkDoneProgressEnd));
+  }
+
+  @Test
+  void shouldCancelQueuedBackgroundBatchesWhenProgressIsCanceled() {
+    progressManager.setWorkDoneProgressSupportedByClient(true);
+    ArgumentCaptor<WorkDoneProgressCreateParams> progressCaptor = ArgumentCaptor.forClass(WorkDoneProgressCreateParams.class);
+    when(client.createProgress(progressCaptor.capture())).thenReturn(CompletableFuture.completedFuture(null));
+    var releaseFirstTask = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      releaseFirstTask.await();
+      return null;
+    }).when(taskExecutor).run(any());
+
+    underTest.scanForHotspotsInFiles(jsFiles(120));
+    verify(taskExecutor, timeout(1000)).run(any());
+    progressManager.cancelProgress(new WorkDoneProgressCancelParams(progressCaptor.getValue().getToken()));
+    releaseFirstTask.countDown();
+
+    verify(taskExecutor, after(500).times(1)).run(any());
+    verify(client, timeout(1000)).notifyProgress(argThat(params -> params.getValue().getLeft() instanceof WorkDoneProgressEnd end
+      && "Canceled".equals(end.getMessage())));
+  }
+
+  @Test
+  void shouldRunInteractiveAnalysisBeforeQueuedBackgroundBatches() {
+    var releaseFirstTask = new CountDownLatch(1);
+    var runTasks = new ArrayList<AnalysisTask>();
+    doAnswer(invocation -> {
+      runTasks.add(invocation.getArgument(0));
+      releaseFirstTask.await();
+      return null;
+    }).when(taskExecutor).run(any());
+
+    underTest.scanForHotspotsInFiles(jsFiles(60));
+    verify(taskExecutor, timeout(1000)).run(any());
+    underTest.didOpen(JS_FILE);
+    releaseFirstTask.countDown();
+
+    verify(taskExecutor, timeout(1000).times(3)).run(any());
+    assertThat(runTasks).extracting(task -> task.getFilesToAnalyze().size()).containsExactly(50, 1, 10);
+    assertThat(runTasks.get(1).getFilesToAnalyze()).containsExactly(JS_FILE);
+  }
+
+  @Test
+  void shouldSkipFilesEditedSinceBackgroundAnalysisWasQueued() {
+    var releaseFirstTask = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      releaseFirstTask.await();
+      return null;
+    }).when(taskExecutor).run(any());
+    var file = openFilesCache.didOpen(JS_FILE_URI, "javascript", "alert();", 1);
+
+    underTest.didOpen(new VersionedOpenFile(URI.create("file://other.js"), "javascript", 1, "alert();"));
+    verify(taskExecutor, timeout(1000)).run(any());
+    underTest.scanForHotspotsInFiles(List.of(file));
+    openFilesCache.didChange(JS_FILE_URI, "alert(2);", 2);
+    releaseFirstTask.countDown();
+
+    verify(taskExecutor, after(500).times(1)).run(any());
+  }
+
+  private static List<VersionedOpenFile> jsFiles(int count) {
+    return IntStream.range(0, count)
+      .mapToObj(i -> new VersionedOpenFile(URI.create("file://foo" + i + ".js"), "javascript", 1, "alert();"))
+      .toList();
+  }
+
+  @Test
+  void shouldClearAnalysisResultsOnlyWhenFilesOutsideEditorChange() {
+    openFilesCache.didOpen(JS_FILE_URI, "javascript", "alert();", 1);
+
+    underTest.didChangeWatchedFiles(List.of(new FileEvent(JS_FILE_URI.toString(), FileChangeType.Changed)));
+    verify(taskExecutor, never()).clearAnalysisResultCache();
+
+    underTest.didChangeWatchedFiles(List.of(new FileEvent("file://package.json", FileChangeType.Changed)));
+    verify(taskExecutor).clearAnalysisResultCache();
+  }
+
+  @Test
+  void shouldClearAnalysisResultsOfFolderOfChangedFile() {
+    var folder = mock(WorkspaceFolderWrapper.class);
+    var buildFileUri = URI.create("file:///folder/package.json");
+    when(foldersManager.findFolderForFile(buildFileUri)).thenReturn(Optional.of(folder));
+
+    underTest.didChangeWatchedFiles(List.of(new FileEvent(buildFileUri.toString(), FileChangeType.Changed)));
+
+    verify(taskExecutor).clearAnalysisResultCache(folder);
+    verify(taskExecutor, never()).clearAnalysisResultCache();
+  }
 }
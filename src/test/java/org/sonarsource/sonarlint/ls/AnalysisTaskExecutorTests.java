@@ -19,10 +19,14 @@
  */
 package org.sonarsource.sonarlint.ls;
 
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,6 +35,7 @@ import org.sonarsource.sonarlint.ls.log.LanguageClientLogger;
 import testutils.SonarLintLogTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -49,13 +54,14 @@ class AnalysisTaskExecutorTests {
   @BeforeEach
   public void init() {
     lsLogOutput = mock(LanguageClientLogger.class);
-    underTest = new AnalysisTaskExecutor(null, lsLogOutput, logTester.getLogger(), null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+    underTest = new AnalysisTaskExecutor(null, lsLogOutput, logTester.getLogger(), null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
     executor = Executors.newSingleThreadExecutor();
   }
 
   @AfterEach
   public void cleanup() {
     executor.shutdown();
+    underTest.shutdown();
   }
 
   @Test
@@ -82,4 +88,45 @@ class AnalysisTaskExecutorTests {
     assertThat(errorTask.getFuture().isDone()).isTrue();
   }
 
+  @Test
+  void shouldAnalyzeModulesConcurrently() {
+    var bothModulesStarted = new CountDownLatch(2);
+    var module1CompletedConcurrently = new AtomicBoolean();
+    var module2CompletedConcurrently = new AtomicBoolean();
+    var task = new AnalysisTask(Set.of(), false, false, false);
+
+    underTest.runModuleAnalyses(task, List.of(
+      () -> module1CompletedConcurrently.set(countDownAndAwait(bothModulesStarted)),
+      () -> module2CompletedConcurrently.set(countDownAndAwait(bothModulesStarted))));
+
+    assertThat(module1CompletedConcurrently).isTrue();
+    assertThat(module2CompletedConcurrently).isTrue();
+  }
+
+  @Test
+  void shouldWaitForAllModulesAndRethrowFirstFailure() {
+    var otherModuleCompleted = new AtomicBoolean();
+    var task = new AnalysisTask(Set.of(), false, false, false);
+
+    List<Runnable> moduleAnalyses = List.of(
+      () -> {
+        throw new IllegalStateException("boom");
+      },
+      () -> otherModuleCompleted.set(true));
+    assertThatThrownBy(() -> underTest.runModuleAnalyses(task, moduleAnalyses))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("boom");
+    assertThat(otherModuleCompleted).isTrue();
+  }
+
+  private static boolean countDownAndAwait(CountDownLatch latch) {
+    latch.countDown();
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
 }
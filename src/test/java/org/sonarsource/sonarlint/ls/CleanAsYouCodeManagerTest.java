@@ -67,7 +67,6 @@ class CleanAsYouCodeManagerTest {
         false, false, "", true));
 
     verify(backendService).toggleCleanAsYouCode();
-    verify(diagnosticPublisher).publishDiagnostics(dummyFile1, false);
-    verify(diagnosticPublisher).publishDiagnostics(dummyFile2, false);
+    verify(diagnosticPublisher).publishDiagnostics(List.of(dummyFile1, dummyFile2), false);
   }
 }
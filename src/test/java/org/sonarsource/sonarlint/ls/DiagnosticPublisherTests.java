@@ -19,10 +19,13 @@
  */
 package org.sonarsource.sonarlint.ls;
 
+import com.google.gson.JsonObject;
 import java.net.URI;
+import java.util.List;
 import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.DiagnosticSeverity;
 import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.Range;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +40,7 @@ import org.sonarsource.sonarlint.ls.notebooks.OpenNotebooksCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -117,6 +121,71 @@ class DiagnosticPublisherTests {
     verify(languageClient, never()).showFirstSecretDetectionNotification();
   }
 
+  @Test
+  void publishPersistedDiagnostics() {
+    var uri = URI.create("file:///some/file.py");
+    var diagnostic = new Diagnostic(new Range(new Position(1, 0), new Position(1, 5)), "message", DiagnosticSeverity.Warning, "sonarlint", "python:S1234");
+    var hotspot = new Diagnostic(new Range(new Position(2, 0), new Position(2, 5)), "hotspot", DiagnosticSeverity.Warning, "sonarlint", "python:S4321");
+
+    underTest.publishPersistedDiagnostics(uri, new PersistentIssuesCache.PersistedFindings(uri.toString(), "hash", List.of(diagnostic), List.of(hotspot)));
+
+    verify(languageClient).publishDiagnostics(new PublishDiagnosticsParams(uri.toString(), List.of(diagnostic)));
+    verify(languageClient).publishSecurityHotspots(new PublishDiagnosticsParams(uri.toString(), List.of(hotspot)));
+  }
+
+  @Test
+  void publishPersistedDiagnosticsWithoutEntryKeysOfPreviousSession() {
+    var uri = URI.create("file:///some/file.py");
+    var diagnostic = new Diagnostic(new Range(new Position(1, 0), new Position(1, 5)), "message", DiagnosticSeverity.Warning, "sonarlint", "python:S1234");
+    var data = new JsonObject();
+    data.addProperty("entryKey", "previousSessionKey");
+    data.addProperty("serverIssueKey", "serverKey");
+    diagnostic.setData(data);
+
+    underTest.publishPersistedDiagnostics(uri, new PersistentIssuesCache.PersistedFindings(uri.toString(), "hash", List.of(diagnostic), List.of()));
+
+    var publishedData = (JsonObject) diagnostic.getData();
+    assertThat(publishedData.has("entryKey")).isFalse();
+    assertThat(publishedData.get("persisted").getAsBoolean()).isTrue();
+    assertThat(publishedData.get("serverIssueKey").getAsString()).isEqualTo("serverKey");
+    verify(languageClient).publishDiagnostics(new PublishDiagnosticsParams(uri.toString(), List.of(diagnostic)));
+  }
+
+  @Test
+  void shouldReuseConversionUntilFocusOnNewCodeChanges() {
+    var issue = mock(DelegatingIssue.class);
+    when(issue.getStartLine()).thenReturn(1);
+    when(issue.getMessage()).thenReturn("Do this, don't do that");
+    when(issue.isOnNewCode()).thenReturn(false);
+    var versionedIssue = new VersionedIssue(issue, 1);
+
+    var diagnostic = underTest.convert(entry("id", versionedIssue));
+    assertThat(underTest.convert(entry("id", new VersionedIssue(issue, 2)))).isSameAs(diagnostic);
+
+    underTest.setFocusOnNewCode(true);
+    var focusedDiagnostic = underTest.convert(entry("id", versionedIssue));
+
+    assertThat(focusedDiagnostic).isNotSameAs(diagnostic);
+    assertThat(focusedDiagnostic.getSeverity()).isEqualTo(DiagnosticSeverity.Hint);
+  }
+
+  @Test
+  void shouldNotRepublishUnchangedDiagnostics() {
+    var uri = initWithOneCobolIssue();
+
+    underTest.publishDiagnostics(uri, false);
+    underTest.publishDiagnostics(List.of(uri), false);
+
+    verify(languageClient, times(1)).publishDiagnostics(any());
+    verify(languageClient, times(1)).publishSecurityHotspots(any());
+
+    issuesCache.clear(uri);
+    underTest.publishDiagnostics(uri, false);
+
+    verify(languageClient).publishDiagnostics(new PublishDiagnosticsParams(uri.toString(), List.of()));
+    verify(languageClient, times(1)).publishSecurityHotspots(any());
+  }
+
   @Test
   void setSeverityTest() {
     var diagnostic = new Diagnostic();
@@ -0,0 +1,132 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls;
+
+import com.google.gson.JsonObject;
+import java.net.URI;
+import java.util.UUID;
+import org.eclipse.lsp4j.Diagnostic;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.ls.connected.DelegatingIssue;
+import org.sonarsource.sonarlint.ls.file.VersionedOpenFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IssuesCacheTests {
+
+  private static final URI FILE_URI = URI.create("file:///foo.js");
+
+  private IssuesCache underTest;
+
+  @BeforeEach
+  void init() {
+    underTest = new IssuesCache();
+  }
+
+  @Test
+  void shouldKeepSameIdForSameIssueAcrossAnalyses() {
+    analyze(1, issue("js:S123", "Remove this", 3));
+    var firstId = underTest.get(FILE_URI).keySet().iterator().next();
+
+    analyze(2, issue("js:S123", "Remove this", 3));
+
+    assertThat(underTest.get(FILE_URI)).containsOnlyKeys(firstId);
+    assertThat(underTest.get(FILE_URI).get(firstId).documentVersion()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldKeepIssuesWithSameContent() {
+    analyze(1, issue("js:S123", "Remove this", 3), issue("js:S123", "Remove this", 3), issue("js:S123", "Remove this", 4));
+
+    assertThat(underTest.count(FILE_URI)).isEqualTo(3);
+  }
+
+  @Test
+  void shouldFindAndRemoveIssuesByServerKey() {
+    var serverIssue = mock(DelegatingIssue.class);
+    when(serverIssue.getServerIssueKey()).thenReturn("serverKey");
+    var issueUuid = UUID.randomUUID();
+    var localIssue = mock(DelegatingIssue.class);
+    when(localIssue.getIssueId()).thenReturn(issueUuid);
+    analyze(1, serverIssue, localIssue);
+
+    var found = underTest.findIssuePerId(FILE_URI.toString(), "serverKey");
+    assertThat(found).isPresent();
+    assertThat(found.get().getValue().issue()).isSameAs(serverIssue);
+
+    underTest.removeIssueWithServerKey(FILE_URI.toString(), "serverKey");
+    underTest.removeIssueWithServerKey(FILE_URI.toString(), issueUuid.toString());
+
+    assertThat(underTest.findIssuePerId(FILE_URI.toString(), "serverKey")).isEmpty();
+    assertThat(underTest.count(FILE_URI)).isZero();
+  }
+
+  @Test
+  void shouldForgetServerKeyOfIssueRemovedByIssueId() {
+    var issueUuid = UUID.randomUUID();
+    var serverIssue = mock(DelegatingIssue.class);
+    when(serverIssue.getServerIssueKey()).thenReturn("serverKey");
+    when(serverIssue.getIssueId()).thenReturn(issueUuid);
+    analyze(1, serverIssue);
+
+    underTest.removeIssueWithServerKey(FILE_URI.toString(), issueUuid.toString());
+
+    assertThat(underTest.count(FILE_URI)).isZero();
+    assertThat(underTest.findIssuePerId(FILE_URI.toString(), "serverKey")).isEmpty();
+  }
+
+  @Test
+  void shouldNotFindIssueOfPersistedDiagnostic() {
+    analyze(1, issue("js:S123", "Remove this", 3));
+    var entryKey = underTest.get(FILE_URI).keySet().iterator().next();
+    var data = new JsonObject();
+    data.addProperty("entryKey", entryKey);
+    var diagnostic = new Diagnostic();
+    diagnostic.setData(data);
+
+    assertThat(underTest.getIssueForDiagnostic(FILE_URI, diagnostic)).isPresent();
+
+    data.addProperty("persisted", true);
+
+    assertThat(underTest.getIssueForDiagnostic(FILE_URI, diagnostic)).isEmpty();
+  }
+
+  private void analyze(int version, Issue... issues) {
+    var file = new VersionedOpenFile(FILE_URI, "javascript", version, "");
+    underTest.analysisStarted(file);
+    for (var issue : issues) {
+      underTest.reportIssue(file, issue);
+    }
+    underTest.analysisSucceeded(file);
+  }
+
+  private static Issue issue(String ruleKey, String message, int line) {
+    var issue = mock(Issue.class);
+    when(issue.getRuleKey()).thenReturn(ruleKey);
+    when(issue.getMessage()).thenReturn(message);
+    when(issue.getStartLine()).thenReturn(line);
+    when(issue.getEndLine()).thenReturn(line);
+    return issue;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import testutils.SonarLintLogTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+
+class PersistentIssuesCacheTests {
+
+  private static final URI FILE_URI = URI.create("file:///some/file.py");
+
+  @RegisterExtension
+  SonarLintLogTester logTester = new SonarLintLogTester();
+
+  @TempDir
+  Path storageDir;
+
+  private PersistentIssuesCache underTest;
+
+  @BeforeEach
+  void prepare() {
+    underTest = new PersistentIssuesCache(storageDir, logTester.getLogger());
+  }
+
+  @AfterEach
+  void cleanup() {
+    underTest.shutdown();
+  }
+
+  @Test
+  void should_load_stored_findings_for_same_content() {
+    underTest.initialize(true);
+
+    underTest.store(FILE_URI, "print('hello')", List.of(diagnostic("python:S1234", 1)), List.of(diagnostic("python:S4321", 2)));
+    await().until(() -> Files.exists(underTest.fileFor(FILE_URI)));
+
+    var findings = underTest.load(FILE_URI, "print('hello')");
+    assertThat(findings).isPresent();
+    assertThat(findings.get().getDiagnostics()).extracting(d -> d.getCode().getLeft(), d -> d.getRange().getStart().getLine())
+      .containsExactly(tuple("python:S1234", 1));
+    assertThat(findings.get().getSecurityHotspots()).extracting(d -> d.getCode().getLeft()).containsExactly("python:S4321");
+  }
+
+  @Test
+  void should_not_load_findings_for_different_content() {
+    underTest.initialize(true);
+
+    underTest.store(FILE_URI, "print('hello')", List.of(diagnostic("python:S1234", 1)), List.of());
+    await().until(() -> Files.exists(underTest.fileFor(FILE_URI)));
+
+    assertThat(underTest.load(FILE_URI, "print('hello world')")).isEmpty();
+    assertThat(underTest.load(URI.create("file:///other/file.py"), "print('hello')")).isEmpty();
+  }
+
+  @Test
+  void should_do_nothing_when_disabled() throws Exception {
+    underTest.initialize(false);
+
+    underTest.store(FILE_URI, "print('hello')", List.of(diagnostic("python:S1234", 1)), List.of());
+    underTest.shutdown();
+
+    try (var files = Files.list(storageDir)) {
+      assertThat(files).isEmpty();
+    }
+    assertThat(underTest.load(FILE_URI, "print('hello')")).isEmpty();
+  }
+
+  @Test
+  void should_purge_old_entries_on_initialization() throws Exception {
+    var oldEntry = underTest.fileFor(FILE_URI);
+    Files.writeString(oldEntry, "{}");
+    Files.setLastModifiedTime(oldEntry, FileTime.from(Instant.now().minus(PersistentIssuesCache.MAX_AGE).minusSeconds(60)));
+    var recentEntry = underTest.fileFor(URI.create("file:///other/file.py"));
+    Files.writeString(recentEntry, "{}");
+
+    underTest.initialize(true);
+
+    await().until(() -> !Files.exists(oldEntry));
+    assertThat(recentEntry).exists();
+  }
+
+  @Test
+  void should_ignore_corrupted_entries() throws Exception {
+    underTest.initialize(true);
+    Files.writeString(underTest.fileFor(FILE_URI), "not json");
+
+    assertThat(underTest.load(FILE_URI, "print('hello')")).isEmpty();
+  }
+
+  private static Diagnostic diagnostic(String ruleKey, int line) {
+    var diagnostic = new Diagnostic(new Range(new Position(line, 0), new Position(line, 5)), "message", DiagnosticSeverity.Warning, "sonarlint", ruleKey);
+    var data = new DiagnosticPublisher.DiagnosticData();
+    data.setEntryKey("some-id");
+    diagnostic.setData(data);
+    return diagnostic;
+  }
+}
@@ -20,13 +20,18 @@
 package org.sonarsource.sonarlint.ls;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
 import testutils.SonarLintLogTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -70,6 +75,58 @@ class ScmIgnoredCacheTests {
     verifyNoMoreInteractions(mockClient);
   }
 
+  @Test
+  void async_lookup_should_not_wait_for_client() {
+    var clientReply = new CompletableFuture<Boolean>();
+    when(mockClient.isIgnoredByScm(FAKE_URI.toString())).thenReturn(clientReply);
+
+    var lookup = underTest.getOrFetchAsync(FAKE_URI);
+    assertThat(lookup).isNotDone();
+
+    clientReply.complete(true);
+    assertThat(lookup).isCompletedWithValue(Optional.of(true));
+    assertThat(underTest.getOrFetchAsync(FAKE_URI)).isCompletedWithValue(Optional.of(true));
+    verify(mockClient, times(1)).isIgnoredByScm(FAKE_URI.toString());
+  }
+
+  @Test
+  void async_lookup_should_be_empty_if_exception() {
+    when(mockClient.isIgnoredByScm(FAKE_URI.toString())).thenThrow(new IllegalStateException("Cancelled"));
+    assertThat(underTest.getOrFetchAsync(FAKE_URI)).isCompletedWithValue(Optional.empty());
+  }
+
+  @Test
+  void bulk_lookup_should_fall_back_to_single_file_requests() {
+    when(mockClient.isIgnoredByScm(FAKE_URI.toString())).thenReturn(CompletableFuture.completedFuture(true));
+
+    var lookups = underTest.getOrFetchAsync(List.of(FAKE_URI));
+
+    assertThat(lookups.get(FAKE_URI)).isCompletedWithValue(Optional.of(true));
+    verify(mockClient).isIgnoredByScm(FAKE_URI.toString());
+    verifyNoMoreInteractions(mockClient);
+  }
+
+  @Test
+  void bulk_lookup_should_fetch_uncached_statuses_in_one_request() {
+    var otherUri = URI.create("file:///other");
+    var unknownUri = URI.create("file:///unknown");
+    when(mockClient.isIgnoredByScm(FAKE_URI.toString())).thenReturn(CompletableFuture.completedFuture(true));
+    when(mockClient.areIgnoredByScm(any())).thenReturn(CompletableFuture.completedFuture(Map.of(otherUri.toString(), false)));
+    underTest.initialize(true);
+    underTest.isIgnored(FAKE_URI);
+
+    var lookups = underTest.getOrFetchAsync(List.of(FAKE_URI, otherUri, unknownUri));
+
+    assertThat(lookups.get(FAKE_URI)).isCompletedWithValue(Optional.of(true));
+    assertThat(lookups.get(otherUri)).isCompletedWithValue(Optional.of(false));
+    assertThat(lookups.get(unknownUri)).isCompletedWithValue(Optional.empty());
+    var captor = ArgumentCaptor.forClass(SonarLintExtendedLanguageClient.FileUrisParams.class);
+    verify(mockClient).areIgnoredByScm(captor.capture());
+    assertThat(captor.getValue().getFileUris()).containsExactlyInAnyOrder(otherUri.toString(), unknownUri.toString());
+    assertThat(underTest.getOrFetchAsync(List.of(otherUri, unknownUri))).hasSize(2);
+    verify(mockClient).areIgnoredByScm(any());
+  }
+
   @Test
   void status_should_be_empty_if_exception() {
     when(mockClient.isIgnoredByScm(FAKE_URI.toString())).thenThrow(new IllegalStateException("Cancelled"));
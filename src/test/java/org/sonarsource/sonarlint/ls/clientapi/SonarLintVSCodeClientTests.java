@@ -380,7 +380,7 @@ class SonarLintVSCodeClientTests {
     var params = new DidReceiveServerEventParams("connectionId", serverEvent);
     underTest.didReceiveServerEvent(params);
 
-    verify(serverSentEventsHandlerService).handleEvents(serverEvent);
+    verify(serverSentEventsHandlerService).handleEvents("connectionId", serverEvent);
   }
 
   @Test
@@ -35,12 +35,14 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import org.eclipse.lsp4j.MessageType;
 import org.eclipse.lsp4j.WorkspaceFolder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.sonarsource.sonarlint.core.client.api.connected.ConnectedSonarLintEngine;
 import org.sonarsource.sonarlint.core.client.api.connected.ProjectBranches;
 import org.sonarsource.sonarlint.core.commons.IssueSeverity;
@@ -57,6 +59,7 @@ import org.sonarsource.sonarlint.ls.EnginesFactory;
 import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient;
 import org.sonarsource.sonarlint.ls.backend.BackendService;
 import org.sonarsource.sonarlint.ls.backend.BackendServiceFacade;
+import org.sonarsource.sonarlint.ls.file.FolderFileIndex;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFolderWrapper;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFoldersManager;
 import org.sonarsource.sonarlint.ls.notebooks.OpenNotebooksCache;
@@ -74,6 +77,7 @@ import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -125,6 +129,7 @@ class ProjectBindingManagerTests {
   SonarLintExtendedLanguageClient client = mock(SonarLintExtendedLanguageClient.class);
   private final DiagnosticPublisher diagnosticPublisher = mock(DiagnosticPublisher.class);
   private final OpenNotebooksCache openNotebooksCache = mock(OpenNotebooksCache.class);
+  private final ExecutorService initialSyncExecutor = mock(ExecutorService.class);
 
   @BeforeEach
   public void prepare() throws IOException, ExecutionException, InterruptedException {
@@ -158,7 +163,8 @@ class ProjectBindingManagerTests {
     when(openNotebooksCache.getFile(any(URI.class))).thenReturn(Optional.empty());
 
     underTest = new ProjectBindingManager(enginesFactory, foldersManager, settingsManager, client, folderBindingCache, logTester.getLogger(),
-      connectedEngineCacheByConnectionId, taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade, openNotebooksCache);
+      connectedEngineCacheByConnectionId, taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade, openNotebooksCache,
+      folder -> folder.getOrCreateFileIndex(f -> new FolderFileIndex(f, (settings, filePath) -> false)), initialSyncExecutor);
     underTest.setAnalysisManager(analysisManager);
     underTest.setBranchResolver(uri -> Optional.of("main"));
   }
@@ -254,10 +260,57 @@ class ProjectBindingManagerTests {
 
     var binding = underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
     assertThat(binding).isNotEmpty();
+    verify(fakeEngine, never()).updateProject(any(), any(), eq(PROJECT_KEY), any());
+
+    runInitialSyncs();
 
     verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
   }
 
+  @Test
+  void end_of_initial_sync_should_refresh_binding_and_analysis_of_project() {
+    var folder = mockFileInABoundWorkspaceFolder();
+    when(foldersManager.getAll()).thenReturn(List.of(folder));
+
+    assertThat(underTest.getBinding(fileInAWorkspaceFolderPath.toUri())).isNotEmpty();
+    runInitialSyncs();
+
+    verify(fakeEngine).syncServerIssues(any(), any(), eq(PROJECT_KEY), eq(BRANCH_NAME), any());
+    verify(analysisManager).didSyncStorages();
+    verify(analysisManager).analyzeAllOpenFilesInFolder(folder);
+    // Binding was computed again from the updated storage
+    verify(fakeEngine, times(2)).calculatePathPrefixes(eq(PROJECT_KEY), any());
+
+    underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+
+    verify(initialSyncExecutor, never()).execute(any());
+  }
+
+  @Test
+  void failed_initial_sync_should_keep_binding_and_be_attempted_again_on_next_binding_computation() {
+    var folder = mockFileInABoundWorkspaceFolder();
+    when(foldersManager.getAll()).thenReturn(List.of(folder));
+    doThrow(new IllegalStateException("Server unreachable")).when(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
+
+    assertThat(underTest.getBinding(fileInAWorkspaceFolderPath.toUri())).isNotEmpty();
+    runInitialSyncs();
+
+    verify(analysisManager, never()).didSyncStorages();
+    verify(analysisManager, never()).analyzeAllOpenFilesInFolder(any());
+    verify(fakeEngine).calculatePathPrefixes(eq(PROJECT_KEY), any());
+    // Binding is still cached, so the failed sync is not submitted again in a loop
+    underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+    verify(initialSyncExecutor, never()).execute(any());
+
+    underTest.clearBindingCache();
+    assertThat(underTest.getBinding(fileInAWorkspaceFolderPath.toUri())).isNotEmpty();
+    runInitialSyncs();
+
+    verify(fakeEngine, times(2)).updateProject(any(), any(), eq(PROJECT_KEY), any());
+    verify(analysisManager, never()).didSyncStorages();
+    verify(initialSyncExecutor, never()).execute(any());
+  }
+
   @Test
   void test_use_sonarcloud() {
     mockFileOutsideFolder();
@@ -538,11 +591,66 @@ class ProjectBindingManagerTests {
 
     var binding = underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
     assertThat(binding).isNotEmpty();
+    runInitialSyncs();
 
     verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
     verify(fakeEngine).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
   }
 
+  @Test
+  void reuse_path_prefixes_and_initial_sync_after_binding_cache_cleared() {
+    mockFileInABoundWorkspaceFolder();
+
+    assertThat(underTest.getBinding(fileInAWorkspaceFolderPath.toUri())).isNotEmpty();
+    underTest.clearBindingCache();
+    var binding = underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+
+    assertThat(binding).isNotEmpty();
+    assertThat(binding.get().getBinding()).isEqualTo(FAKE_BINDING);
+    verify(fakeEngine).calculatePathPrefixes(eq(PROJECT_KEY), any());
+    verify(initialSyncExecutor).execute(any());
+  }
+
+  @Test
+  void recompute_path_prefixes_when_file_tree_changed() {
+    var folder = mockFileInABoundWorkspaceFolder();
+
+    underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+    folder.didChangeFileTree();
+    underTest.clearBindingCache();
+    underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+
+    verify(fakeEngine, times(2)).calculatePathPrefixes(eq(PROJECT_KEY), any());
+    verify(initialSyncExecutor).execute(any());
+  }
+
+  @Test
+  void compute_path_prefixes_from_files_of_the_folder_index() throws IOException {
+    var folder = mockFileInABoundWorkspaceFolder();
+    Files.createDirectories(workspaceFolderPath.resolve(".hidden"));
+    Files.createFile(workspaceFolderPath.resolve(".hidden").resolve("hidden.php"));
+
+    underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+
+    verify(fakeEngine).calculatePathPrefixes(eq(PROJECT_KEY), argThat(paths -> paths.size() == 1 && paths.contains(FILE_PHP)));
+    assertThat(folder.getFileIndex()).isNotNull();
+  }
+
+  @Test
+  void recompute_path_prefixes_when_project_storage_updated() {
+    mockFileInABoundWorkspaceFolder();
+
+    underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+    underTest.didUpdateProjectStorage(CONNECTION_ID, PROJECT_KEY);
+    underTest.clearBindingCache();
+    underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+    underTest.didUpdateProjectStorage(CONNECTION_ID, "otherProject");
+    underTest.clearBindingCache();
+    underTest.getBinding(fileInAWorkspaceFolderPath.toUri());
+
+    verify(fakeEngine, times(2)).calculatePathPrefixes(eq(PROJECT_KEY), any());
+  }
+
   @Test
   void should_return_empty_optional_on_invalid_path() {
     var uri = underTest.serverPathToFileUri("invalidPath");
@@ -659,6 +767,13 @@ class ProjectBindingManagerTests {
     verify(diagnosticPublisher).publishDiagnostics(URI.create(serverPath), false);
   }
 
+  private void runInitialSyncs() {
+    var initialSyncs = ArgumentCaptor.forClass(Runnable.class);
+    verify(initialSyncExecutor).execute(initialSyncs.capture());
+    clearInvocations(initialSyncExecutor);
+    initialSyncs.getAllValues().forEach(Runnable::run);
+  }
+
   private WorkspaceFolderWrapper mockFileInABoundWorkspaceFolder() {
     var folder = mockFileInAFolder();
     folder.setSettings(BOUND_SETTINGS);
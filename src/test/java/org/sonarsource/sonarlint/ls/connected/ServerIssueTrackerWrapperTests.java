@@ -37,10 +37,12 @@ import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
 import org.sonarsource.sonarlint.core.client.api.connected.ConnectedSonarLintEngine;
 import org.sonarsource.sonarlint.core.clientapi.backend.tracking.LocalOnlyIssueDto;
 import org.sonarsource.sonarlint.core.clientapi.backend.tracking.ServerMatchedIssueDto;
+import org.sonarsource.sonarlint.core.clientapi.backend.tracking.TrackWithServerIssuesParams;
 import org.sonarsource.sonarlint.core.clientapi.backend.tracking.TrackWithServerIssuesResponse;
 import org.sonarsource.sonarlint.core.commons.IssueSeverity;
 import org.sonarsource.sonarlint.core.commons.RuleType;
@@ -64,6 +66,7 @@ import testutils.SonarLintLogTester;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -78,6 +81,7 @@ class ServerIssueTrackerWrapperTests {
   @RegisterExtension
   SonarLintLogTester logTester = new SonarLintLogTester();
   private static int counter = 1;
+  private BackendService backendService;
 
   @Test
   void get_original_issues_when_there_are_no_server_issues() {
@@ -157,6 +161,26 @@ class ServerIssueTrackerWrapperTests {
       .containsExactly(serverIssueSeverity, serverIssueType);
   }
 
+  @Test
+  void track_issues_of_all_files_with_a_single_backend_request() {
+    var issue1 = mockIssue();
+    var issue2 = mockIssue();
+    var localOnlyIssueDto1 = createLocalOnlyIssueDto();
+    var localOnlyIssueDto2 = createLocalOnlyIssueDto();
+    var tracker = newTracker(CompletableFuture.completedFuture(new TrackWithServerIssuesResponse(Map.of(
+      "file1", List.of(Either.forRight(localOnlyIssueDto1)),
+      "file2", List.of(Either.forRight(localOnlyIssueDto2))))));
+
+    var recorded = new LinkedList<Issue>();
+    tracker.matchAndTrack(Map.of("file1", List.of(issue1), "file2", List.of(issue2), "file3", List.of()), recorded::add, false);
+
+    assertThat(recorded).extracting(issue -> ((DelegatingIssue) issue).getIssueId())
+      .containsExactlyInAnyOrder(localOnlyIssueDto1.getId(), localOnlyIssueDto2.getId());
+    var paramsCaptor = ArgumentCaptor.forClass(TrackWithServerIssuesParams.class);
+    verify(backendService, times(1)).matchIssues(paramsCaptor.capture());
+    assertThat(paramsCaptor.getValue().getClientTrackedIssuesByServerRelativePath()).containsOnlyKeys("file1", "file2");
+  }
+
   @Test
   void do_not_get_server_issues_when_there_are_no_local_issues() {
     var engine = mock(ConnectedSonarLintEngine.class);
@@ -274,7 +298,7 @@ class ServerIssueTrackerWrapperTests {
     var projectBinding = new ProjectBinding(projectKey, "", "");
     Supplier<String> branchSupplier = () -> "branchName";
     var backendServiceFacade = mock(BackendServiceFacade.class);
-    var backendService = mock(BackendService.class);
+    backendService = mock(BackendService.class);
     var workspaceFoldersManager = mock(WorkspaceFoldersManager.class);
     var workspaceFolderWrapper = mock(WorkspaceFolderWrapper.class);
     var settingsManager = mock(SettingsManager.class);
@@ -20,8 +20,6 @@
 package org.sonarsource.sonarlint.ls.connected;
 
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
 import org.eclipse.lsp4j.Diagnostic;
@@ -181,13 +179,51 @@ class TaintVulnerabilitiesCacheTests {
     when(issue.getRuleKey()).thenReturn(SAMPLE_SECURITY_RULE_KEY);
     when(issue.isResolved()).thenReturn(false);
 
-    underTest.getTaintVulnerabilitiesPerFile().put(uri,  new ArrayList<>(Arrays.asList(issue)));
+    underTest.reload(uri, List.of(issue));
     assertThat(underTest.getTaintVulnerabilityByKey(issueKey)).hasValue(issue);
 
     underTest.removeTaintIssue(uri.toString(), issueKey);
     assertThat(underTest.getTaintVulnerabilityByKey(issueKey)).isEmpty();
+    assertThat(underTest.getTaintVulnerabilitiesPerFile().get(uri)).isEmpty();
+  }
+
+  @Test
+  void testReloadReplacesIndexedIssuesOfFile() throws Exception {
+    var uri = new URI("/");
+    var issue = mock(TaintIssue.class);
+    when(issue.getKey()).thenReturn("key1");
+    var otherIssue = mock(TaintIssue.class);
+    when(otherIssue.getKey()).thenReturn("key2");
+
+    underTest.reload(uri, List.of(issue));
+    underTest.reload(uri, List.of(otherIssue));
+
+    assertThat(underTest.getTaintVulnerabilityByKey("key1")).isEmpty();
+    assertThat(underTest.getTaintVulnerabilityByKey("key2")).hasValue(otherIssue);
+    assertThat(underTest.getFileWithTaintVulnerability("key2")).hasValue(uri);
+
+    underTest.clear(uri);
+
+    assertThat(underTest.getTaintVulnerabilityByKey("key2")).isEmpty();
+    assertThat(underTest.getAllFilesWithTaintIssues()).isEmpty();
+  }
+
+  @Test
+  void testConvertDiagnosticsOncePerFocusOnNewCode() throws Exception {
+    var uri = new URI("/");
+    var issue = mock(TaintIssue.class);
+    when(issue.getKey()).thenReturn("key");
+    when(issue.getRuleKey()).thenReturn(SAMPLE_SECURITY_RULE_KEY);
+    when(issue.getTextRange()).thenReturn(new TextRangeWithHash(1, 1, 1, 1, ""));
+    when(issue.getMessage()).thenReturn("Boo");
+    underTest.reload(uri, List.of(issue));
 
+    var diagnostic = underTest.getAsDiagnostics(uri, false).findFirst().get();
 
+    assertThat(underTest.getAsDiagnostics(uri, false)).singleElement().isSameAs(diagnostic);
+    assertThat(underTest.getAsDiagnostics(uri, true).findFirst().get())
+      .isNotSameAs(diagnostic)
+      .extracting(Diagnostic::getSeverity).isEqualTo(DiagnosticSeverity.Hint);
   }
 
   private static Stream<Arguments> testIssueConversionParameters() {
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -33,7 +34,9 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import org.eclipse.lsp4j.WorkspaceFolder;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -62,6 +65,8 @@ import org.sonarsource.sonarlint.ls.connected.ProjectBindingWrapper;
 import org.sonarsource.sonarlint.ls.connected.TaintVulnerabilitiesCache;
 import org.sonarsource.sonarlint.ls.connected.domain.TaintIssue;
 import org.sonarsource.sonarlint.ls.connected.notifications.TaintVulnerabilityRaisedNotification;
+import org.sonarsource.sonarlint.ls.connected.sync.ServerSynchronizer;
+import org.sonarsource.sonarlint.ls.file.FolderFileIndex;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFolderWrapper;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFoldersManager;
 import org.sonarsource.sonarlint.ls.notebooks.OpenNotebooksCache;
@@ -71,6 +76,7 @@ import org.sonarsource.sonarlint.ls.settings.WorkspaceSettings;
 import testutils.SonarLintLogTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -123,6 +129,7 @@ class ServerSentEventsTests {
   TaintVulnerabilityRaisedNotification taintVulnerabilityRaisedNotification = mock(TaintVulnerabilityRaisedNotification.class);
   WorkspaceFoldersManager workspaceFoldersManager = mock(WorkspaceFoldersManager.class);
   AnalysisScheduler analysisScheduler = mock(AnalysisScheduler.class);
+  ServerSynchronizer serverSynchronizer = mock(ServerSynchronizer.class);
 
   @BeforeEach
   public void prepare() throws IOException, ExecutionException, InterruptedException {
@@ -138,16 +145,23 @@ class ServerSentEventsTests {
     taintVulnerabilitiesCache = new TaintVulnerabilitiesCache();
 
     projectBindingManager = new ProjectBindingManager(enginesFactory, foldersManager, settingsManager, client, folderBindingCache,
-      null, connectedEngineCacheByConnectionId, taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade, mock(OpenNotebooksCache.class));
+      null, connectedEngineCacheByConnectionId, taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade, mock(OpenNotebooksCache.class),
+      folder -> mock(FolderFileIndex.class), mock(ExecutorService.class));
     projectBindingManager.setBranchResolver(uri -> Optional.of(BRANCH_NAME));
 
-    underTest = new ServerSentEventsHandler(projectBindingManager, taintVulnerabilitiesCache, taintVulnerabilityRaisedNotification, settingsManager, workspaceFoldersManager, analysisScheduler);
+    underTest = new ServerSentEventsHandler(projectBindingManager, taintVulnerabilitiesCache, taintVulnerabilityRaisedNotification, settingsManager, workspaceFoldersManager, analysisScheduler,
+      serverSynchronizer, 0);
 
     MAIN_LOCATION = new TaintVulnerabilityRaisedEvent.Location(fileInAWorkspaceFolderPath.toUri().toString(),
       "Change this code to not construct SQL queries directly from user-controlled data.",
       new TaintVulnerabilityRaisedEvent.Location.TextRange(1, 2, 3, 4, "blablabla"));
   }
 
+  @AfterEach
+  void stop() {
+    underTest.shutdown();
+  }
+
   @Test
   void shouldPopulateEmptyCacheOnTaintVulnerabilityRaisedEvent() {
     prepareForServerEventTests();
@@ -162,7 +176,7 @@ class ServerSentEventsTests {
     TaintVulnerabilityRaisedEvent fakeEvent = new TaintVulnerabilityRaisedEvent(ISSUE_KEY1, PROJECT_KEY, BRANCH_NAME, CREATION_DATE, RULE_KEY,
       ISSUE_SEVERITY, RULE_TYPE, MAIN_LOCATION, FLOWS, null, null, null);
 
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).hasSize(1);
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1)).isNotEmpty();
@@ -192,7 +206,7 @@ class ServerSentEventsTests {
     // Event for new issue is received
     TaintVulnerabilityRaisedEvent fakeEvent = new TaintVulnerabilityRaisedEvent(ISSUE_KEY2, PROJECT_KEY, BRANCH_NAME, CREATION_DATE, RULE_KEY,
       ISSUE_SEVERITY, RULE_TYPE, MAIN_LOCATION, FLOWS, null, null, null);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).hasSize(2);
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1)).isNotEmpty();
@@ -217,9 +231,10 @@ class ServerSentEventsTests {
     when(settingsManager.getCurrentSettings()).thenReturn(newWorkspaceSettingsWithServers(Map.of(CONNECTION_ID, GLOBAL_SETTINGS)));
 
     TaintVulnerabilityClosedEvent fakeEvent = new TaintVulnerabilityClosedEvent(PROJECT_KEY, ISSUE_KEY1);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
-    assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).isEmpty();
+    await().untilAsserted(() -> assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).isEmpty());
+    verify(serverSynchronizer).didReceiveServerEvent(CONNECTION_ID, PROJECT_KEY);
   }
 
   @Test
@@ -229,7 +244,7 @@ class ServerSentEventsTests {
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).isNull();
 
     TaintVulnerabilityClosedEvent fakeEvent = new TaintVulnerabilityClosedEvent(PROJECT_KEY, ISSUE_KEY1);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).isNull();
   }
@@ -254,11 +269,11 @@ class ServerSentEventsTests {
     existingIssue.setType(NEW_RULE_TYPE);
     when(fakeEngine.getServerTaintIssues(any(ProjectBinding.class), eq(BRANCH_NAME), eq(FILE_PHP), eq(false))).thenReturn(issuesList);
     when(settingsManager.getCurrentSettings()).thenReturn(newWorkspaceSettingsWithServers(Map.of(CONNECTION_ID, GLOBAL_SETTINGS)));
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
+    await().untilAsserted(() -> assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1))
+      .hasValueSatisfying(issue -> assertThat(issue.getType()).isEqualTo(NEW_RULE_TYPE)));
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).hasSize(1);
-    assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1)).isNotEmpty();
-    assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().getType()).isEqualTo(NEW_RULE_TYPE);
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().isResolved()).isFalse();
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().getSeverity()).isEqualTo(NEW_ISSUE_SEVERITY);
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().getTextRange()).isEqualTo(textRangeWithHashFromTextRange(MAIN_LOCATION.getTextRange()));
@@ -284,24 +299,48 @@ class ServerSentEventsTests {
     existingIssue.setResolved(fakeEvent.getResolved());
     when(fakeEngine.getServerTaintIssues(any(ProjectBinding.class), eq(BRANCH_NAME), eq(FILE_PHP), eq(false))).thenReturn(issuesList);
     when(settingsManager.getCurrentSettings()).thenReturn(newWorkspaceSettingsWithServers(Map.of(CONNECTION_ID, GLOBAL_SETTINGS_SONARCLOUD)));
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
+    await().untilAsserted(() -> assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1))
+      .hasValueSatisfying(issue -> assertThat(issue.isResolved()).isTrue()));
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).hasSize(1);
-    assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1)).isNotEmpty();
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().getType()).isEqualTo(RULE_TYPE);
-    assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().isResolved()).isTrue();
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().getSeverity()).isEqualTo(ISSUE_SEVERITY);
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().getTextRange()).isEqualTo(textRangeWithHashFromTextRange(MAIN_LOCATION.getTextRange()));
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilityByKey(ISSUE_KEY1).get().getSource()).isEqualTo(SONARCLOUD_TAINT_SOURCE);
   }
 
+  @Test
+  void shouldRefreshImpactedFileOnceForBurstOfEvents() {
+    prepareForServerEventTests();
+    List<ServerTaintIssue> issuesList = new ArrayList<>();
+    ServerTaintIssue existingIssue = new ServerTaintIssue(ISSUE_KEY1, false, RULE_KEY, MAIN_LOCATION.getMessage(),
+      fileInAWorkspaceFolderPath.toUri().toString(), CREATION_DATE, ISSUE_SEVERITY, RULE_TYPE, textRangeWithHashFromTextRange(MAIN_LOCATION.getTextRange()), null, null, null);
+    issuesList.add(existingIssue);
+    taintVulnerabilitiesCache.reload(fileInAWorkspaceFolderPath.toUri(), TaintIssue.from(issuesList, false));
+    when(fakeEngine.getServerTaintIssues(any(ProjectBinding.class), eq(BRANCH_NAME), eq(FILE_PHP), eq(false))).thenReturn(issuesList);
+    when(settingsManager.getCurrentSettings()).thenReturn(newWorkspaceSettingsWithServers(Map.of(CONNECTION_ID, GLOBAL_SETTINGS)));
+    var coalescingHandler = new ServerSentEventsHandler(projectBindingManager, taintVulnerabilitiesCache, taintVulnerabilityRaisedNotification, settingsManager,
+      workspaceFoldersManager, analysisScheduler, serverSynchronizer, 500);
+
+    coalescingHandler.handleEvents(CONNECTION_ID, new IssueChangedEvent(PROJECT_KEY, List.of(ISSUE_KEY1), NEW_ISSUE_SEVERITY, null, null));
+    coalescingHandler.handleEvents(CONNECTION_ID, new IssueChangedEvent(PROJECT_KEY, List.of(ISSUE_KEY1, ISSUE_KEY2), null, NEW_RULE_TYPE, null));
+    coalescingHandler.handleEvents(CONNECTION_ID, new TaintVulnerabilityClosedEvent(PROJECT_KEY, ISSUE_KEY1));
+
+    await().untilAsserted(() -> verify(fakeEngine).getServerTaintIssues(any(ProjectBinding.class), eq(BRANCH_NAME), eq(FILE_PHP), eq(false)));
+    // Events of the burst must not trigger another refresh once the window is over
+    await().during(Duration.ofMillis(750)).atMost(Duration.ofSeconds(2))
+      .untilAsserted(() -> verify(fakeEngine, times(1)).getServerTaintIssues(any(ProjectBinding.class), eq(BRANCH_NAME), eq(FILE_PHP), eq(false)));
+    coalescingHandler.shutdown();
+  }
+
   @Test
   void shouldDoNothingOnTaintIssueOnIssueChangedEventWhenIssueDoesNotExistLocally() {
     // Initially cache is empty
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).isNull();
 
     IssueChangedEvent fakeEvent = new IssueChangedEvent(PROJECT_KEY, List.of(ISSUE_KEY1), NEW_ISSUE_SEVERITY, NEW_RULE_TYPE, null);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     assertThat(taintVulnerabilitiesCache.getTaintVulnerabilitiesPerFile().get(fileInAWorkspaceFolderPath.toUri())).isNull();
   }
@@ -322,7 +361,7 @@ class ServerSentEventsTests {
     // Event for new issue is received
     TaintVulnerabilityRaisedEvent fakeEvent = new TaintVulnerabilityRaisedEvent(ISSUE_KEY2, PROJECT_KEY, BRANCH_NAME, CREATION_DATE, RULE_KEY,
       ISSUE_SEVERITY, RULE_TYPE, MAIN_LOCATION, FLOWS, null, null, null);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     verify(taintVulnerabilityRaisedNotification, times(1)).showTaintVulnerabilityNotification(fakeEvent, CONNECTION_ID, false);
   }
@@ -343,7 +382,7 @@ class ServerSentEventsTests {
     // Event for new issue is received
     TaintVulnerabilityRaisedEvent fakeEvent = new TaintVulnerabilityRaisedEvent(ISSUE_KEY2, PROJECT_KEY, BRANCH_NAME, CREATION_DATE, RULE_KEY,
       ISSUE_SEVERITY, RULE_TYPE, MAIN_LOCATION, FLOWS, null, null, null);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     verify(taintVulnerabilityRaisedNotification, never()).showTaintVulnerabilityNotification(fakeEvent, CONNECTION_ID, false);
   }
@@ -364,7 +403,7 @@ class ServerSentEventsTests {
     // Event for new issue is received
     TaintVulnerabilityRaisedEvent fakeEvent = new TaintVulnerabilityRaisedEvent(ISSUE_KEY2, PROJECT_KEY, CURRENT_BRANCH_NAME, CREATION_DATE, RULE_KEY,
       ISSUE_SEVERITY, RULE_TYPE, MAIN_LOCATION, FLOWS, null, null, null);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     verify(taintVulnerabilityRaisedNotification, never()).showTaintVulnerabilityNotification(fakeEvent, CONNECTION_ID, false);
   }
@@ -385,7 +424,7 @@ class ServerSentEventsTests {
     // Event for new issue is received
     TaintVulnerabilityRaisedEvent fakeEvent = new TaintVulnerabilityRaisedEvent(ISSUE_KEY2, PROJECT_KEY, CURRENT_BRANCH_NAME, CREATION_DATE, RULE_KEY,
       ISSUE_SEVERITY, RULE_TYPE, MAIN_LOCATION, FLOWS, null, null, null);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     verify(taintVulnerabilityRaisedNotification, never()).showTaintVulnerabilityNotification(fakeEvent, CONNECTION_ID, false);
   }
@@ -409,7 +448,7 @@ class ServerSentEventsTests {
     // Event for new issue is received
     TaintVulnerabilityRaisedEvent fakeEvent = new TaintVulnerabilityRaisedEvent(ISSUE_KEY2, PROJECT_KEY, CURRENT_BRANCH_NAME, CREATION_DATE, RULE_KEY,
       ISSUE_SEVERITY, RULE_TYPE, MAIN_LOCATION, FLOWS, null, null, null);
-    underTest.handleEvents(fakeEvent);
+    underTest.handleEvents(CONNECTION_ID, fakeEvent);
 
     verify(taintVulnerabilityRaisedNotification, never()).showTaintVulnerabilityNotification(fakeEvent, CONNECTION_ID, false);
   }
@@ -431,7 +470,7 @@ class ServerSentEventsTests {
     when(settingsManager.getCurrentSettings()).thenReturn(newWorkspaceSettingsWithServers(Map.of(CONNECTION_ID, GLOBAL_SETTINGS)));
     when(workspaceFoldersManager.findFolderForFile(any(URI.class))).thenReturn(Optional.of(new WorkspaceFolderWrapper(workspaceFolderPath.toUri(), new WorkspaceFolder(workspaceFolderPath.toString()), logTester.getLogger())));
 
-    underTest.handleEvents(hotspotRaisedEvent);
+    underTest.handleEvents(CONNECTION_ID, hotspotRaisedEvent);
 
     verify(analysisScheduler).didReceiveHotspotEvent(fileInAWorkspaceFolderPath.toUri());
   }
@@ -445,7 +484,7 @@ class ServerSentEventsTests {
     var hotspotChangedEvent = new SecurityHotspotChangedEvent("hotspotKey2", PROJECT_KEY, Instant.now(), HotspotReviewStatus.SAFE,
       "test@user.com", fileInAWorkspaceFolderPath.toUri().toString());
 
-    underTest.handleEvents(hotspotChangedEvent);
+    underTest.handleEvents(CONNECTION_ID, hotspotChangedEvent);
 
     verify(analysisScheduler).didReceiveHotspotEvent(fileInAWorkspaceFolderPath.toUri());
   }
@@ -458,7 +497,7 @@ class ServerSentEventsTests {
 
     var hotspotClosedEvent = new SecurityHotspotClosedEvent(PROJECT_KEY, "hotspotKey2", fileInAWorkspaceFolderPath.toUri().toString());
 
-    underTest.handleEvents(hotspotClosedEvent);
+    underTest.handleEvents(CONNECTION_ID, hotspotClosedEvent);
 
     verify(analysisScheduler).didReceiveHotspotEvent(fileInAWorkspaceFolderPath.toUri());
   }
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -34,11 +36,17 @@ import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.MessageType;
 import org.eclipse.lsp4j.WorkspaceFolder;
 import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -46,8 +54,12 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.sonarsource.sonarlint.core.client.api.connected.ConnectedSonarLintEngine;
 import org.sonarsource.sonarlint.core.client.api.connected.ProjectBranches;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.RuleType;
+import org.sonarsource.sonarlint.core.commons.TextRangeWithHash;
 import org.sonarsource.sonarlint.core.commons.log.ClientLogOutput;
 import org.sonarsource.sonarlint.core.serverconnection.ProjectBinding;
+import org.sonarsource.sonarlint.core.serverconnection.issues.ServerTaintIssue;
 import org.sonarsource.sonarlint.ls.AnalysisScheduler;
 import org.sonarsource.sonarlint.ls.DiagnosticPublisher;
 import org.sonarsource.sonarlint.ls.EnginesFactory;
@@ -57,6 +69,7 @@ import org.sonarsource.sonarlint.ls.backend.BackendServiceFacade;
 import org.sonarsource.sonarlint.ls.connected.ProjectBindingManager;
 import org.sonarsource.sonarlint.ls.connected.ProjectBindingWrapper;
 import org.sonarsource.sonarlint.ls.connected.TaintVulnerabilitiesCache;
+import org.sonarsource.sonarlint.ls.file.FolderFileIndex;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFolderWrapper;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFoldersManager;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
@@ -74,7 +87,10 @@ import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -86,6 +102,7 @@ class ServerSynchronizerTests {
   private static final String FILE_PHP = "fileInAWorkspaceFolderPath.php";
   private static final String PROJECT_KEY = "myProject";
   private static final String PROJECT_KEY2 = "myProject2";
+  private static final String PROJECT_KEY3 = "myProject3";
   private static final ProjectBinding FAKE_BINDING = new ProjectBinding(PROJECT_KEY, "sqPrefix", "idePrefix");
   private static final ProjectBinding FAKE_BINDING2 = new ProjectBinding(PROJECT_KEY2, "sqPrefix2", "idePrefix2");
   private static final String CONNECTION_ID = "myServer";
@@ -123,6 +140,7 @@ class ServerSynchronizerTests {
   private ProjectBindingManager bindingManager;
   private Timer syncTimer;
   private Runnable syncTask;
+  private long now;
   private TaintVulnerabilitiesCache taintVulnerabilitiesCache;
   private DiagnosticPublisher diagnosticPublisher;
 
@@ -156,11 +174,14 @@ class ServerSynchronizerTests {
     folderBindingCache = new ConcurrentHashMap<>();
     taintVulnerabilitiesCache = mock(TaintVulnerabilitiesCache.class);
     diagnosticPublisher = mock(DiagnosticPublisher.class);
-    bindingManager = new ProjectBindingManager(enginesFactory, foldersManager, settingsManager, client, logTester.getLogger(),
-      taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade, mock(OpenNotebooksCache.class));
+    // Initial syncs of bound projects are not run, to only count the synchronizations done by the synchronizer
+    bindingManager = new ProjectBindingManager(enginesFactory, foldersManager, settingsManager, client, new ConcurrentHashMap<>(), logTester.getLogger(),
+      new ConcurrentHashMap<>(), taintVulnerabilitiesCache, diagnosticPublisher, backendServiceFacade, mock(OpenNotebooksCache.class),
+      folder -> mock(FolderFileIndex.class), mock(ExecutorService.class));
     syncTimer = mock(Timer.class);
     var syncTaskCaptor = ArgumentCaptor.forClass(TimerTask.class);
-    underTest = new ServerSynchronizer(client, new ProgressManager(client, logTester.getLogger()), bindingManager, analysisManager, syncTimer, backendServiceFacade, logTester.getLogger());
+    underTest = new ServerSynchronizer(client, new ProgressManager(client, logTester.getLogger()), bindingManager, analysisManager, syncTimer, backendServiceFacade, logTester.getLogger(),
+      () -> now);
     verify(syncTimer).scheduleAtFixedRate(syncTaskCaptor.capture(), anyLong(), anyLong());
     syncTask = syncTaskCaptor.getValue();
     bindingManager.setAnalysisManager(analysisManager);
@@ -187,13 +208,14 @@ class ServerSynchronizerTests {
 
     underTest.updateAllBindings(mock(CancelChecker.class), null);
 
-    verify(fakeEngine, times(2)).updateProject(any(), any(), eq(PROJECT_KEY), any());
-    verify(fakeEngine, times(2)).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
-    verify(fakeEngine2, times(2)).updateProject(any(), any(), eq(PROJECT_KEY2), any());
-    verify(fakeEngine2, times(2)).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
+    verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
+    verify(fakeEngine).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(fakeEngine2).updateProject(any(), any(), eq(PROJECT_KEY2), any());
+    verify(fakeEngine2).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
 
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder1);
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder2);
+    verify(analysisManager).didSyncStorages();
     verifyNoMoreInteractions(analysisManager);
   }
 
@@ -213,13 +235,14 @@ class ServerSynchronizerTests {
 
     underTest.updateAllBindings(mock(CancelChecker.class), null);
 
-    verify(fakeEngine, times(2)).updateProject(any(), any(), eq(PROJECT_KEY), any());
-    verify(fakeEngine, times(2)).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
-    verify(fakeEngine2, times(2)).updateProject(any(), any(), eq(PROJECT_KEY2), any());
-    verify(fakeEngine2, times(2)).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
+    verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
+    verify(fakeEngine).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(fakeEngine2).updateProject(any(), any(), eq(PROJECT_KEY2), any());
+    verify(fakeEngine2).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
 
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder1);
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder2);
+    verify(analysisManager).didSyncStorages();
     verifyNoMoreInteractions(analysisManager);
   }
 
@@ -239,12 +262,13 @@ class ServerSynchronizerTests {
 
     underTest.updateAllBindings(mock(CancelChecker.class), null);
 
-    verify(fakeEngine, times(2)).updateProject(any(), any(), eq(PROJECT_KEY), any());
-    verify(fakeEngine, times(2)).updateProject(any(), any(), eq(PROJECT_KEY2), any());
+    verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
+    verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY2), any());
     verify(fakeEngine).sync(any(), any(), eq(Set.of(PROJECT_KEY, PROJECT_KEY2)), any());
 
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder1);
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder2);
+    verify(analysisManager).didSyncStorages();
     verifyNoMoreInteractions(analysisManager);
   }
 
@@ -264,11 +288,12 @@ class ServerSynchronizerTests {
 
     underTest.updateAllBindings(mock(CancelChecker.class), null);
 
-    verify(fakeEngine, times(3)).updateProject(any(), any(), eq(PROJECT_KEY), any());
-    verify(fakeEngine, times(3)).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
+    verify(fakeEngine).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
 
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder1);
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder2);
+    verify(analysisManager).didSyncStorages();
     verifyNoMoreInteractions(analysisManager);
   }
 
@@ -282,6 +307,7 @@ class ServerSynchronizerTests {
     underTest.updateAllBindings(mock(CancelChecker.class), null);
 
     verify(analysisManager).analyzeAllOpenFilesInFolder(folder);
+    verify(analysisManager).didSyncStorages();
     verifyNoMoreInteractions(analysisManager);
     assertThat(logTester.logs(MessageType.Log)).anyMatch(log -> log.contains("The specified connection id '" + CONNECTION_ID + "' doesn't exist."));
   }
@@ -294,6 +320,7 @@ class ServerSynchronizerTests {
     underTest.updateAllBindings(mock(CancelChecker.class), null);
 
     verify(analysisManager).analyzeAllOpenFilesInFolder(null);
+    verify(analysisManager).didSyncStorages();
     verifyNoMoreInteractions(analysisManager);
   }
 
@@ -333,14 +360,201 @@ class ServerSynchronizerTests {
     bindingManager.getOrCreateConnectedEngine(CONNECTION_ID);
     bindingManager.getOrCreateConnectedEngine(CONNECTION_ID2);
 
+    now += Duration.ofHours(1).toMillis();
+    syncTask.run();
+
+    verify(fakeEngine).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(fakeEngine).syncServerIssues(any(), any(), eq(PROJECT_KEY), eq("master"), any());
+    verify(fakeEngine).syncServerTaintIssues(any(), any(), eq(PROJECT_KEY), eq("master"), any());
+    verify(fakeEngine2).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
+    verify(fakeEngine2).syncServerIssues(any(), any(), eq(PROJECT_KEY2), eq("master"), any());
+    verify(fakeEngine2).syncServerTaintIssues(any(), any(), eq(PROJECT_KEY2), eq("master"), any());
+  }
+
+  @Test
+  void sync_idle_projects_less_often_only_on_connections_with_server_events() {
+    var folder1 = mockFileInABoundWorkspaceFolder();
+    var folder2 = mockFileInABoundWorkspaceFolder2();
+
+    when(foldersManager.getAll()).thenReturn(List.of(folder1, folder2));
+    when(enginesFactory.createConnectedEngine(anyString(), any(ServerConnectionSettings.class)))
+      .thenReturn(fakeEngine)
+      .thenReturn(fakeEngine2);
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID);
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID2);
+
+    syncTask.run();
+
+    // Not due yet
+    verify(fakeEngine, never()).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(analysisManager, never()).didSyncStorages();
+
+    // A project with server events is synchronized sooner
+    underTest.didReceiveServerEvent(CONNECTION_ID, PROJECT_KEY);
+    syncTask.run();
+
+    verify(fakeEngine).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(fakeEngine2, never()).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
+
+    now += Duration.ofHours(1).toMillis();
+    syncTask.run();
+
+    verify(fakeEngine, times(2)).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(fakeEngine2).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
+
+    // Only the project of the connection that sends server events backs off, the other connection can't tell that its project is idle
+    now += Duration.ofHours(1).toMillis();
     syncTask.run();
 
     verify(fakeEngine, times(2)).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
-    verify(fakeEngine, times(2)).syncServerIssues(any(), any(), eq(PROJECT_KEY), eq("master"), any());
-    verify(fakeEngine, times(2)).syncServerTaintIssues(any(), any(), eq(PROJECT_KEY), eq("master"), any());
     verify(fakeEngine2, times(2)).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
+
+    now += Duration.ofHours(1).toMillis();
+    syncTask.run();
+
+    verify(fakeEngine, times(3)).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(fakeEngine2, times(3)).sync(any(), any(), eq(Set.of(PROJECT_KEY2)), any());
+  }
+
+  @Test
+  void republish_taints_only_of_projects_whose_taints_changed() {
+    var folder1 = mockFileInABoundWorkspaceFolder();
+    var folder2 = mockFileInABoundWorkspaceFolder2();
+
+    when(foldersManager.getAll()).thenReturn(List.of(folder1, folder2));
+    when(enginesFactory.createConnectedEngine(anyString(), any(ServerConnectionSettings.class)))
+      .thenReturn(fakeEngine)
+      .thenReturn(fakeEngine2);
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID);
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID2);
+    var storageBinding = new ProjectBinding(PROJECT_KEY, "", "");
+    var taint = new ServerTaintIssue("taintKey", false, "ruleKey", "message", "filePath", Instant.now(), IssueSeverity.MAJOR, RuleType.VULNERABILITY,
+      new TextRangeWithHash(1, 0, 1, 10, "hash"), null, null, Map.of());
+    when(fakeEngine.getAllServerTaintIssues(storageBinding, "master")).thenReturn(List.of(), List.of(taint));
+
+    now += Duration.ofHours(1).toMillis();
+    syncTask.run();
+
+    verify(fakeEngine).getAllServerTaintIssues(FAKE_BINDING, "master");
+    verify(fakeEngine2, never()).getAllServerTaintIssues(FAKE_BINDING2, "master");
+  }
+
+  @Test
+  void sync_failed_projects_again_at_next_check() {
+    var folder1 = mockFileInABoundWorkspaceFolder();
+    var folder2 = mockFileInABoundWorkspaceFolder2();
+
+    when(foldersManager.getAll()).thenReturn(List.of(folder1, folder2));
+    when(enginesFactory.createConnectedEngine(anyString(), any(ServerConnectionSettings.class)))
+      .thenReturn(fakeEngine)
+      .thenReturn(fakeEngine2);
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID);
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID2);
+    doThrow(new IllegalStateException("Server unreachable")).doNothing()
+      .when(fakeEngine2).syncServerIssues(any(), any(), eq(PROJECT_KEY2), eq("master"), any());
+
+    now += Duration.ofHours(1).toMillis();
+    syncTask.run();
+    now += Duration.ofMinutes(15).toMillis();
+    syncTask.run();
+
+    verify(fakeEngine).syncServerIssues(any(), any(), eq(PROJECT_KEY), eq("master"), any());
     verify(fakeEngine2, times(2)).syncServerIssues(any(), any(), eq(PROJECT_KEY2), eq("master"), any());
-    verify(fakeEngine2, times(2)).syncServerTaintIssues(any(), any(), eq(PROJECT_KEY2), eq("master"), any());
+    verify(fakeEngine2).syncServerTaintIssues(any(), any(), eq(PROJECT_KEY2), eq("master"), any());
+  }
+
+  @Test
+  void server_events_should_only_make_project_of_their_connection_due() {
+    var folder1 = mockFileInABoundWorkspaceFolder();
+    var folder2 = mockFileInABoundWorkspaceFolder2();
+
+    when(foldersManager.getAll()).thenReturn(List.of(folder1, folder2));
+    when(enginesFactory.createConnectedEngine(anyString(), any(ServerConnectionSettings.class)))
+      .thenReturn(fakeEngine)
+      .thenReturn(fakeEngine2);
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID);
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID2);
+
+    underTest.didReceiveServerEvent(CONNECTION_ID2, PROJECT_KEY);
+    syncTask.run();
+
+    verify(fakeEngine, never()).sync(any(), any(), any(), any());
+
+    underTest.didReceiveServerEvent(CONNECTION_ID, PROJECT_KEY);
+    syncTask.run();
+
+    verify(fakeEngine).sync(any(), any(), eq(Set.of(PROJECT_KEY)), any());
+    verify(fakeEngine2, never()).sync(any(), any(), any(), any());
+  }
+
+  @Test
+  void update_all_bindings_should_limit_concurrent_steps_per_connection() throws IOException {
+    var folder1 = mockFileInABoundWorkspaceFolder();
+    var folder2 = mockFileInABoundWorkspaceFolder2();
+    folder2.setSettings(BOUND_SETTINGS_DIFFERENT_PROJECT_KEY);
+    var folder3Path = Files.createDirectories(basedir.resolve("myWorkspaceFolder3"));
+    var folder3 = new WorkspaceFolderWrapper(folder3Path.toUri(), new WorkspaceFolder(folder3Path.toUri().toString()), logTester.getLogger());
+    folder3.setSettings(new WorkspaceFolderSettings(CONNECTION_ID, PROJECT_KEY3, Collections.emptyMap(), null, null));
+    when(foldersManager.getAll()).thenReturn(List.of(folder1, folder2, folder3));
+    when(fakeEngine.calculatePathPrefixes(eq(PROJECT_KEY2), anyCollection())).thenReturn(new ProjectBinding(PROJECT_KEY2, "", ""));
+    when(fakeEngine.calculatePathPrefixes(eq(PROJECT_KEY3), anyCollection())).thenReturn(new ProjectBinding(PROJECT_KEY3, "", ""));
+    var runningUpdates = new AtomicInteger();
+    var maxRunningUpdates = new AtomicInteger();
+    var twoUpdatesRunning = new CountDownLatch(2);
+    doAnswer(invocation -> {
+      maxRunningUpdates.accumulateAndGet(runningUpdates.incrementAndGet(), Math::max);
+      twoUpdatesRunning.countDown();
+      twoUpdatesRunning.await(5, TimeUnit.SECONDS);
+      runningUpdates.decrementAndGet();
+      return null;
+    }).when(fakeEngine).updateProject(any(), any(), anyString(), any());
+
+    underTest.updateAllBindings(mock(CancelChecker.class), null);
+
+    verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
+    verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY2), any());
+    verify(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY3), any());
+    assertThat(maxRunningUpdates.get()).isEqualTo(2);
+  }
+
+  @Test
+  void update_all_bindings_should_stop_when_canceled() {
+    var folder = mockFileInABoundWorkspaceFolder();
+    when(foldersManager.getAll()).thenReturn(List.of(folder));
+    var canceled = new AtomicBoolean();
+    var cancelChecker = mock(CancelChecker.class);
+    when(cancelChecker.isCanceled()).thenAnswer(invocation -> canceled.get());
+    doAnswer(invocation -> {
+      canceled.set(true);
+      return null;
+    }).when(fakeEngine).updateProject(any(), any(), eq(PROJECT_KEY), any());
+
+    underTest.updateAllBindings(cancelChecker, Either.forLeft("progressToken"));
+
+    verify(fakeEngine, never()).sync(any(), any(), any(), any());
+    verify(fakeEngine, never()).syncServerIssues(any(), any(), any(), any(), any());
+    verify(analysisManager, never()).didSyncStorages();
+    verify(client, never()).showMessage(any());
+  }
+
+  @Test
+  void sync_should_continue_with_other_branches_when_one_fails() {
+    var folder1 = mockFileInABoundWorkspaceFolder();
+    var folder2 = mockFileInABoundWorkspaceFolder2();
+    // Folder 2 is bound to the same project, on another branch
+    folder2.setSettings(BOUND_SETTINGS);
+    when(foldersManager.getAll()).thenReturn(List.of(folder1, folder2));
+    bindingManager.setBranchResolver(uri -> Optional.of(folder1.getUri().equals(uri) ? "master" : "dev"));
+    bindingManager.getOrCreateConnectedEngine(CONNECTION_ID);
+    doThrow(new IllegalStateException("Unable to sync")).when(fakeEngine).syncServerIssues(any(), any(), eq(PROJECT_KEY), eq("master"), any());
+
+    now += Duration.ofHours(1).toMillis();
+    syncTask.run();
+
+    verify(fakeEngine, never()).syncServerTaintIssues(any(), any(), eq(PROJECT_KEY), eq("master"), any());
+    verify(fakeEngine).syncServerIssues(any(), any(), eq(PROJECT_KEY), eq("dev"), any());
+    verify(fakeEngine).syncServerTaintIssues(any(), any(), eq(PROJECT_KEY), eq("dev"), any());
+    verify(fakeEngine).syncServerHotspots(any(), any(), eq(PROJECT_KEY), eq("dev"), any());
   }
 
   @Test
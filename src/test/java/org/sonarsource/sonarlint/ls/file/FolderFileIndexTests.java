@@ -0,0 +1,147 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.lsp4j.WorkspaceFolder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonarsource.sonarlint.ls.folders.WorkspaceFolderWrapper;
+import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettings;
+import testutils.SonarLintLogTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class FolderFileIndexTests {
+  private static final WorkspaceFolderSettings EMPTY_SETTINGS = new WorkspaceFolderSettings(null, null, Collections.emptyMap(), null, null);
+  private static final WorkspaceFolderSettings TEST_PATTERN_SETTINGS = new WorkspaceFolderSettings(null, null, Collections.emptyMap(), "**/test/**", null);
+
+  @RegisterExtension
+  SonarLintLogTester logTester = new SonarLintLogTester();
+  @TempDir
+  Path baseDir;
+
+  private WorkspaceFolderWrapper folder;
+  private final AtomicInteger classificationCount = new AtomicInteger();
+  private FolderFileIndex underTest;
+
+  @BeforeEach
+  void prepare() throws IOException {
+    Files.createDirectories(baseDir.resolve("src"));
+    Files.createDirectories(baseDir.resolve("test"));
+    Files.createFile(baseDir.resolve("src/main.js"));
+    Files.createFile(baseDir.resolve("src/types.d.ts"));
+    Files.createFile(baseDir.resolve("src/index.ts"));
+    Files.createFile(baseDir.resolve("test/main.test.js"));
+    folder = new WorkspaceFolderWrapper(baseDir.toUri(), new WorkspaceFolder(baseDir.toString(), "My Folder"), logTester.getLogger());
+    folder.setSettings(EMPTY_SETTINGS);
+    underTest = new FolderFileIndex(folder, (settings, filePath) -> {
+      classificationCount.incrementAndGet();
+      return settings.getTestMatcher().matches(filePath);
+    });
+  }
+
+  @Test
+  void should_partition_files_by_suffix_and_type() {
+    folder.setSettings(TEST_PATTERN_SETTINGS);
+
+    assertThat(underTest.files("js", InputFile.Type.MAIN)).containsExactly(baseDir.resolve("src/main.js"));
+    assertThat(underTest.files("js", InputFile.Type.TEST)).containsExactly(baseDir.resolve("test/main.test.js"));
+    assertThat(underTest.files("ts", InputFile.Type.MAIN)).containsExactlyInAnyOrder(baseDir.resolve("src/types.d.ts"), baseDir.resolve("src/index.ts"));
+    assertThat(underTest.files("d.ts", InputFile.Type.MAIN)).containsExactly(baseDir.resolve("src/types.d.ts"));
+    assertThat(underTest.files("py", InputFile.Type.MAIN)).isEmpty();
+    assertThat(underTest.files()).containsOnly(
+      entry(baseDir.resolve("src/main.js"), InputFile.Type.MAIN),
+      entry(baseDir.resolve("src/types.d.ts"), InputFile.Type.MAIN),
+      entry(baseDir.resolve("src/index.ts"), InputFile.Type.MAIN),
+      entry(baseDir.resolve("test/main.test.js"), InputFile.Type.TEST));
+  }
+
+  @Test
+  void should_list_relative_paths_of_visible_files() throws IOException {
+    Files.createDirectories(baseDir.resolve(".git"));
+    Files.createFile(baseDir.resolve(".git/config"));
+    Files.createFile(baseDir.resolve("src/.eslintrc"));
+
+    assertThat(underTest.relativePaths()).containsExactlyInAnyOrder("src/main.js", "src/types.d.ts", "src/index.ts", "test/main.test.js");
+  }
+
+  @Test
+  void should_walk_and_classify_only_once() throws IOException {
+    underTest.files("js", InputFile.Type.MAIN);
+    Files.createFile(baseDir.resolve("src/not_notified.js"));
+
+    assertThat(underTest.files("js", InputFile.Type.MAIN)).hasSize(2);
+    assertThat(underTest.files()).hasSize(4);
+    assertThat(classificationCount).hasValue(4);
+  }
+
+  @Test
+  void should_reclassify_files_when_settings_change() {
+    assertThat(underTest.files("js", InputFile.Type.TEST)).isEmpty();
+
+    folder.setSettings(TEST_PATTERN_SETTINGS);
+
+    assertThat(underTest.files("js", InputFile.Type.TEST)).containsExactly(baseDir.resolve("test/main.test.js"));
+  }
+
+  @Test
+  void should_follow_file_events() throws IOException {
+    underTest.files();
+
+    var created = Files.createFile(baseDir.resolve("src/created.js"));
+    underTest.didCreate(created);
+    var missed = Files.createFile(baseDir.resolve("src/missed.js"));
+    underTest.didChange(missed);
+    Files.delete(baseDir.resolve("src/main.js"));
+    underTest.didDelete(baseDir.resolve("src/main.js"));
+
+    assertThat(underTest.files("js", InputFile.Type.MAIN)).containsExactlyInAnyOrder(created, missed, baseDir.resolve("test/main.test.js"));
+  }
+
+  @Test
+  void should_follow_folder_events() throws IOException {
+    underTest.files();
+
+    var newDir = Files.createDirectories(baseDir.resolve("lib/nested"));
+    var newFile = Files.createFile(newDir.resolve("lib.js"));
+    underTest.didCreate(baseDir.resolve("lib"));
+    underTest.didDelete(baseDir.resolve("src"));
+
+    assertThat(underTest.files()).containsOnlyKeys(newFile, baseDir.resolve("test/main.test.js"));
+  }
+
+  @Test
+  void should_ignore_events_before_first_use() throws IOException {
+    var created = Files.createFile(baseDir.resolve("src/created.js"));
+    underTest.didCreate(created);
+
+    assertThat(underTest.files("js", InputFile.Type.MAIN)).containsExactlyInAnyOrder(created, baseDir.resolve("src/main.js"), baseDir.resolve("test/main.test.js"));
+    assertThat(classificationCount).hasValue(5);
+  }
+}
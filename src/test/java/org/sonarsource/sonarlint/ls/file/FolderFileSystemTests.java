@@ -25,6 +25,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.Optional;
 import org.eclipse.lsp4j.WorkspaceFolder;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -32,6 +33,7 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.api.io.TempDir;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonarsource.sonarlint.core.analysis.api.ClientInputFile;
+import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient.GetJavaConfigResponse;
 import org.sonarsource.sonarlint.ls.folders.WorkspaceFolderWrapper;
 import org.sonarsource.sonarlint.ls.java.JavaConfigCache;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettings;
@@ -43,6 +45,8 @@ import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class FolderFileSystemTests {
@@ -122,6 +126,28 @@ class FolderFileSystemTests {
       .containsExactly(tuple(pythonFile.toAbsolutePath().toString(), "", true, StandardCharsets.UTF_8, pythonFile.toUri(), "file.py", pythonFile.toUri()));
   }
 
+  @Test
+  void should_classify_java_files_from_cached_configs_only(@TempDir Path folderPath) throws IOException {
+    var mainJavaFile = Files.createFile(folderPath.resolve("Foo.java"));
+    var testJavaFile = Files.createFile(folderPath.resolve("FooTest.java"));
+    Files.createFile(folderPath.resolve("file.py"));
+    var javaConfigCache = mock(JavaConfigCache.class);
+    var testConfig = new GetJavaConfigResponse();
+    testConfig.setTest(true);
+    when(javaConfigCache.getCached(any())).thenReturn(Optional.empty());
+    when(javaConfigCache.getCached(testJavaFile.toUri())).thenReturn(Optional.of(testConfig));
+    var folderWrapper = new WorkspaceFolderWrapper(folderPath.toUri(), new WorkspaceFolder(folderPath.toString(), "My Folder"), logTester.getLogger());
+    folderWrapper.setSettings(EMPTY_SETTINGS);
+    var folderFileSystem = new FolderFileSystem(folderWrapper, javaConfigCache, new FileTypeClassifier(logTester.getLogger()));
+
+    var files = folderFileSystem.files("java", InputFile.Type.TEST);
+
+    assertThat(files).extracting(ClientInputFile::uri).containsExactly(testJavaFile.toUri());
+    verify(javaConfigCache).getCached(mainJavaFile.toUri());
+    verify(javaConfigCache, never()).getOrFetch(any());
+    verify(javaConfigCache, never()).getOrFetchAsync(any(URI.class));
+  }
+
   @Test
   void should_throw_an_exception_when_folder_does_not_exist() {
     var fileTypeClassifier = mock(FileTypeClassifier.class);
@@ -0,0 +1,87 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.file;
+
+import java.net.URI;
+import java.util.List;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.sonarlint.ls.log.LanguageClientLogger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class OpenFilesCacheTests {
+  private static final URI FILE_URI = URI.create("file:///foo.js");
+
+  private final LanguageClientLogger logger = mock(LanguageClientLogger.class);
+  private final OpenFilesCache underTest = new OpenFilesCache(logger);
+
+  @Test
+  void should_apply_incremental_changes_to_open_file() {
+    var openedFile = underTest.didOpen(FILE_URI, "javascript", "alert();\n", 1);
+
+    underTest.didChange(FILE_URI, List.of(
+      new TextDocumentContentChangeEvent(new Range(new Position(0, 6), new Position(0, 6)), "'hi'"),
+      new TextDocumentContentChangeEvent(new Range(new Position(1, 0), new Position(1, 0)), "done();")), 2);
+
+    var file = underTest.getFile(FILE_URI).get();
+    assertThat(file.getVersion()).isEqualTo(2);
+    assertThat(file.getLanguageId()).isEqualTo("javascript");
+    assertThat(file.getContent()).isEqualTo("alert('hi');\ndone();");
+    assertThat(openedFile.getContent()).isEqualTo("alert();\n");
+  }
+
+  @Test
+  void should_track_changes_of_documents_not_yet_exposed_for_analysis() {
+    underTest.didOpenDocument(FILE_URI, "javascript", "alert();", 1);
+    underTest.didChange(FILE_URI, List.of(new TextDocumentContentChangeEvent(new Range(new Position(0, 0), new Position(0, 0)), "// ")), 2);
+
+    assertThat(underTest.getFile(FILE_URI)).isEmpty();
+    var file = underTest.trackForAnalysis(FILE_URI);
+
+    assertThat(file).isPresent();
+    assertThat(file.get().getContent()).isEqualTo("// alert();");
+    assertThat(file.get().getVersion()).isEqualTo(2);
+    assertThat(underTest.getAll()).containsExactly(file.get());
+    verify(logger, never()).warn(anyString());
+  }
+
+  @Test
+  void should_not_track_closed_document_for_analysis() {
+    underTest.didOpenDocument(FILE_URI, "javascript", "alert();", 1);
+    underTest.didClose(FILE_URI);
+
+    assertThat(underTest.trackForAnalysis(FILE_URI)).isEmpty();
+  }
+
+  @Test
+  void should_warn_when_changed_document_was_not_opened() {
+    underTest.didChange(FILE_URI, "alert();", 2);
+
+    verify(logger).warn("Illegal state. File \"file:///foo.js\" is reported changed but we missed the open notification");
+    assertThat(underTest.getFile(FILE_URI)).isEmpty();
+  }
+}
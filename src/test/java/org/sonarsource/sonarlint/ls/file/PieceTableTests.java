@@ -0,0 +1,211 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.file;
+
+import java.util.Random;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PieceTableTests {
+
+  @Test
+  void should_apply_range_changes() {
+    var underTest = new PieceTable("line1\nline2\r\nline3\rline4");
+
+    underTest.apply(change(1, 4, 1, 5, "TWO"));
+    underTest.apply(change(2, 0, 2, 0, "> "));
+    underTest.apply(change(3, 5, 3, 5, "\nline5"));
+
+    assertThat(underTest.getText()).isEqualTo("line1\nlineTWO\r\n> line3\rline4\nline5");
+  }
+
+  @Test
+  void should_replace_whole_content_when_range_is_missing() {
+    var underTest = new PieceTable("before");
+    underTest.apply(change(0, 0, 0, 6, "after"));
+
+    underTest.apply(new TextDocumentContentChangeEvent("full\ncontent"));
+
+    assertThat(underTest.getText()).isEqualTo("full\ncontent");
+    assertThat(underTest.pieceCount()).isEqualTo(1);
+  }
+
+  @Test
+  void should_not_merge_line_terminators_of_unrelated_insertions() {
+    var underTest = new PieceTable("ab\ncd");
+
+    underTest.apply(change(0, 1, 0, 1, "\r"));
+    // Written right after the previous \r in the buffer of added text
+    underTest.apply(change(2, 1, 2, 1, "\n"));
+
+    assertThat(underTest.getText()).isEqualTo("a\rb\nc\nd");
+    assertThat(underTest.offsetAt(new Position(1, 0))).isEqualTo(2);
+    assertThat(underTest.offsetAt(new Position(3, 0))).isEqualTo(7);
+  }
+
+  @Test
+  void should_merge_line_terminators_joined_by_a_deletion() {
+    var underTest = new PieceTable("a\rX\nb");
+
+    underTest.apply(change(1, 0, 1, 1, ""));
+
+    assertThat(underTest.getText()).isEqualTo("a\r\nb");
+    assertThat(underTest.offsetAt(new Position(1, 0))).isEqualTo(3);
+    assertThat(underTest.offsetAt(new Position(1, 1))).isEqualTo(4);
+    assertThat(underTest.offsetAt(new Position(2, 0))).isEqualTo(4);
+  }
+
+  @Test
+  void should_count_line_terminator_of_a_split_cr_lf() {
+    var underTest = new PieceTable("a\r\nb\nc");
+
+    underTest.replace(2, 3, "");
+
+    assertThat(underTest.getText()).isEqualTo("a\rb\nc");
+    assertThat(underTest.offsetAt(new Position(1, 0))).isEqualTo(2);
+    assertThat(underTest.offsetAt(new Position(2, 0))).isEqualTo(4);
+  }
+
+  @Test
+  void should_clamp_positions_to_line_and_content_length() {
+    var underTest = new PieceTable("ab\ncd");
+
+    assertThat(underTest.offsetAt(new Position(0, 42))).isEqualTo(2);
+    assertThat(underTest.offsetAt(new Position(1, 42))).isEqualTo(5);
+    assertThat(underTest.offsetAt(new Position(42, 0))).isEqualTo(5);
+  }
+
+  @Test
+  void should_keep_snapshot_content_when_document_changes() {
+    var underTest = new PieceTable("hello");
+    underTest.apply(change(0, 5, 0, 5, " world"));
+    var snapshot = underTest.snapshot();
+
+    underTest.apply(change(0, 0, 0, 5, "goodbye"));
+    for (var i = 0; i < 1000; i++) {
+      underTest.apply(change(0, 0, 0, 0, "x"));
+    }
+
+    assertThat(snapshot.getText()).isEqualTo("hello world");
+    assertThat(underTest.getText()).endsWith("goodbye world");
+  }
+
+  @Test
+  void should_not_split_pieces_when_typing() {
+    var underTest = new PieceTable("class A {\n}\n");
+
+    var text = "int field;";
+    for (var i = 0; i < text.length(); i++) {
+      underTest.apply(change(0, 9 + i, 0, 9 + i, String.valueOf(text.charAt(i))));
+    }
+
+    assertThat(underTest.getText()).isEqualTo("class A {int field;\n}\n");
+    assertThat(underTest.pieceCount()).isEqualTo(3);
+  }
+
+  @Test
+  void should_behave_like_a_string_for_random_edits() {
+    var random = new Random(42);
+    var expected = new StringBuilder("first line\nsecond line\nthird line\n");
+    var underTest = new PieceTable(expected.toString());
+
+    for (var i = 0; i < 5000; i++) {
+      var start = random.nextInt(expected.length() + 1);
+      var end = Math.min(expected.length(), start + random.nextInt(5));
+      var newText = random.nextInt(10) == 0 ? "\n" : randomWord(random);
+      underTest.apply(new TextDocumentContentChangeEvent(new Range(positionOf(expected, start), positionOf(expected, end)), newText));
+      expected.replace(start, end, newText);
+
+      assertThat(underTest.length()).isEqualTo(expected.length());
+      if (i % 100 == 0) {
+        assertThat(underTest.getText()).isEqualTo(expected.toString());
+      }
+    }
+    assertThat(underTest.getText()).isEqualTo(expected.toString());
+    assertThat(underTest.pieceCount()).isLessThanOrEqualTo(PieceTable.MAX_PIECES);
+  }
+
+  @Test
+  void should_resolve_positions_like_a_string_for_random_line_terminator_edits() {
+    var random = new Random(42);
+    var words = new String[] {"\r", "\n", "\r\n", "x", "yz", ""};
+    var expected = new StringBuilder("a\r\nb\rc\nd");
+    var underTest = new PieceTable(expected.toString());
+
+    for (var i = 0; i < 2000; i++) {
+      var start = random.nextInt(expected.length() + 1);
+      var end = Math.min(expected.length(), start + random.nextInt(3));
+      var newText = words[random.nextInt(words.length)];
+      underTest.replace(start, end, newText);
+      expected.replace(start, end, newText);
+
+      for (var line = 0; line < 10; line++) {
+        assertThat(underTest.offsetAt(new Position(line, 1))).isEqualTo(offsetOf(expected, line, 1));
+      }
+    }
+    assertThat(underTest.getText()).isEqualTo(expected.toString());
+  }
+
+  private static String randomWord(Random random) {
+    var word = new StringBuilder();
+    for (var i = random.nextInt(4); i >= 0; i--) {
+      word.append((char) ('a' + random.nextInt(26)));
+    }
+    return word.toString();
+  }
+
+  private static Position positionOf(CharSequence text, int offset) {
+    var line = 0;
+    var lineStart = 0;
+    for (var i = 0; i < offset; i++) {
+      if (text.charAt(i) == '\n') {
+        line++;
+        lineStart = i + 1;
+      }
+    }
+    return new Position(line, offset - lineStart);
+  }
+
+  private static int offsetOf(CharSequence text, int line, int character) {
+    var offset = 0;
+    for (var currentLine = 0; currentLine < line; currentLine++) {
+      while (offset < text.length() && text.charAt(offset) != '\n' && text.charAt(offset) != '\r') {
+        offset++;
+      }
+      if (offset == text.length()) {
+        return offset;
+      }
+      offset += text.charAt(offset) == '\r' && offset + 1 < text.length() && text.charAt(offset + 1) == '\n' ? 2 : 1;
+    }
+    var lineStart = offset;
+    while (offset < text.length() && offset - lineStart < character && text.charAt(offset) != '\n' && text.charAt(offset) != '\r') {
+      offset++;
+    }
+    return offset;
+  }
+
+  private static TextDocumentContentChangeEvent change(int startLine, int startCharacter, int endLine, int endCharacter, String text) {
+    return new TextDocumentContentChangeEvent(new Range(new Position(startLine, startCharacter), new Position(endLine, endCharacter)), text);
+  }
+}
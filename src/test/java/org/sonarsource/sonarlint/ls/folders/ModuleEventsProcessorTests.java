@@ -20,23 +20,29 @@
 package org.sonarsource.sonarlint.ls.folders;
 
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.eclipse.lsp4j.FileChangeType;
 import org.eclipse.lsp4j.FileEvent;
 import org.eclipse.lsp4j.WorkspaceFolder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.sonarsource.sonarlint.core.analysis.api.ClientModuleFileEvent;
 import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneSonarLintEngine;
 import org.sonarsource.sonarlint.ls.EnginesFactory;
+import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient.GetJavaConfigResponse;
 import org.sonarsource.sonarlint.ls.connected.ProjectBindingManager;
 import org.sonarsource.sonarlint.ls.file.FileTypeClassifier;
+import org.sonarsource.sonarlint.ls.file.FolderFileIndex;
 import org.sonarsource.sonarlint.ls.java.JavaConfigCache;
 import org.sonarsource.sonarlint.ls.log.LanguageClientLogOutput;
 import org.sonarsource.sonarlint.ls.settings.WorkspaceFolderSettings;
@@ -45,9 +51,12 @@ import org.sonarsource.sonarlint.plugin.api.module.file.ModuleFileEvent;
 import testutils.SonarLintLogTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -66,7 +75,8 @@ class ModuleEventsProcessorTests {
     enginesFactory = mock(EnginesFactory.class);
     foldersManager = mock(WorkspaceFoldersManager.class);
     standaloneEngineManager = mock(StandaloneEngineManager.class);
-    underTest = new ModuleEventsProcessor(standaloneEngineManager, foldersManager, mock(ProjectBindingManager.class), new FileTypeClassifier(logTester.getLogger()), mock(JavaConfigCache.class));
+    underTest = new ModuleEventsProcessor(standaloneEngineManager, foldersManager, mock(ProjectBindingManager.class), new FileTypeClassifier(logTester.getLogger()), mock(JavaConfigCache.class),
+      logTester.getLogger());
   }
 
   @Test
@@ -138,4 +148,100 @@ class ModuleEventsProcessorTests {
     assertThat(fileEvent.type()).isEqualTo(ModuleFileEvent.Type.DELETED);
   }
 
+  @Test
+  void coalesceEventsOfSameFile() {
+    assertThat(ModuleEventsProcessor.coalesce(null, ModuleFileEvent.Type.MODIFIED)).isEqualTo(ModuleFileEvent.Type.MODIFIED);
+    assertThat(ModuleEventsProcessor.coalesce(ModuleFileEvent.Type.CREATED, ModuleFileEvent.Type.MODIFIED)).isEqualTo(ModuleFileEvent.Type.CREATED);
+    assertThat(ModuleEventsProcessor.coalesce(ModuleFileEvent.Type.CREATED, ModuleFileEvent.Type.DELETED)).isNull();
+    assertThat(ModuleEventsProcessor.coalesce(ModuleFileEvent.Type.MODIFIED, ModuleFileEvent.Type.MODIFIED)).isEqualTo(ModuleFileEvent.Type.MODIFIED);
+    assertThat(ModuleEventsProcessor.coalesce(ModuleFileEvent.Type.MODIFIED, ModuleFileEvent.Type.DELETED)).isEqualTo(ModuleFileEvent.Type.DELETED);
+    assertThat(ModuleEventsProcessor.coalesce(ModuleFileEvent.Type.DELETED, ModuleFileEvent.Type.CREATED)).isEqualTo(ModuleFileEvent.Type.MODIFIED);
+  }
+
+  @Test
+  void forwardOnlyNetEffectOfBurstOfEvents() {
+    var fileEventArgumentCaptor = ArgumentCaptor.forClass(ClientModuleFileEvent.class);
+    var folderURI = URI.create("file:///folder");
+    var sonarLintEngine = mock(StandaloneSonarLintEngine.class);
+    var folder = new WorkspaceFolderWrapper(folderURI, new WorkspaceFolder(folderURI.toString(), "folder"), logTester.getLogger());
+    folder.setSettings(EMPTY_SETTINGS);
+    when(foldersManager.findFolderForFile(any())).thenReturn(Optional.of(folder));
+    when(sonarLintEngine.fireModuleFileEvent(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(standaloneEngineManager.getOrCreateStandaloneEngine()).thenReturn(sonarLintEngine);
+
+    underTest.didChangeWatchedFiles(List.of(
+      new FileEvent("file:///folder/created.py", FileChangeType.Created),
+      new FileEvent("file:///folder/created.py", FileChangeType.Changed),
+      new FileEvent("file:///folder/temp.py", FileChangeType.Created),
+      new FileEvent("file:///folder/temp.py", FileChangeType.Deleted),
+      new FileEvent("file:///folder/deleted.py", FileChangeType.Changed),
+      new FileEvent("file:///folder/deleted.py", FileChangeType.Deleted)));
+
+    verify(sonarLintEngine, Mockito.timeout(1000).times(2)).fireModuleFileEvent(eq(folderURI), fileEventArgumentCaptor.capture());
+    assertThat(fileEventArgumentCaptor.getAllValues())
+      .extracting(e -> e.target().uri().toString(), ClientModuleFileEvent::type)
+      .containsExactly(
+        tuple("file:///folder/created.py", ModuleFileEvent.Type.CREATED),
+        tuple("file:///folder/deleted.py", ModuleFileEvent.Type.DELETED));
+  }
+
+  @Test
+  void classifyJavaFilesOfEventsFromCachedConfigsOnly() {
+    var fileEventArgumentCaptor = ArgumentCaptor.forClass(ClientModuleFileEvent.class);
+    var folderURI = URI.create("file:///folder");
+    var javaFileUri = URI.create("file:///folder/FooTest.java");
+    var javaConfigCache = mock(JavaConfigCache.class);
+    var testConfig = new GetJavaConfigResponse();
+    testConfig.setTest(true);
+    when(javaConfigCache.getCached(javaFileUri)).thenReturn(Optional.of(testConfig));
+    underTest = new ModuleEventsProcessor(standaloneEngineManager, foldersManager, mock(ProjectBindingManager.class), new FileTypeClassifier(logTester.getLogger()), javaConfigCache,
+      logTester.getLogger());
+    var sonarLintEngine = mock(StandaloneSonarLintEngine.class);
+    var folder = new WorkspaceFolderWrapper(folderURI, new WorkspaceFolder(folderURI.toString(), "folder"), logTester.getLogger());
+    folder.setSettings(EMPTY_SETTINGS);
+    when(foldersManager.findFolderForFile(any())).thenReturn(Optional.of(folder));
+    when(sonarLintEngine.fireModuleFileEvent(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(standaloneEngineManager.getOrCreateStandaloneEngine()).thenReturn(sonarLintEngine);
+
+    underTest.didChangeWatchedFiles(List.of(
+      new FileEvent(javaFileUri.toString(), FileChangeType.Created),
+      new FileEvent("file:///folder/file.py", FileChangeType.Created),
+      new FileEvent("file:///folder/Deleted.java", FileChangeType.Deleted)));
+
+    verify(sonarLintEngine, Mockito.timeout(1000).times(3)).fireModuleFileEvent(eq(folderURI), fileEventArgumentCaptor.capture());
+    verify(javaConfigCache, never()).getOrFetch(any());
+    verify(javaConfigCache, never()).getOrFetchAsync(any(URI.class));
+    verify(javaConfigCache, never()).getOrFetchAsync(anyCollection());
+    assertThat(fileEventArgumentCaptor.getAllValues())
+      .extracting(e -> e.target().uri().toString(), e -> e.target().isTest())
+      .containsExactly(
+        tuple(javaFileUri.toString(), true),
+        tuple("file:///folder/file.py", false),
+        tuple("file:///folder/Deleted.java", false));
+  }
+
+  @Test
+  void updateFolderFileIndexOnFileEvents(@TempDir Path folderPath) throws Exception {
+    var folderURI = folderPath.toUri();
+    var sonarLintEngine = mock(StandaloneSonarLintEngine.class);
+    var folder = new WorkspaceFolderWrapper(folderURI, new WorkspaceFolder(folderURI.toString(), "folder"), logTester.getLogger());
+    folder.setSettings(EMPTY_SETTINGS);
+    var fileIndex = folder.getOrCreateFileIndex(f -> new FolderFileIndex(f, (settings, filePath) -> false));
+    assertThat(fileIndex.files()).isEmpty();
+    when(foldersManager.findFolderForFile(any())).thenReturn(Optional.of(folder));
+    var indexedFilesWhenEventFired = new CopyOnWriteArrayList<Path>();
+    when(sonarLintEngine.fireModuleFileEvent(any(), any())).thenAnswer(invocation -> {
+      indexedFilesWhenEventFired.addAll(fileIndex.files().keySet());
+      return CompletableFuture.completedFuture(null);
+    });
+    when(standaloneEngineManager.getOrCreateStandaloneEngine()).thenReturn(sonarLintEngine);
+
+    var createdFile = Files.createFile(folderPath.resolve("file.py"));
+    underTest.didChangeWatchedFiles(List.of(new FileEvent(createdFile.toUri().toString(), FileChangeType.Created)));
+
+    verify(sonarLintEngine, Mockito.timeout(1000).times(1)).fireModuleFileEvent(any(), any());
+    assertThat(indexedFilesWhenEventFired).containsExactly(createdFile);
+    assertThat(fileIndex.files()).containsOnlyKeys(createdFile);
+  }
+
 }
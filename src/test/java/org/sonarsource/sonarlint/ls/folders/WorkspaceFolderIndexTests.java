@@ -0,0 +1,105 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.folders;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static java.net.URI.create;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WorkspaceFolderIndexTests {
+
+  @Test
+  void should_find_deepest_containing_folder() {
+    var index = WorkspaceFolderIndex.of(Map.of(
+      create("file:///foo"), "foo",
+      create("file:///foo/bar"), "bar",
+      create("file:///foo/bar/baz/"), "baz",
+      create("file:///other"), "other"));
+
+    assertThat(index.findDeepest(create("file:///foo"))).isEqualTo("foo");
+    assertThat(index.findDeepest(create("file:///foo/bar.txt"))).isEqualTo("foo");
+    assertThat(index.findDeepest(create("file:///foo/bar/Baz.java"))).isEqualTo("bar");
+    assertThat(index.findDeepest(create("file:///foo/bar/baz/qix/File.java"))).isEqualTo("baz");
+    assertThat(index.findDeepest(create("file:///foo//bar/baz/File.java"))).isEqualTo("baz");
+    assertThat(index.findDeepest(create("file:///other/File.java"))).isEqualTo("other");
+    assertThat(index.findDeepest(create("file:///foobar/File.java"))).isNull();
+    assertThat(index.findDeepest(create("file:///File.java"))).isNull();
+  }
+
+  @Test
+  void should_notify_files_contained_in_nested_folders() {
+    var filesWithMultipleCandidates = new ArrayList<URI>();
+    var index = WorkspaceFolderIndex.of(Map.of(
+      create("file:///foo"), "foo",
+      create("file:///foo/bar/baz"), "baz",
+      create("file:///other/nested"), "nested"), filesWithMultipleCandidates::add);
+
+    assertThat(index.findDeepest(create("file:///foo/bar/File.java"))).isEqualTo("foo");
+    assertThat(index.findDeepest(create("file:///other/nested/File.java"))).isEqualTo("nested");
+    assertThat(index.findDeepest(create("file:///foo/bar/baz/File.java"))).isEqualTo("baz");
+
+    assertThat(filesWithMultipleCandidates).containsExactly(create("file:///foo/bar/baz/File.java"));
+  }
+
+  @Test
+  void should_match_scheme_host_and_port() {
+    var folders = new LinkedHashMap<URI, String>();
+    folders.put(create("ftp://ftp.example.com/foo"), "ftp");
+    folders.put(create("file://laptop/My%20Documents"), "laptop");
+    folders.put(create("file://laptop:8080/My%20Documents"), "laptop8080");
+    var index = WorkspaceFolderIndex.of(folders);
+
+    assertThat(index.findDeepest(create("FTP://ftp.example.com/foo/bar.txt"))).isEqualTo("ftp");
+    assertThat(index.findDeepest(create("ftp://ftp.example.com/bar.txt"))).isNull();
+    assertThat(index.findDeepest(create("file:///foo/bar.txt"))).isNull();
+    assertThat(index.findDeepest(create("file://laptop/My%20Documents/FileSchemeURIs.doc"))).isEqualTo("laptop");
+    assertThat(index.findDeepest(create("file://laptop2/My%20Documents/FileSchemeURIs.doc"))).isNull();
+    assertThat(index.findDeepest(create("file://laptop:8080/My%20Documents/FileSchemeURIs.doc"))).isEqualTo("laptop8080");
+    assertThat(index.findDeepest(create("file://laptop:8081/My%20Documents/FileSchemeURIs.doc"))).isNull();
+  }
+
+  @Test
+  void should_handle_many_siblings() {
+    var folders = new LinkedHashMap<URI, Integer>();
+    for (var i = 0; i < 100; i++) {
+      folders.put(create("file:///workspace/module" + i), i);
+    }
+    var index = WorkspaceFolderIndex.of(folders);
+
+    for (var i = 0; i < 100; i++) {
+      assertThat(index.findDeepest(create("file:///workspace/module" + i + "/src/File.java"))).isEqualTo(i);
+    }
+    assertThat(index.findDeepest(create("file:///workspace/module100/src/File.java"))).isNull();
+  }
+
+  @Test
+  void should_reject_opaque_uris() {
+    var index = WorkspaceFolderIndex.of(Map.of(create("file:///foo"), "foo", create("mailto:a@b.com"), "opaque"));
+
+    assertThrows(IllegalArgumentException.class, () -> index.findDeepest(create("mailto:a@b.com")));
+    assertThat(WorkspaceFolderIndex.<String>of(Map.of()).findDeepest(create("mailto:a@b.com"))).isNull();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.java;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient;
+import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient.GetJavaConfigResponse;
+import org.sonarsource.sonarlint.ls.file.OpenFilesCache;
+import testutils.SonarLintLogTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JavaConfigCacheTests {
+
+  @RegisterExtension
+  SonarLintLogTester logTester = new SonarLintLogTester();
+
+  @Test
+  void should_log_stats_once_for_a_burst_of_evictions() {
+    var client = mock(SonarLintExtendedLanguageClient.class);
+    when(client.getJavaConfig(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+    var underTest = new JavaConfigCache(client, mock(OpenFilesCache.class), logTester.getLogger(), 1, Long.MAX_VALUE);
+    var fileUri1 = URI.create("file:///project/Foo.java");
+
+    underTest.getOrFetch(fileUri1);
+    underTest.getOrFetch(URI.create("file:///project/Bar.java"));
+    underTest.getOrFetch(URI.create("file:///project/Baz.java"));
+
+    assertThat(underTest.getStats()).isEqualTo(new JavaConfigCache.Stats(1, 1, 0, 0, 3, 2));
+    var expectedLog = "Evicted least recently used Java config for file \"" + fileUri1 + "\" (next evictions are not logged for a minute), "
+      + new JavaConfigCache.Stats(1, 1, 0, 0, 2, 1);
+    assertThat(logTester.logs()).filteredOn(log -> log.contains("Evicted least recently used")).hasSize(1)
+      .allMatch(log -> log.endsWith(expectedLog));
+  }
+
+  @Test
+  void should_only_look_in_cache_without_fetching() {
+    var client = mock(SonarLintExtendedLanguageClient.class);
+    var config = new GetJavaConfigResponse();
+    when(client.getJavaConfig(anyString())).thenReturn(CompletableFuture.completedFuture(config));
+    var underTest = new JavaConfigCache(client, mock(OpenFilesCache.class), logTester.getLogger());
+    var cachedFileUri = URI.create("file:///project/Foo.java");
+    underTest.getOrFetch(cachedFileUri);
+
+    assertThat(underTest.getCached(cachedFileUri)).contains(config);
+    assertThat(underTest.getCached(URI.create("file:///project/Bar.java"))).isEmpty();
+    verify(client, times(1)).getJavaConfig(anyString());
+  }
+
+  @Test
+  void should_reuse_filtered_classpath_until_classpath_update(@TempDir Path projectRoot) throws IOException {
+    var underTest = new JavaConfigCache(mock(SonarLintExtendedLanguageClient.class), mock(OpenFilesCache.class), logTester.getLogger());
+    var existingJar = Files.createFile(projectRoot.resolve("existing.jar"));
+    var missingJar = projectRoot.resolve("missing.jar");
+    var fileUri = projectRoot.resolve("Foo.java").toUri();
+    var config = new GetJavaConfigResponse();
+    config.setProjectRoot(projectRoot.toUri().toString());
+    config.setClasspath(new String[] {existingJar.toString(), missingJar.toString()});
+    var javaConfigs = Map.of(fileUri, config);
+
+    assertThat(underTest.configureJavaProperties(Set.of(fileUri), javaConfigs)).containsEntry("sonar.java.libraries", existingJar.toString());
+
+    Files.createFile(missingJar);
+    assertThat(underTest.configureJavaProperties(Set.of(fileUri), javaConfigs)).containsEntry("sonar.java.libraries", existingJar.toString());
+
+    underTest.didClasspathUpdate(projectRoot.toUri());
+    assertThat(underTest.configureJavaProperties(Set.of(fileUri), javaConfigs)).containsEntry("sonar.java.libraries", existingJar + "," + missingJar);
+  }
+
+  @Test
+  void should_not_share_filtered_classpath_between_projects(@TempDir Path workspace) throws IOException {
+    var underTest = new JavaConfigCache(mock(SonarLintExtendedLanguageClient.class), mock(OpenFilesCache.class), logTester.getLogger());
+    var jar = Files.createFile(workspace.resolve("lib.jar"));
+    var fileUri1 = URI.create("file:///project1/Foo.java");
+    var fileUri2 = URI.create("file:///project2/Foo.java");
+    var config1 = new GetJavaConfigResponse();
+    config1.setProjectRoot("file:///project1");
+    config1.setClasspath(new String[] {jar.toString()});
+    var config2 = new GetJavaConfigResponse();
+    config2.setProjectRoot("file:///project2");
+    config2.setClasspath(new String[] {jar.toString()});
+    underTest.configureJavaProperties(Set.of(fileUri1), Map.of(fileUri1, config1));
+    underTest.configureJavaProperties(Set.of(fileUri2), Map.of(fileUri2, config2));
+    Files.delete(jar);
+
+    underTest.didClasspathUpdate(URI.create("file:///project1"));
+
+    assertThat(underTest.configureJavaProperties(Set.of(fileUri1), Map.of(fileUri1, config1))).containsEntry("sonar.java.libraries", "");
+    assertThat(underTest.configureJavaProperties(Set.of(fileUri2), Map.of(fileUri2, config2))).containsEntry("sonar.java.libraries", jar.toString());
+  }
+}
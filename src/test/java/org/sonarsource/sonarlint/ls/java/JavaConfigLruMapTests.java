@@ -0,0 +1,108 @@
+/*
+ * SonarLint Language Server
+ * Copyright (C) 2009-2024 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.ls.java;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.sonarlint.ls.SonarLintExtendedLanguageClient.GetJavaConfigResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JavaConfigLruMapTests {
+
+  private static final URI FILE_1 = URI.create("file:///project/File1.java");
+  private static final URI FILE_2 = URI.create("file:///project/File2.java");
+  private static final URI FILE_3 = URI.create("file:///project/File3.java");
+
+  private final List<URI> evictedFiles = new ArrayList<>();
+
+  @Test
+  void should_evict_least_recently_used_files_when_too_many() {
+    var underTest = new JavaConfigLruMap(2, Long.MAX_VALUE, evictedFiles::add);
+
+    underTest.put(FILE_1, Optional.empty());
+    underTest.put(FILE_2, Optional.empty());
+    underTest.get(FILE_1);
+    underTest.put(FILE_3, Optional.empty());
+
+    assertThat(evictedFiles).containsExactly(FILE_2);
+    assertThat(underTest.get(FILE_1)).isEmpty();
+    assertThat(underTest.get(FILE_2)).isNull();
+    assertThat(underTest.get(FILE_3)).isEmpty();
+    assertThat(underTest.stats()).isEqualTo(new JavaConfigCache.Stats(2, 2, 0, 3, 1, 1));
+  }
+
+  @Test
+  void should_share_identical_classpaths() {
+    var underTest = new JavaConfigLruMap(10, Long.MAX_VALUE, evictedFiles::add);
+    var config1 = config("/project", "a.jar", "b.jar");
+    var config2 = config("/project", "a.jar", "b.jar");
+
+    underTest.put(FILE_1, Optional.of(config1));
+    underTest.put(FILE_2, Optional.of(config2));
+
+    assertThat(config2.getClasspath()).isSameAs(config1.getClasspath());
+    assertThat(underTest.stats().weight()).isEqualTo(4);
+    assertThat(underTest.stats().distinctClasspaths()).isEqualTo(1);
+
+    underTest.remove(FILE_1);
+    assertThat(underTest.stats().weight()).isEqualTo(3);
+    underTest.remove(FILE_2);
+    assertThat(underTest.stats().weight()).isZero();
+    assertThat(underTest.stats().distinctClasspaths()).isZero();
+  }
+
+  @Test
+  void should_evict_when_classpaths_are_too_heavy() {
+    var underTest = new JavaConfigLruMap(10, 5, evictedFiles::add);
+
+    underTest.put(FILE_1, Optional.of(config("/project1", "a.jar", "b.jar")));
+    underTest.put(FILE_2, Optional.of(config("/project2", "c.jar", "d.jar")));
+
+    assertThat(evictedFiles).containsExactly(FILE_1);
+    assertThat(underTest.stats().weight()).isEqualTo(3);
+  }
+
+  @Test
+  void should_remove_matching_files() {
+    var underTest = new JavaConfigLruMap(10, Long.MAX_VALUE, evictedFiles::add);
+    var removedFiles = new ArrayList<URI>();
+    underTest.put(FILE_1, Optional.of(config("/project1", "a.jar")));
+    underTest.put(FILE_2, Optional.of(config("/project2", "a.jar")));
+    underTest.put(FILE_3, Optional.empty());
+
+    underTest.removeIf((uri, config) -> config.isEmpty() || config.get().getProjectRoot().equals("/project1"), removedFiles::add);
+
+    assertThat(removedFiles).containsExactlyInAnyOrder(FILE_1, FILE_3);
+    assertThat(underTest.get(FILE_2)).isPresent();
+    assertThat(underTest.stats().weight()).isEqualTo(2);
+    assertThat(evictedFiles).isEmpty();
+  }
+
+  private static GetJavaConfigResponse config(String projectRoot, String... classpath) {
+    var config = new GetJavaConfigResponse();
+    config.setProjectRoot(projectRoot);
+    config.setClasspath(classpath);
+    return config;
+  }
+}
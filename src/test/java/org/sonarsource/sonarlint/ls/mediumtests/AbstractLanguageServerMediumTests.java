@@ -495,6 +495,11 @@ public abstract class AbstractLanguageServerMediumTests {
       return CompletableFutures.computeAsync(cancelToken -> isIgnoredByScm);
     }
 
+    @Override
+    public CompletableFuture<Map<String, Boolean>> areIgnoredByScm(FileUrisParams params) {
+      return CompletableFutures.computeAsync(cancelToken -> params.getFileUris().stream().collect(Collectors.toMap(uri -> uri, uri -> isIgnoredByScm)));
+    }
+
     @Override
     public CompletableFuture<ShouldAnalyseFileCheckResult> shouldAnalyseFile(SonarLintExtendedLanguageServer.UriParams fileUri) {
       return CompletableFutures.computeAsync(cancelToken -> new ShouldAnalyseFileCheckResult(shouldAnalyseFile, "reason"));
@@ -517,6 +522,15 @@ public abstract class AbstractLanguageServerMediumTests {
       });
     }
 
+    @Override
+    public CompletableFuture<Map<String, GetJavaConfigResponse>> getJavaConfigs(FileUrisParams params) {
+      return CompletableFutures.computeAsync(cancelToken -> {
+        var configs = new HashMap<String, GetJavaConfigResponse>();
+        params.getFileUris().stream().filter(javaConfigs::containsKey).forEach(uri -> configs.put(uri, javaConfigs.get(uri)));
+        return configs;
+      });
+    }
+
     @Override
     public void browseTo(String link) {
       openedLinks.add(link);
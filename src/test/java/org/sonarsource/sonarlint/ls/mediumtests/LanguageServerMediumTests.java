@@ -474,6 +474,46 @@ class LanguageServerMediumTests extends AbstractLanguageServerMediumTests {
       .containsExactly(tuple(1, 2, 1, 6, PYTHON_S1481, "sonarlint", "Remove the unused local variable \"toto\".", DiagnosticSeverity.Warning)));
   }
 
+  @Test
+  void analyzeSimplePythonFileOnIncrementalChange() throws Exception {
+    var uri = getUri("analyzeSimplePythonFileOnIncrementalChange.py");
+
+    didOpen(uri, "python", "def foo():\n  # Empty\n");
+
+    awaitUntilAsserted(() -> assertThat(client.getDiagnostics(uri).isEmpty()));
+
+    lsProxy.getTextDocumentService()
+      .didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, 2),
+        List.of(new TextDocumentContentChangeEvent(new Range(new Position(1, 2), new Position(1, 9)), "toto = 0"))));
+
+    awaitUntilAsserted(() -> assertThat(client.getDiagnostics(uri))
+      .extracting(startLine(), startCharacter(), endLine(), endCharacter(), code(), Diagnostic::getSource, Diagnostic::getMessage, Diagnostic::getSeverity)
+      .containsExactly(tuple(1, 2, 1, 6, PYTHON_S1481, "sonarlint", "Remove the unused local variable \"toto\".", DiagnosticSeverity.Warning)));
+  }
+
+  @Test
+  void reuseAnalysisResultsWhenReopeningUnchangedFile() throws Exception {
+    setShowVerboseLogs(client.globalSettings, true);
+    notifyConfigurationChangeOnClient();
+
+    var uri = getUri("reuseAnalysisResultsWhenReopeningUnchangedFile.py");
+    var content = "def foo():\n  toto = 0\n";
+    didOpen(uri, "python", content);
+    awaitUntilAsserted(() -> assertThat(client.getDiagnostics(uri)).hasSize(1));
+    didClose(uri);
+    awaitUntilAsserted(() -> assertThat(client.getDiagnostics(uri)).isEmpty());
+    client.logs.clear();
+
+    didOpen(uri, "python", content);
+
+    awaitUntilAsserted(() -> assertThat(client.getDiagnostics(uri))
+      .extracting(startLine(), startCharacter(), endLine(), endCharacter(), code(), Diagnostic::getSource, Diagnostic::getMessage, Diagnostic::getSeverity)
+      .containsExactly(tuple(1, 2, 1, 6, PYTHON_S1481, "sonarlint", "Remove the unused local variable \"toto\".", DiagnosticSeverity.Warning)));
+    assertThat(client.logs)
+      .extracting(withoutTimestamp())
+      .contains("[Debug] Reusing results of a previous analysis of the same content for 1 file");
+  }
+
   @Test
   void cleanUpDiagnosticsOnFileClose() throws IOException {
     var uri = getUri("foo.html");
@@ -30,6 +30,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -72,6 +73,45 @@ class FileUtilsTests {
       "a/b/c/c.txt");
   }
 
+  @Test
+  void allRelativePathsForFilesInTree_should_skip_files_ignored_by_git(@TempDir Path basedir) throws IOException {
+    FileUtils.mkdirs(basedir.resolve("node_modules").resolve("lib"));
+    FileUtils.mkdirs(basedir.resolve("src").resolve("generated"));
+    FileUtils.mkdirs(basedir.resolve(".git").resolve("info"));
+    Files.writeString(basedir.resolve(".gitignore"), "node_modules/\n*.log\n");
+    Files.writeString(basedir.resolve("src/.gitignore"), "generated/\n!keep.log\n");
+    Files.writeString(basedir.resolve(".git/info/exclude"), "local.txt\n");
+
+    createNewFile(basedir.resolve("node_modules/lib"), "index.js");
+    createNewFile(basedir.resolve("src/generated"), "Gen.java");
+    createNewFile(basedir.resolve("src"), "Main.java");
+    createNewFile(basedir.resolve("src"), "debug.log");
+    createNewFile(basedir.resolve("src"), "keep.log");
+    createNewFile(basedir, "build.log");
+    createNewFile(basedir, "local.txt");
+    createNewFile(basedir, "README.md");
+
+    var relativePaths = FileUtils.allRelativePathsForFilesInTree(basedir, logTester.getLogger());
+    assertThat(relativePaths).containsExactlyInAnyOrder(
+      "README.md",
+      "src/Main.java",
+      "src/keep.log");
+  }
+
+  @Test
+  void forEachRelativePathForFilesInTree_should_stream_all_files(@TempDir Path basedir) {
+    for (var i = 0; i < 20; i++) {
+      var dir = basedir.resolve("dir" + i).resolve("sub");
+      FileUtils.mkdirs(dir);
+      createNewFile(dir, "file.txt");
+    }
+    var count = new AtomicInteger();
+
+    FileUtils.forEachRelativePathForFilesInTree(basedir, logTester.getLogger(), path -> count.incrementAndGet());
+
+    assertThat(count).hasValue(20);
+  }
+
   @Test
   void allRelativePathsForFilesInTree_should_handle_non_existing_dir(@TempDir Path basedir) {
     var deeplyNestedDir = basedir.resolve("a").resolve("b").resolve("c");